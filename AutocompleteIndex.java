@@ -0,0 +1,433 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * AutocompleteIndex - As-you-type suggestions for book titles and authors
+ * Demonstrates: Radix tries, Best-first search with a priority queue, Incremental index maintenance
+ *
+ * Every title and author is inserted once for each word it contains (so
+ * "pot" suggests "Harry Potter"), in a radix trie whose edges hold whole
+ * runs of characters - a node exists only where keys branch or end. Each
+ * suggestion is ranked by circulation: how often the book was borrowed, or
+ * for an author, all their books together. Every node remembers the highest
+ * circulation below it, so the top k completions of a prefix are found
+ * best-first, visiting only the branches that can still beat the k-th one,
+ * however many books share the prefix.
+ *
+ * Library keeps it current as books are added, removed and borrowed.
+ */
+public class AutocompleteIndex {
+
+    /**
+     * What a suggestion completes to
+     */
+    public enum Kind {
+        TITLE, AUTHOR
+    }
+
+    /**
+     * One completion: a book title or an author name
+     */
+    public static class Suggestion {
+        private final String text;
+        private final Kind kind;
+        private long circulation;
+        private int books;                  // Books contributing (authors can have several)
+        private Suggestion author;          // For a title, its author's suggestion
+
+        private Suggestion(String text, Kind kind) {
+            this.text = text;
+            this.kind = kind;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public synchronized long getCirculation() {
+            return circulation;
+        }
+
+        @Override
+        public String toString() {
+            return text + " (" + kind.toString().toLowerCase() + ", borrowed " + getCirculation() + "x)";
+        }
+    }
+
+    private Node root = new Node("");
+    private final Map<String, Suggestion> titles = new HashMap<>();
+    private final Map<String, Suggestion> authors = new HashMap<>();   // Keyed by lower-case name
+
+    // ==================== QUERIES ====================
+
+    /**
+     * The most borrowed titles and authors with a word starting with prefix
+     * (case-insensitive), most borrowed first
+     */
+    public synchronized List<Suggestion> suggest(String prefix, int limit) {
+        List<Suggestion> results = new ArrayList<>();
+        String key = normalize(prefix).stripLeading();
+        if (key.isEmpty() || limit <= 0) {
+            return results;
+        }
+        Node start = find(key);
+        if (start == null) {
+            return results;
+        }
+
+        // Best-first: a node's score bounds everything below it, so once a
+        // suggestion is at the head of the queue nothing left can beat it
+        PriorityQueue<Object> queue = new PriorityQueue<>(BEST_FIRST);
+        Set<Suggestion> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        queue.add(start);
+        while (!queue.isEmpty() && results.size() < limit) {
+            Object next = queue.poll();
+            if (next instanceof Suggestion) {
+                if (seen.add((Suggestion) next)) {
+                    results.add((Suggestion) next); // A title can be reached through several of its words
+                }
+                continue;
+            }
+            Node node = (Node) next;
+            if (node.suggestions != null) {
+                queue.addAll(node.suggestions);
+            }
+            for (Node child : node.children) {
+                queue.add(child);
+            }
+        }
+        return results;
+    }
+
+    public synchronized int getTitleCount() {
+        return titles.size();
+    }
+
+    public synchronized int getAuthorCount() {
+        return authors.size();
+    }
+
+    // Highest score first; on a tie suggestions before nodes, then alphabetical
+    private static final Comparator<Object> BEST_FIRST = (a, b) -> {
+        int byScore = Long.compare(score(b), score(a));
+        if (byScore != 0) return byScore;
+        boolean aNode = a instanceof Node;
+        boolean bNode = b instanceof Node;
+        if (aNode != bNode) return aNode ? 1 : -1;
+        return aNode ? 0 : ((Suggestion) a).text.compareToIgnoreCase(((Suggestion) b).text);
+    };
+
+    private static long score(Object entry) {
+        return entry instanceof Node ? ((Node) entry).best : ((Suggestion) entry).circulation;
+    }
+
+    // ==================== MAINTENANCE ====================
+    // Called by Library while it holds its lock
+
+    /**
+     * Replace the whole index (after loading the catalog); circulation starts at zero
+     */
+    synchronized void rebuild(Collection<Book> books) {
+        root = new Node("");
+        titles.clear();
+        authors.clear();
+        for (Book book : books) {
+            bookAdded(book);
+        }
+    }
+
+    synchronized void bookAdded(Book book) {
+        if (titles.containsKey(book.getTitle())) {
+            return;
+        }
+        Suggestion title = new Suggestion(book.getTitle(), Kind.TITLE);
+        titles.put(book.getTitle(), title);
+        insertAll(title);
+
+        String authorKey = normalize(book.getAuthor());
+        Suggestion author = authors.get(authorKey);
+        if (author == null) {
+            author = new Suggestion(book.getAuthor(), Kind.AUTHOR);
+            authors.put(authorKey, author);
+            insertAll(author);
+        }
+        author.books++;
+        title.author = author;
+    }
+
+    synchronized void bookRemoved(Book book) {
+        Suggestion title = titles.remove(book.getTitle());
+        if (title == null) {
+            return;
+        }
+        removeAll(title);
+
+        Suggestion author = title.author;
+        if (--author.books == 0) {
+            authors.remove(normalize(author.text));
+            removeAll(author);
+        } else if (title.circulation > 0) {
+            setCirculation(author, author.circulation - title.circulation);
+        }
+    }
+
+    /**
+     * Count one more loan of the book (and of its author)
+     */
+    synchronized void bookBorrowed(String bookTitle) {
+        addCirculation(bookTitle, 1);
+    }
+
+    /**
+     * Add loan counts by book title (from the transaction history); titles
+     * no longer in the catalog are ignored
+     */
+    synchronized void addCirculation(Map<String, Integer> loansByTitle) {
+        for (Map.Entry<String, Integer> loans : loansByTitle.entrySet()) {
+            addCirculation(loans.getKey(), loans.getValue());
+        }
+    }
+
+    private void addCirculation(String bookTitle, long loans) {
+        Suggestion title = titles.get(bookTitle);
+        if (title != null && loans > 0) {
+            setCirculation(title, title.circulation + loans);
+            setCirculation(title.author, title.author.circulation + loans);
+        }
+    }
+
+    // Change a suggestion's score and bring the bounds on each of its paths up to date
+    private void setCirculation(Suggestion suggestion, long circulation) {
+        boolean decreased = circulation < suggestion.circulation;
+        synchronized (suggestion) {
+            suggestion.circulation = circulation;
+        }
+        for (String key : keysOf(suggestion.text)) {
+            List<Node> path = pathTo(key);
+            if (decreased) {
+                recomputeBest(path);
+            } else {
+                for (Node node : path) {
+                    node.best = Math.max(node.best, circulation);
+                }
+            }
+        }
+    }
+
+    // ==================== TRIE ====================
+
+    private void insertAll(Suggestion suggestion) {
+        for (String key : keysOf(suggestion.text)) {
+            insert(key, suggestion);
+        }
+    }
+
+    private void removeAll(Suggestion suggestion) {
+        for (String key : keysOf(suggestion.text)) {
+            remove(key, suggestion);
+        }
+    }
+
+    private void insert(String key, Suggestion suggestion) {
+        Node node = root;
+        int position = 0;
+        while (true) {
+            node.best = Math.max(node.best, suggestion.circulation);
+            if (position == key.length()) {
+                if (node.suggestions == null) {
+                    node.suggestions = new ArrayList<>(1);
+                }
+                node.suggestions.add(suggestion);
+                return;
+            }
+            int index = node.childIndex(key.charAt(position));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(position));
+                leaf.best = suggestion.circulation;
+                leaf.suggestions = new ArrayList<>(1);
+                leaf.suggestions.add(suggestion);
+                node.addChild(-index - 1, leaf);
+                return;
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.edge, key, position);
+            if (common < child.edge.length()) {
+                // Split the edge where the keys part ways
+                Node middle = new Node(child.edge.substring(0, common));
+                child.edge = child.edge.substring(common);
+                middle.children = new Node[] {child};
+                middle.best = child.best;
+                node.children[index] = middle;
+                child = middle;
+            }
+            node = child;
+            position += common;
+        }
+    }
+
+    private void remove(String key, Suggestion suggestion) {
+        List<Node> path = pathTo(key);
+        if (path == null) {
+            return;
+        }
+        Node node = path.get(path.size() - 1);
+        if (node.suggestions == null || !node.suggestions.removeIf(s -> s == suggestion)) {
+            return;
+        }
+        if (node.suggestions.isEmpty()) {
+            node.suggestions = null;
+        }
+        // Drop nodes left empty and merge ones left with a single child
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node current = path.get(i);
+            Node parent = path.get(i - 1);
+            if (current.suggestions == null && current.children.length == 0) {
+                parent.removeChild(current);
+            } else if (current.suggestions == null && current.children.length == 1) {
+                Node only = current.children[0];
+                only.edge = current.edge + only.edge;
+                parent.children[parent.childIndex(current.edge.charAt(0))] = only;
+                path.set(i, only);
+            }
+        }
+        recomputeBest(path);
+    }
+
+    // Nodes from the root to the one the key ends at (null if the key is not in the trie)
+    private List<Node> pathTo(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int position = 0;
+        path.add(node);
+        while (position < key.length()) {
+            int index = node.childIndex(key.charAt(position));
+            if (index < 0) return null;
+            node = node.children[index];
+            if (!key.startsWith(node.edge, position)) return null;
+            position += node.edge.length();
+            path.add(node);
+        }
+        return path;
+    }
+
+    // Node whose subtree holds every key starting with prefix
+    private Node find(String prefix) {
+        Node node = root;
+        int position = 0;
+        while (position < prefix.length()) {
+            int index = node.childIndex(prefix.charAt(position));
+            if (index < 0) return null;
+            node = node.children[index];
+            int common = commonPrefix(node.edge, prefix, position);
+            if (position + common == prefix.length()) return node; // Prefix ends inside this edge
+            if (common < node.edge.length()) return null;
+            position += common;
+        }
+        return node;
+    }
+
+    private static void recomputeBest(List<Node> path) {
+        if (path == null) return;
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            long best = 0;
+            if (node.suggestions != null) {
+                for (Suggestion suggestion : node.suggestions) {
+                    best = Math.max(best, suggestion.circulation);
+                }
+            }
+            for (Node child : node.children) {
+                best = Math.max(best, child.best);
+            }
+            node.best = best;
+        }
+    }
+
+    private static int commonPrefix(String edge, String key, int position) {
+        int length = Math.min(edge.length(), key.length() - position);
+        int i = 0;
+        while (i < length && edge.charAt(i) == key.charAt(position + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    // The text from each word onwards: "harry potter" -> "harry potter", "potter"
+    private static List<String> keysOf(String text) {
+        String normalized = normalize(text);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < normalized.length(); i++) {
+            boolean wordStart = Character.isLetterOrDigit(normalized.charAt(i))
+                && (i == 0 || !Character.isLetterOrDigit(normalized.charAt(i - 1)));
+            if (wordStart) {
+                keys.add(normalized.substring(i));
+            }
+        }
+        if (keys.isEmpty()) {
+            keys.add(normalized);
+        }
+        return keys;
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase();
+    }
+
+    /**
+     * Trie node; children are kept sorted by the first character of their edge
+     */
+    private static class Node {
+        private static final Node[] NONE = new Node[0];
+
+        String edge;                        // Characters on the edge from the parent
+        Node[] children = NONE;
+        List<Suggestion> suggestions;       // Keys ending here (null if none)
+        long best;                          // Highest circulation in this subtree
+
+        Node(String edge) {
+            this.edge = edge;
+        }
+
+        // Index of the child whose edge starts with c, or -(insertion point) - 1
+        int childIndex(char c) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char first = children[middle].edge.charAt(0);
+                if (first < c) low = middle + 1;
+                else if (first > c) high = middle - 1;
+                else return middle;
+            }
+            return -(low + 1);
+        }
+
+        void addChild(int at, Node child) {
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, at);
+            grown[at] = child;
+            System.arraycopy(children, at, grown, at + 1, children.length - at);
+            children = grown;
+        }
+
+        void removeChild(Node child) {
+            int at = childIndex(child.edge.charAt(0));
+            Node[] shrunk = new Node[children.length - 1];
+            System.arraycopy(children, 0, shrunk, 0, at);
+            System.arraycopy(children, at + 1, shrunk, at, children.length - at - 1);
+            children = shrunk;
+        }
+    }
+}
@@ -1,24 +1,31 @@
+import java.time.LocalDateTime;
+
 /**
  * Book class representing individual books in the library
  * Demonstrates: Encapsulation, Data validation, Object state management
  * 
- * Each book has a title, author, ISBN, and availability status
+ * Each book has a title, author, ISBN, and availability status, and while it
+ * is out, the date it is due back. Status and due date are versioned so
+ * reports can read them as of a pinned VersionClock version.
  */
 public class Book {
     // Private fields - Encapsulation principle
     private String title;
     private String author;
     private String isbn;
-    private boolean isAvailable;
-    private String borrowedBy; // Track who borrowed this book
+    // Who borrowed this book (null while available), versioned for point-in-time reads
+    private final VersionedValue<String> borrowedBy;
+    
+    // When the current loan is due (null while available, or if not recorded), versioned with borrowedBy
+    private final VersionedValue<LocalDateTime> dueDate;
     
     // Constructor - Create a new book (initially available)
     public Book(String title, String author, String isbn) {
         setTitle(title);    // Use setter for validation
         setAuthor(author);  // Use setter for validation
         setIsbn(isbn);      // Use setter for validation
-        this.isAvailable = true;  // New books are always available
-        this.borrowedBy = null;   // Not borrowed initially
+        this.borrowedBy = new VersionedValue<>(null); // New books are always available
+        this.dueDate = new VersionedValue<>(null);
     }
     
     // Overloaded constructor for testing purposes
@@ -40,11 +47,28 @@ public class Book {
     }
     
     public boolean isAvailable() {
-        return isAvailable;
+        return borrowedBy.get() == null;
     }
     
     public String getBorrowedBy() {
-        return borrowedBy;
+        return borrowedBy.get();
+    }
+    
+    // Availability as of a version pinned with VersionClock.pin()
+    public boolean isAvailableAt(long version) {
+        return borrowedBy.getAt(version) == null;
+    }
+    
+    public String getBorrowedByAt(long version) {
+        return borrowedBy.getAt(version);
+    }
+    
+    public LocalDateTime getDueDate() {
+        return dueDate.get();
+    }
+    
+    public LocalDateTime getDueDateAt(long version) {
+        return dueDate.getAt(version);
     }
     
     // Setter methods with validation - Data protection
@@ -74,22 +98,44 @@ public class Book {
     
     // Business logic methods for book operations
     public boolean borrowBook(String memberId) {
-        if (isAvailable) {
-            this.isAvailable = false;
-            this.borrowedBy = memberId;
+        return borrowBook(memberId, null);
+    }
+    
+    /**
+     * Borrow, stamping the change with the clock's write version (see VersionedValue.set)
+     */
+    public boolean borrowBook(String memberId, VersionClock clock) {
+        return borrowBook(memberId, null, clock);
+    }
+    
+    /**
+     * Borrow until the given due date (null if there is none)
+     */
+    public boolean borrowBook(String memberId, LocalDateTime due, VersionClock clock) {
+        if (memberId == null) {
+            System.out.println("Error: Member ID is required to borrow '" + title + "'!");
+            return false;
+        }
+        if (isAvailable()) {
+            borrowedBy.set(memberId, clock);
+            dueDate.set(due, clock);
             System.out.println("Book '" + title + "' borrowed by member: " + memberId);
             return true;
         } else {
-            System.out.println("Book '" + title + "' is already borrowed by: " + borrowedBy);
+            System.out.println("Book '" + title + "' is already borrowed by: " + getBorrowedBy());
             return false;
         }
     }
     
     public boolean returnBook() {
-        if (!isAvailable) {
-            String previousBorrower = this.borrowedBy;
-            this.isAvailable = true;
-            this.borrowedBy = null;
+        return returnBook(null);
+    }
+    
+    public boolean returnBook(VersionClock clock) {
+        if (!isAvailable()) {
+            String previousBorrower = getBorrowedBy();
+            borrowedBy.set(null, clock);
+            dueDate.set(null, clock);
             System.out.println("Book '" + title + "' returned by member: " + previousBorrower);
             return true;
         } else {
@@ -104,19 +150,21 @@ public class Book {
         System.out.println("Title: " + title);
         System.out.println("Author: " + author);
         System.out.println("ISBN: " + isbn);
-        System.out.println("Status: " + (isAvailable ? "Available" : "Borrowed by " + borrowedBy));
+        String borrower = getBorrowedBy();
+        System.out.println("Status: " + (borrower == null ? "Available" : "Borrowed by " + borrower));
         System.out.println("========================");
     }
     
     // Override toString for easy printing and debugging
     @Override
     public String toString() {
+        String borrower = getBorrowedBy();
         return "Book{" +
                 "title='" + title + '\'' +
                 ", author='" + author + '\'' +
                 ", isbn='" + isbn + '\'' +
-                ", available=" + isAvailable +
-                (borrowedBy != null ? ", borrowedBy='" + borrowedBy + '\'' : "") +
+                ", available=" + (borrower == null) +
+                (borrower != null ? ", borrowedBy='" + borrower + '\'' : "") +
                 '}';
     }
     
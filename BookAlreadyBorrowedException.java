@@ -36,7 +36,7 @@ public class BookAlreadyBorrowedException extends Exception {
     // Method to get detailed error information
     public String getDetailedMessage() {
         return String.format("Borrowing Error: Book '%s' is currently borrowed by member '%s'. " +
-                           "Please wait for the book to be returned or choose another book.", 
+                           "Place a hold to get it as soon as it is returned, or choose another book.", 
                            bookTitle, currentBorrower);
     }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+import java.time.LocalDateTime;
+
+/**
+ * Custom exception for when someone tries to borrow a book that is set aside for another member's hold
+ * Demonstrates: Exception subclassing (callers handling BookAlreadyBorrowedException still catch it)
+ */
+public class BookOnHoldException extends BookAlreadyBorrowedException {
+
+    private String heldFor;
+    private LocalDateTime pickupBy;
+
+    // Constructor with hold details
+    public BookOnHoldException(String bookTitle, String heldFor, LocalDateTime pickupBy) {
+        super("Book '" + bookTitle + "' is on hold for: " + heldFor);
+        this.heldFor = heldFor;
+        this.pickupBy = pickupBy;
+    }
+
+    // Getters for additional information
+    public String getHeldFor() {
+        return heldFor;
+    }
+
+    public LocalDateTime getPickupBy() {
+        return pickupBy;
+    }
+
+    @Override
+    public String getDetailedMessage() {
+        return String.format("Borrowing Error: %s (to be picked up by %s). " +
+                           "Place a hold to join the queue for it.",
+                           getMessage(), pickupBy.toLocalDate());
+    }
+}
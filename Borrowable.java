@@ -1,3 +1,5 @@
+import java.util.List;
+
 /**
  * Borrowable interface for Library Management System
  * Demonstrates: Interface implementation, Contract-based programming
@@ -37,6 +39,13 @@ public interface Borrowable {
      */
     int getBorrowedBooksCount(String memberId);
     
+    /**
+     * Get the titles of the books a member currently has out
+     * @param memberId The ID of the member
+     * @return titles in the order they were borrowed (empty if none)
+     */
+    List<String> getBorrowedBookTitles(String memberId);
+    
     /**
      * Check if a specific book is available for borrowing
      * @param bookTitle The title of the book to check
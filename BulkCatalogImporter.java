@@ -0,0 +1,394 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * BulkCatalogImporter - High-throughput catalog import pipeline
+ * Demonstrates: Producer/consumer pipelines, ExecutorService, BlockingQueue, Futures
+ *
+ * Streams a CSV or TSV catalog file (Title, Author, ISBN) through four stages:
+ *   1. Parsing    - the calling thread reads rows and groups them into chunks
+ *   2. Validation - chunks are validated in parallel with ValidationUtils
+ *   3. De-dup     - a single inserter thread drops titles already in the library
+ *                   or already seen earlier in the same file
+ *   4. Insertion  - accepted books are added to every library index in batches
+ *
+ * Rejected rows are written to a side file next to the input so they can be
+ * corrected and re-imported later.
+ */
+public class BulkCatalogImporter {
+
+    private static final int DEFAULT_BATCH_SIZE = 5000;
+    private static final int DEFAULT_PROGRESS_INTERVAL = 100000;
+
+    private final Library library;
+    private final int batchSize;
+    private final int validationThreads;
+    private int progressInterval = DEFAULT_PROGRESS_INTERVAL;
+
+    // Constructor
+    public BulkCatalogImporter(Library library, int batchSize, int validationThreads) {
+        if (library == null) {
+            throw new IllegalArgumentException("Library cannot be null");
+        }
+        this.library = library;
+        this.batchSize = Math.max(1, batchSize);
+        this.validationThreads = Math.max(1, validationThreads);
+    }
+
+    // Default constructor - one validation thread per core
+    public BulkCatalogImporter(Library library) {
+        this(library, DEFAULT_BATCH_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    public void setProgressInterval(int progressInterval) {
+        this.progressInterval = Math.max(1, progressInterval);
+    }
+
+    /**
+     * Import a catalog file. Files ending in ".tsv" are tab separated,
+     * everything else is treated as CSV (quoted fields are supported).
+     */
+    public ImportResult importFile(String fileName) throws IOException {
+        File file = new File(fileName);
+        if (!file.exists()) {
+            throw new FileNotFoundException("Catalog file not found: " + fileName);
+        }
+
+        char delimiter = fileName.toLowerCase().endsWith(".tsv") ? '\t' : ',';
+        File rejectFile = new File(fileName + ".rejected.txt");
+        ImportResult result = new ImportResult(rejectFile.getPath());
+
+        // Bounded queue of in-flight chunks gives the parser back-pressure
+        BlockingQueue<Future<ValidatedChunk>> pending =
+            new ArrayBlockingQueue<>(validationThreads * 2);
+        ExecutorService validators = Executors.newFixedThreadPool(validationThreads, r -> {
+            Thread thread = new Thread(r, "catalog-import-validator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long startTime = System.currentTimeMillis();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file));
+             PrintWriter rejects = new PrintWriter(new BufferedWriter(new FileWriter(rejectFile)))) {
+
+            rejects.println("# Rejected catalog rows from " + fileName);
+            rejects.println("# Format: Line,Reason,OriginalRow");
+
+            Inserter inserter = new Inserter(pending, rejects, result);
+            Thread inserterThread = new Thread(inserter, "catalog-import-inserter");
+            inserterThread.start();
+
+            try {
+                List<RawRow> chunk = new ArrayList<>(batchSize);
+                String line;
+                long lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.startsWith("#") || line.trim().isEmpty()) continue;
+                    if (lineNumber == 1 && line.toLowerCase().startsWith("title")) continue; // Header row
+
+                    chunk.add(new RawRow(lineNumber, line));
+                    if (chunk.size() >= batchSize) {
+                        submit(validators, pending, chunk, delimiter);
+                        chunk = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    submit(validators, pending, chunk, delimiter);
+                }
+            } finally {
+                // Always release the inserter, even if parsing failed part way
+                putUninterruptibly(pending, END_OF_INPUT);
+                joinUninterruptibly(inserterThread);
+            }
+
+            if (inserter.failure != null) {
+                throw new IOException("Catalog import failed: " + inserter.failure.getMessage(),
+                                      inserter.failure);
+            }
+        } finally {
+            validators.shutdownNow();
+        }
+
+        result.elapsedMillis = System.currentTimeMillis() - startTime;
+        System.out.println("✓ Catalog import finished: " + result);
+        return result;
+    }
+
+    // ==================== PIPELINE STAGES ====================
+
+    private void submit(ExecutorService validators, BlockingQueue<Future<ValidatedChunk>> pending,
+                        List<RawRow> chunk, char delimiter) throws IOException {
+        Future<ValidatedChunk> future = validators.submit(() -> validate(chunk, delimiter));
+        try {
+            pending.put(future);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Catalog import interrupted");
+        }
+    }
+
+    /**
+     * Validation stage - runs on the worker pool, touches no shared state
+     */
+    private static ValidatedChunk validate(List<RawRow> rows, char delimiter) {
+        ValidatedChunk validated = new ValidatedChunk(rows.size());
+
+        for (RawRow row : rows) {
+            List<String> fields = parseFields(row.text, delimiter);
+            if (fields.size() < 3) {
+                validated.rejected.add(row.reject("expected Title" + delimiterName(delimiter) +
+                                                  "Author" + delimiterName(delimiter) + "ISBN"));
+                continue;
+            }
+
+            String title = fields.get(0).trim();
+            String author = fields.get(1).trim();
+            String isbn = fields.get(2).trim();
+            try {
+                ValidationUtils.validateBookData(title, author, isbn);
+                validated.accepted.add(new Book(title, author, isbn));
+                validated.acceptedRows.add(row);
+            } catch (InvalidDataException e) {
+                validated.rejected.add(row.reject(e.getMessage()));
+            }
+        }
+
+        return validated;
+    }
+
+    /**
+     * De-duplication and insertion stage - a single thread consumes chunks in
+     * file order so "first row wins" for duplicate titles is deterministic.
+     * After a failure it keeps taking chunks without inserting them, so the
+     * parser is never left blocked on the queue.
+     */
+    private class Inserter implements Runnable {
+        private final BlockingQueue<Future<ValidatedChunk>> pending;
+        private final PrintWriter rejects;
+        private final ImportResult result;
+        private final HashSet<String> seenTitles = new HashSet<>();
+        private volatile Exception failure;
+
+        Inserter(BlockingQueue<Future<ValidatedChunk>> pending, PrintWriter rejects, ImportResult result) {
+            this.pending = pending;
+            this.rejects = rejects;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            long nextProgress = progressInterval;
+            try {
+                while (true) {
+                    Future<ValidatedChunk> future = pending.take();
+                    if (future == END_OF_INPUT) break;
+                    if (failure != null) continue; // Drain so the parser never blocks
+
+                    try {
+                        insert(future.get());
+                    } catch (ExecutionException e) {
+                        failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                        continue;
+                    } catch (RuntimeException e) {
+                        failure = e;
+                        continue;
+                    }
+
+                    if (result.rowsRead >= nextProgress) {
+                        System.out.printf("  ... %,d rows processed (%,d imported, %,d rejected)%n",
+                                          result.rowsRead, result.imported, result.rejected);
+                        nextProgress += progressInterval;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = e;
+            }
+        }
+
+        private void insert(ValidatedChunk chunk) {
+            int rowCount = chunk.accepted.size() + chunk.rejected.size();
+            List<Book> batch = new ArrayList<>(chunk.accepted.size());
+            List<RawRow> batchRows = new ArrayList<>(chunk.accepted.size());
+
+            for (int i = 0; i < chunk.accepted.size(); i++) {
+                Book book = chunk.accepted.get(i);
+                if (!seenTitles.add(book.getTitle()) || library.hasBook(book.getTitle())) {
+                    chunk.rejected.add(chunk.acceptedRows.get(i).reject("duplicate title"));
+                } else {
+                    batch.add(book);
+                    batchRows.add(chunk.acceptedRows.get(i));
+                }
+            }
+
+            // A title added to the library meanwhile (say by addBook) is refused here
+            Set<Book> refused = Collections.newSetFromMap(new IdentityHashMap<>());
+            refused.addAll(library.addBooksInBulk(batch));
+            for (int i = 0; i < batch.size(); i++) {
+                if (refused.contains(batch.get(i))) {
+                    chunk.rejected.add(batchRows.get(i).reject("duplicate title"));
+                }
+            }
+
+            result.imported += batch.size() - refused.size();
+            result.rejected += chunk.rejected.size();
+            result.rowsRead += rowCount;
+            for (RejectedRow rejected : chunk.rejected) {
+                rejects.printf("%d,%s,%s%n", rejected.lineNumber,
+                               rejected.reason.replace(",", "&#44;"), rejected.text);
+            }
+        }
+    }
+
+    // ==================== PARSING HELPERS ====================
+
+    /**
+     * Split a row into fields. Double-quoted fields may contain the delimiter,
+     * and a doubled quote inside them stands for a literal quote.
+     */
+    static List<String> parseFields(String line, char delimiter) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+            } else if (c == delimiter) {
+                fields.add(current.toString().replace("&#44;", ","));
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString().replace("&#44;", ","));
+
+        return fields;
+    }
+
+    private static String delimiterName(char delimiter) {
+        return delimiter == '\t' ? "<TAB>" : String.valueOf(delimiter);
+    }
+
+    private static void putUninterruptibly(BlockingQueue<Future<ValidatedChunk>> queue,
+                                           Future<ValidatedChunk> item) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(item);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    // ==================== PIPELINE DATA ====================
+
+    // Marker placed on the queue after the last chunk
+    private static final Future<ValidatedChunk> END_OF_INPUT =
+        java.util.concurrent.CompletableFuture.completedFuture(null);
+
+    private static class RawRow {
+        final long lineNumber;
+        final String text;
+
+        RawRow(long lineNumber, String text) {
+            this.lineNumber = lineNumber;
+            this.text = text;
+        }
+
+        RejectedRow reject(String reason) {
+            return new RejectedRow(lineNumber, text, reason);
+        }
+    }
+
+    private static class RejectedRow {
+        final long lineNumber;
+        final String text;
+        final String reason;
+
+        RejectedRow(long lineNumber, String text, String reason) {
+            this.lineNumber = lineNumber;
+            this.text = text;
+            this.reason = reason;
+        }
+    }
+
+    private static class ValidatedChunk {
+        final List<Book> accepted;
+        final List<RawRow> acceptedRows;
+        final List<RejectedRow> rejected = new ArrayList<>();
+
+        ValidatedChunk(int size) {
+            this.accepted = new ArrayList<>(size);
+            this.acceptedRows = new ArrayList<>(size);
+        }
+    }
+
+    /**
+     * Summary of a finished import
+     */
+    public static class ImportResult {
+        private final String rejectFile;
+        private long rowsRead;
+        private long imported;
+        private long rejected;
+        private long elapsedMillis;
+
+        ImportResult(String rejectFile) {
+            this.rejectFile = rejectFile;
+        }
+
+        public long getRowsRead() { return rowsRead; }
+        public long getImported() { return imported; }
+        public long getRejected() { return rejected; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public String getRejectFile() { return rejectFile; }
+
+        @Override
+        public String toString() {
+            return String.format("%,d rows read, %,d imported, %,d rejected in %.1fs (rejects: %s)",
+                rowsRead, imported, rejected, elapsedMillis / 1000.0, rejectFile);
+        }
+    }
+}
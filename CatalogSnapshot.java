@@ -0,0 +1,169 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * CatalogSnapshot - Immutable point-in-time view of the books and members
+ * Demonstrates: Copy-on-write, Immutable objects, Safe publication via volatile
+ *
+ * Library keeps the current snapshot in a volatile field. Readers take it with
+ * one volatile read and iterate it without any lock; writers (holding the
+ * library lock) derive a new snapshot and publish it in a single write.
+ *
+ * Appends do not copy: new entries are written past the end of the shared
+ * array, which no published snapshot can see, and only the new snapshot's
+ * count covers them. The array is copied when it is full or when an entry is
+ * removed, so adding a batch of n books costs O(n), not O(catalog size).
+ */
+public final class CatalogSnapshot {
+
+    static final CatalogSnapshot EMPTY = new CatalogSnapshot(new Book[0], 0, new Person[0], 0, 0, 0);
+
+    private final Book[] books;
+    private final int bookCount;
+    private final Person[] members;
+    private final int memberCount;
+    private final long version;
+    private final long bookVersion;
+
+    private CatalogSnapshot(Book[] books, int bookCount, Person[] members, int memberCount, long version,
+                            long bookVersion) {
+        this.books = books;
+        this.bookCount = bookCount;
+        this.members = members;
+        this.memberCount = memberCount;
+        this.version = version;
+        this.bookVersion = bookVersion;
+    }
+
+    // ==================== READERS ====================
+
+    /**
+     * Every book in catalog order (unmodifiable, never changes)
+     */
+    public List<Book> getBooks() {
+        return new ArrayView<>(books, bookCount);
+    }
+
+    /**
+     * Every member in registration order (unmodifiable, never changes)
+     */
+    public List<Person> getMembers() {
+        return new ArrayView<>(members, memberCount);
+    }
+
+    public int getBookCount() {
+        return bookCount;
+    }
+
+    public int getMemberCount() {
+        return memberCount;
+    }
+
+    /**
+     * Incremented on every published change
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Incremented when books are added or removed (member changes leave it alone)
+     */
+    public long getBookVersion() {
+        return bookVersion;
+    }
+
+    // ==================== WRITERS ====================
+    // Only call these on the most recently published snapshot while holding the
+    // library lock - appends reuse the array slots beyond this snapshot's count.
+
+    CatalogSnapshot withBooksAdded(Collection<Book> added) {
+        if (added.isEmpty()) return this;
+        Book[] array = append(books, bookCount, added);
+        return new CatalogSnapshot(array, bookCount + added.size(), members, memberCount, version + 1,
+                                   bookVersion + 1);
+    }
+
+    CatalogSnapshot withBookRemoved(Book book) {
+        Book[] array = remove(books, bookCount, book);
+        if (array == null) return this;
+        return new CatalogSnapshot(array, bookCount - 1, members, memberCount, version + 1, bookVersion + 1);
+    }
+
+    CatalogSnapshot withBooks(Collection<Book> replacement) {
+        Book[] array = replacement.toArray(new Book[0]);
+        return new CatalogSnapshot(array, array.length, members, memberCount, version + 1, bookVersion + 1);
+    }
+
+    CatalogSnapshot withMembersAdded(Collection<Person> added) {
+        if (added.isEmpty()) return this;
+        Person[] array = append(members, memberCount, added);
+        return new CatalogSnapshot(books, bookCount, array, memberCount + added.size(), version + 1,
+                                   bookVersion);
+    }
+
+    CatalogSnapshot withMemberRemoved(Person member) {
+        Person[] array = remove(members, memberCount, member);
+        if (array == null) return this;
+        return new CatalogSnapshot(books, bookCount, array, memberCount - 1, version + 1, bookVersion);
+    }
+
+    CatalogSnapshot withMembers(Collection<Person> replacement) {
+        Person[] array = replacement.toArray(new Person[0]);
+        return new CatalogSnapshot(books, bookCount, array, array.length, version + 1, bookVersion);
+    }
+
+    // Write the new entries after count, growing by 1.5x when they do not fit
+    private static <T> T[] append(T[] array, int count, Collection<? extends T> added) {
+        int needed = count + added.size();
+        if (needed > array.length) {
+            array = Arrays.copyOf(array, Math.max(needed, array.length + (array.length >> 1) + 16));
+        }
+        int index = count;
+        for (T item : added) {
+            array[index++] = item;
+        }
+        return array;
+    }
+
+    // Copy everything except the given entry; null if it is not present
+    private static <T> T[] remove(T[] array, int count, T item) {
+        for (int i = 0; i < count; i++) {
+            if (array[i] == item) {
+                T[] copy = Arrays.copyOf(array, count - 1);
+                System.arraycopy(array, i + 1, copy, i, count - i - 1);
+                return copy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fixed-size read-only list over the first size slots of an array
+     */
+    private static final class ArrayView<T> extends AbstractList<T> implements RandomAccess {
+        private final T[] array;
+        private final int size;
+
+        ArrayView(T[] array, int size) {
+            this.array = array;
+            this.size = size;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return array[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
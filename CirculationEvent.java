@@ -0,0 +1,59 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder event for one borrowBook / returnBook call
+ * Demonstrates: Custom JFR events, Annotations
+ *
+ * Only calls slower than the threshold are recorded (5 ms by default, tunable
+ * per recording - see library-events.jfc). When recording is off, begin/end
+ * cost next to nothing.
+ */
+@Name("library.Circulation")
+@Label("Circulation")
+@Category({"Library", "Circulation"})
+@Description("A borrow or return request against the library")
+@Threshold("5 ms")
+@StackTrace(false)
+public class CirculationEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Member ID")
+    String memberId;
+
+    @Label("Book Title")
+    String bookTitle;
+
+    @Label("Outcome")
+    @Description("SUCCESS, or the reason the request failed (usually an exception type)")
+    String outcome;
+
+    /**
+     * Create and start timing an event
+     */
+    public static CirculationEvent start(String operation, String memberId, String bookTitle) {
+        CirculationEvent event = new CirculationEvent();
+        event.begin();
+        event.operation = operation;
+        event.memberId = memberId;
+        event.bookTitle = bookTitle;
+        return event;
+    }
+
+    /**
+     * Stop timing and commit the event if it passes the recording's threshold
+     */
+    public void complete(String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
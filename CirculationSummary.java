@@ -0,0 +1,44 @@
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * CirculationSummary - Borrow and return totals for one period of time
+ * Demonstrates: Immutable value objects, Aggregation results
+ *
+ * Returned by Library.summarizeTransactions(from, to, unit): one summary per
+ * hour or day, starting at getPeriodStart().
+ */
+public class CirculationSummary {
+
+    private final LocalDateTime periodStart;
+    private final int borrows;
+    private final int returns;
+
+    public CirculationSummary(LocalDateTime periodStart, int borrows, int returns) {
+        this.periodStart = periodStart;
+        this.borrows = borrows;
+        this.returns = returns;
+    }
+
+    public LocalDateTime getPeriodStart() {
+        return periodStart;
+    }
+
+    public int getBorrows() {
+        return borrows;
+    }
+
+    public int getReturns() {
+        return returns;
+    }
+
+    public int getTotal() {
+        return borrows + returns;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d borrowed, %d returned",
+            periodStart.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")), borrows, returns);
+    }
+}
@@ -0,0 +1,303 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * FuzzyIndex - Typo-tolerant search over the words of titles and authors
+ * Demonstrates: n-gram candidate filtering, Bounded Levenshtein distance, Inverted indexes
+ *
+ * Every distinct word of every title and author gets an ID and is indexed by
+ * its trigrams, padded with '$' at both ends ("java" -> $$j $ja jav ava va$
+ * a$$). One edit changes at most 3 of a word's trigrams, so a word within d
+ * edits of a query word of length n shares at least n + 2 - 3d trigrams with
+ * it. A search counts shared trigrams along the query's posting lists and
+ * runs the (banded, early-exit) edit distance only on words that reach that
+ * count and whose length is within d - never on every title, or even every
+ * word. Matching words lead to their books through a second inverted index
+ * (word -> books).
+ *
+ * How many edits a query word may need depends on its length, so short
+ * words do not match everything: none up to 2 letters, 1 up to 5, and the
+ * requested maximum (at most 2) beyond that. That also keeps the trigram
+ * bound above zero for every word.
+ */
+public class FuzzyIndex {
+
+    public static final int MAX_EDITS = 2;
+    private static final int GRAM = 3;
+
+    private final Map<String, List<Book>> postings = new HashMap<>();  // Word -> books using it
+    private final Map<String, Integer> wordIds = new HashMap<>();
+    private final List<String> words = new ArrayList<>();              // ID -> word (including unused ones)
+    private final Map<String, IdList> grams = new HashMap<>();         // Trigram -> IDs of words containing it
+
+    // Scratch space for counting shared trigrams - searches and updates run one at a time
+    private int[] shared = new int[1024];
+    private final IdList touched = new IdList();
+    private int[] previousRow = new int[32];
+    private int[] currentRow = new int[32];
+
+    // ==================== SEARCH ====================
+
+    /**
+     * Books whose title or author has, for every word of the query, a word
+     * within the allowed number of edits - closest matches first
+     */
+    public synchronized List<Book> search(String query, int maxEdits) {
+        Map<Book, Integer> matches = null;
+        for (String word : wordsOf(query)) {
+            Map<Book, Integer> wordMatches = booksNear(word, allowedEdits(word.length(), maxEdits));
+            matches = matches == null ? wordMatches : intersect(matches, wordMatches);
+            if (matches.isEmpty()) break;
+        }
+        if (matches == null) {
+            return new ArrayList<>();
+        }
+
+        List<Map.Entry<Book, Integer>> ranked = new ArrayList<>(matches.entrySet());
+        ranked.sort((a, b) -> {
+            int byEdits = Integer.compare(a.getValue(), b.getValue());
+            return byEdits != 0 ? byEdits : a.getKey().getTitle().compareToIgnoreCase(b.getKey().getTitle());
+        });
+        List<Book> results = new ArrayList<>(ranked.size());
+        for (Map.Entry<Book, Integer> match : ranked) {
+            results.add(match.getKey());
+        }
+        return results;
+    }
+
+    /**
+     * Edits a query word of this length may need to match (see the class comment)
+     */
+    public static int allowedEdits(int length, int maxEdits) {
+        int byLength = length <= 2 ? 0 : length <= 5 ? 1 : MAX_EDITS;
+        return Math.max(0, Math.min(maxEdits, byLength));
+    }
+
+    // Each book with a word within edits of the query word, with the fewest edits it needed
+    private Map<Book, Integer> booksNear(String word, int edits) {
+        Map<Book, Integer> books = new IdentityHashMap<>();
+        if (edits == 0) {
+            addBooks(books, word, 0);
+            return books;
+        }
+
+        if (shared.length < words.size()) {
+            shared = new int[Math.max(words.size(), shared.length * 2)];
+        }
+        for (String gram : gramsOf(word)) {
+            IdList ids = grams.get(gram);
+            if (ids == null) continue;
+            for (int i = 0; i < ids.size; i++) {
+                int id = ids.ids[i];
+                if (shared[id]++ == 0) {
+                    touched.add(id);
+                }
+            }
+        }
+
+        int needed = word.length() + GRAM - 1 - GRAM * edits;
+        for (int i = 0; i < touched.size; i++) {
+            int id = touched.ids[i];
+            if (shared[id] >= needed) {
+                String candidate = words.get(id);
+                if (Math.abs(candidate.length() - word.length()) <= edits) {
+                    int distance = distance(word, candidate, edits);
+                    if (distance <= edits) {
+                        addBooks(books, candidate, distance);
+                    }
+                }
+            }
+            shared[id] = 0;
+        }
+        touched.size = 0;
+        return books;
+    }
+
+    private void addBooks(Map<Book, Integer> books, String word, int edits) {
+        List<Book> using = postings.get(word);
+        if (using != null) {
+            for (Book book : using) {
+                books.merge(book, edits, Math::min);
+            }
+        }
+    }
+
+    // Books in both, with the edits added up
+    private static Map<Book, Integer> intersect(Map<Book, Integer> a, Map<Book, Integer> b) {
+        Map<Book, Integer> smaller = a.size() <= b.size() ? a : b;
+        Map<Book, Integer> larger = smaller == a ? b : a;
+        Map<Book, Integer> both = new IdentityHashMap<>();
+        for (Map.Entry<Book, Integer> entry : smaller.entrySet()) {
+            Integer other = larger.get(entry.getKey());
+            if (other != null) {
+                both.put(entry.getKey(), entry.getValue() + other);
+            }
+        }
+        return both;
+    }
+
+    // ==================== MAINTENANCE ====================
+    // Called by Library while it holds its lock
+
+    synchronized void rebuild(Collection<Book> books) {
+        postings.clear();
+        wordIds.clear();
+        words.clear();
+        grams.clear();
+        for (Book book : books) {
+            bookAdded(book);
+        }
+    }
+
+    synchronized void bookAdded(Book book) {
+        for (String word : wordsOf(book)) {
+            List<Book> using = postings.get(word);
+            if (using == null) {
+                using = new ArrayList<>(1);
+                postings.put(word, using);
+                if (!wordIds.containsKey(word)) {
+                    indexWord(word);
+                }
+            }
+            using.add(book);
+        }
+    }
+
+    synchronized void bookRemoved(Book book) {
+        for (String word : wordsOf(book)) {
+            List<Book> using = postings.get(word);
+            if (using != null && using.removeIf(b -> b == book) && using.isEmpty()) {
+                postings.remove(word); // Its trigrams stay until the index is compacted
+            }
+        }
+        if (words.size() > 2 * postings.size() + 1000) {
+            // Mostly unused words: index the used ones again
+            wordIds.clear();
+            words.clear();
+            grams.clear();
+            for (String word : postings.keySet()) {
+                indexWord(word);
+            }
+        }
+    }
+
+    public synchronized int getWordCount() {
+        return postings.size();
+    }
+
+    private void indexWord(String word) {
+        int id = words.size();
+        words.add(word);
+        wordIds.put(word, id);
+        for (String gram : gramsOf(word)) {
+            grams.computeIfAbsent(gram, key -> new IdList()).add(id);
+        }
+    }
+
+    // ==================== DISTANCE ====================
+
+    /**
+     * Levenshtein distance, computed only in the diagonal band that can stay
+     * within limit and abandoned once a whole row exceeds it
+     * @return the distance, or limit + 1 if it is larger than limit
+     */
+    private int distance(String a, String b, int limit) {
+        int columns = b.length() + 1;
+        if (previousRow.length < columns) {
+            previousRow = new int[columns * 2];
+            currentRow = new int[columns * 2];
+        }
+        int[] previous = previousRow;
+        int[] current = currentRow;
+        int outside = limit + 1;
+        for (int j = 0; j < columns; j++) {
+            previous[j] = Math.min(j, outside);
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - limit);
+            int to = Math.min(columns - 1, i + limit);
+            current[0] = Math.min(i, outside);
+            if (from > 1) {
+                current[from - 1] = outside;
+            }
+            int rowMinimum = from > 1 ? outside : current[0];
+            char ca = a.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int substitute = previous[j - 1] + (ca == b.charAt(j - 1) ? 0 : 1);
+                int value = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+                current[j] = Math.min(value, outside);
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if (to + 1 < columns) {
+                current[to + 1] = outside;
+            }
+            if (rowMinimum > limit) {
+                return outside;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[columns - 1];
+    }
+
+    // ==================== WORDS ====================
+
+    private static Set<String> wordsOf(Book book) {
+        Set<String> words = wordsOf(book.getTitle());
+        words.addAll(wordsOf(book.getAuthor()));
+        return words;
+    }
+
+    // Distinct lower-case runs of letters and digits
+    private static Set<String> wordsOf(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        String lower = text.toLowerCase();
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean inWord = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    // Padded trigrams; a repeated trigram is numbered ("ana", "ana2") so counts compare as multisets
+    private static List<String> gramsOf(String word) {
+        String padded = "$$" + word + "$$";
+        List<String> result = new ArrayList<>(word.length() + GRAM - 1);
+        Map<String, Integer> seen = new HashMap<>();
+        for (int i = 0; i + GRAM <= padded.length(); i++) {
+            String gram = padded.substring(i, i + GRAM);
+            int occurrence = seen.merge(gram, 1, Integer::sum);
+            result.add(occurrence == 1 ? gram : gram + occurrence);
+        }
+        return result;
+    }
+
+    /**
+     * Growable list of word IDs
+     */
+    private static class IdList {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * HoldQueues - First-come, first-served hold queues per title
+ * Demonstrates: FIFO queues (ArrayDeque), TreeSet deadlines, Nested static classes
+ *
+ * A member who finds a title out places a hold instead of trying again and
+ * again. Holds on a title wait in the order they were placed; when the copy
+ * comes back it is set aside for the hold at the head of the queue, which
+ * becomes "ready" with a pickup deadline. Until then nobody else can borrow
+ * it. A ready hold that is not picked up in time expires and the copy passes
+ * to the next hold in line.
+ *
+ * Ready holds are also kept in a TreeSet by pickup deadline, so finding the
+ * expired ones costs O(log n) plus the holds that expired, however many
+ * holds are waiting. Library decides when a copy is on the shelf and calls
+ * the maintenance methods while it holds its lock.
+ */
+public class HoldQueues {
+
+    public static final Duration DEFAULT_PICKUP_WINDOW = Duration.ofDays(3);
+
+    private static final Comparator<Hold> BY_PICKUP_DEADLINE =
+        Comparator.comparing(Hold::getPickupBy).thenComparing(Hold::getBookTitle);
+
+    private final Map<String, ArrayDeque<Hold>> queues = new HashMap<>();   // Title -> holds, oldest first
+    private final Map<String, Set<Hold>> byMember = new HashMap<>();        // Member ID -> their holds
+    private final TreeSet<Hold> readyByDeadline = new TreeSet<>(BY_PICKUP_DEADLINE);
+    private Duration pickupWindow = DEFAULT_PICKUP_WINDOW;
+    private int size;
+
+    // ==================== QUERIES ====================
+
+    /**
+     * Holds on a title, the next in line first
+     */
+    public synchronized List<Hold> queueFor(String bookTitle) {
+        ArrayDeque<Hold> queue = queues.get(bookTitle);
+        return queue == null ? new ArrayList<>() : new ArrayList<>(queue);
+    }
+
+    /**
+     * @return the member's place in the title's queue (1 = next in line), or 0 if they have no hold on it
+     */
+    public synchronized int position(String bookTitle, String memberId) {
+        ArrayDeque<Hold> queue = queues.get(bookTitle);
+        if (queue != null) {
+            int position = 1;
+            for (Hold hold : queue) {
+                if (hold.memberId.equals(memberId)) {
+                    return position;
+                }
+                position++;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the hold the title's copy is set aside for, or null if it is not set aside
+     */
+    public synchronized Hold readyHold(String bookTitle) {
+        ArrayDeque<Hold> queue = queues.get(bookTitle);
+        return queue != null && queue.peekFirst().isReady() ? queue.peekFirst() : null;
+    }
+
+    public synchronized boolean hasHolds(String bookTitle) {
+        return queues.containsKey(bookTitle);
+    }
+
+    /**
+     * Holds placed by a member, oldest first
+     */
+    public synchronized List<Hold> holdsOf(String memberId) {
+        Set<Hold> holds = byMember.get(memberId);
+        return holds == null ? new ArrayList<>() : new ArrayList<>(holds);
+    }
+
+    /**
+     * @return the earliest pickup deadline of any ready hold, or null if none are ready
+     */
+    public synchronized LocalDateTime nextPickupDeadline() {
+        return readyByDeadline.isEmpty() ? null : readyByDeadline.first().getPickupBy();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int readyCount() {
+        return readyByDeadline.size();
+    }
+
+    public synchronized Duration getPickupWindow() {
+        return pickupWindow;
+    }
+
+    public synchronized void setPickupWindow(Duration pickupWindow) {
+        if (pickupWindow == null || pickupWindow.isNegative() || pickupWindow.isZero()) {
+            throw new IllegalArgumentException("The pickup window must be positive");
+        }
+        this.pickupWindow = pickupWindow;
+    }
+
+    // ==================== MAINTENANCE ====================
+    // Called by Library while it holds its lock
+
+    /**
+     * Put a hold at the back of the title's queue
+     * @return the new hold, or null if the member already has one on the title
+     */
+    synchronized Hold place(String bookTitle, String memberId, LocalDateTime now) {
+        if (position(bookTitle, memberId) > 0) {
+            return null;
+        }
+        Hold hold = new Hold(bookTitle, memberId, now, null);
+        append(hold);
+        return hold;
+    }
+
+    /**
+     * Take a member's hold off the title's queue (cancelled, or picked up)
+     * @return the removed hold, or null if there was none; if it was ready
+     *         the copy is free again until promote is called
+     */
+    synchronized Hold remove(String bookTitle, String memberId) {
+        ArrayDeque<Hold> queue = queues.get(bookTitle);
+        if (queue == null) {
+            return null;
+        }
+        for (Iterator<Hold> it = queue.iterator(); it.hasNext(); ) {
+            Hold hold = it.next();
+            if (hold.memberId.equals(memberId)) {
+                it.remove();
+                forget(hold);
+                if (queue.isEmpty()) {
+                    queues.remove(bookTitle);
+                }
+                return hold;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The title's copy is on the shelf: set it aside for the next hold in
+     * line, who has until now + the pickup window to borrow it
+     * @return the hold that just became ready, or null if there is no
+     *         queue or its head is ready already
+     */
+    synchronized Hold promote(String bookTitle, LocalDateTime now) {
+        ArrayDeque<Hold> queue = queues.get(bookTitle);
+        if (queue == null || queue.peekFirst().isReady()) {
+            return null;
+        }
+        Hold next = queue.peekFirst();
+        next.pickupBy = now.plus(pickupWindow);
+        readyByDeadline.add(next);
+        return next;
+    }
+
+    /**
+     * Remove the ready holds whose pickup deadline is before now, earliest
+     * first; each one's copy is free again until promote is called
+     */
+    synchronized List<Hold> takeExpired(LocalDateTime now) {
+        List<Hold> expired = new ArrayList<>();
+        while (!readyByDeadline.isEmpty() && readyByDeadline.first().getPickupBy().isBefore(now)) {
+            Hold hold = readyByDeadline.first();
+            remove(hold.bookTitle, hold.memberId);
+            expired.add(hold);
+        }
+        return expired;
+    }
+
+    /**
+     * Remove every hold a member has placed (when the member is removed)
+     */
+    synchronized List<Hold> removeMember(String memberId) {
+        List<Hold> removed = new ArrayList<>();
+        for (Hold hold : holdsOf(memberId)) {
+            removed.add(remove(hold.bookTitle, hold.memberId));
+        }
+        return removed;
+    }
+
+    /**
+     * Start over from loaded holds, in the order they were placed. Holds
+     * for the same member and title after the first are dropped, and only
+     * the head of a title's queue whose copy is on the shelf stays (or
+     * becomes) ready.
+     */
+    synchronized void rebuild(Collection<Hold> holds, Predicate<String> onShelf, LocalDateTime now) {
+        queues.clear();
+        byMember.clear();
+        readyByDeadline.clear();
+        size = 0;
+        for (Hold hold : holds) {
+            if (position(hold.bookTitle, hold.memberId) == 0) {
+                LocalDateTime pickupBy = hold.pickupBy;
+                hold.pickupBy = null;
+                append(hold);
+                ArrayDeque<Hold> queue = queues.get(hold.bookTitle);
+                if (pickupBy != null && queue.size() == 1 && onShelf.test(hold.bookTitle)) {
+                    hold.pickupBy = pickupBy;
+                    readyByDeadline.add(hold);
+                }
+            }
+        }
+        for (String title : new ArrayList<>(queues.keySet())) {
+            if (onShelf.test(title)) {
+                promote(title, now);
+            }
+        }
+    }
+
+    /**
+     * Every hold in file format, queue by queue
+     */
+    synchronized List<String> records() {
+        List<String> records = new ArrayList<>(size);
+        for (ArrayDeque<Hold> queue : queues.values()) {
+            for (Hold hold : queue) {
+                records.add(hold.toFileFormat());
+            }
+        }
+        return records;
+    }
+
+    private void append(Hold hold) {
+        queues.computeIfAbsent(hold.bookTitle, key -> new ArrayDeque<>()).addLast(hold);
+        byMember.computeIfAbsent(hold.memberId, key -> new LinkedHashSet<>()).add(hold);
+        size++;
+    }
+
+    private void forget(Hold hold) {
+        if (hold.isReady()) {
+            readyByDeadline.remove(hold);
+        }
+        Set<Hold> holds = byMember.get(hold.memberId);
+        if (holds != null && holds.remove(hold) && holds.isEmpty()) {
+            byMember.remove(hold.memberId);
+        }
+        size--;
+    }
+
+    /**
+     * One member waiting for one title
+     */
+    public static class Hold {
+        private final String bookTitle;
+        private final String memberId;
+        private final LocalDateTime placedAt;
+        private LocalDateTime pickupBy;     // Set while the copy is set aside for this hold
+
+        Hold(String bookTitle, String memberId, LocalDateTime placedAt, LocalDateTime pickupBy) {
+            this.bookTitle = bookTitle;
+            this.memberId = memberId;
+            this.placedAt = placedAt;
+            this.pickupBy = pickupBy;
+        }
+
+        public String getBookTitle() {
+            return bookTitle;
+        }
+
+        public String getMemberId() {
+            return memberId;
+        }
+
+        public LocalDateTime getPlacedAt() {
+            return placedAt;
+        }
+
+        /**
+         * @return when a ready hold expires, or null while the hold is still waiting
+         */
+        public LocalDateTime getPickupBy() {
+            return pickupBy;
+        }
+
+        public boolean isReady() {
+            return pickupBy != null;
+        }
+
+        // Title,MemberId,PlacedAt[,PickupBy]
+        String toFileFormat() {
+            return bookTitle.replace(",", "&#44;") + "," + memberId + "," + placedAt
+                 + (pickupBy != null ? "," + pickupBy : "");
+        }
+
+        /**
+         * Parse one holds.txt record (null if malformed)
+         */
+        static Hold fromFileFormat(String line) {
+            String[] parts = line.split(",");
+            if (parts.length < 3) {
+                return null;
+            }
+            try {
+                return new Hold(parts[0].replace("&#44;", ","), parts[1], LocalDateTime.parse(parts[2]),
+                                parts.length > 3 ? LocalDateTime.parse(parts[3]) : null);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "'" + bookTitle + "' for " + memberId
+                 + (pickupBy != null ? " (ready until " + pickupBy + ")" : " (waiting since " + placedAt + ")");
+        }
+    }
+}
@@ -1,40 +1,150 @@
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Library class - Main management system for books and members
  * Demonstrates: Interface implementation, Collections (ArrayList, HashMap), 
  * Exception handling, CRUD operations
  * 
- * This class implements the Borrowable interface and manages all library operations
+ * This class implements the Borrowable interface and manages all library operations.
+ * Public operations are synchronized on the library, so one instance can safely be
+ * shared by the console, the HTTP front end and background threads. Catalog searches
+ * are the exception: they read an immutable CatalogSnapshot and never take the lock.
+ * Reports pin a VersionClock version and then run outside the lock, reading book
+ * availability and loan counts as of that one moment while circulation continues.
  */
 public class Library implements Borrowable {
     
     // Collections to store library data
-    private ArrayList<Book> books;              // Dynamic list of all books
-    private ArrayList<Person> members;          // Dynamic list of all members
+    private volatile CatalogSnapshot catalog;   // Published books and members (copy-on-write)
     private HashMap<String, Book> bookLookup;   // Fast lookup by book title
-    private HashMap<String, Person> memberLookup; // Fast lookup by member ID
-    private LinkedList<Transaction> transactionHistory; // Transaction history (FIFO)
-    private TreeSet<Transaction> sortedTransactions;    // Sorted transactions (newest first)
+    private MemberIndex memberLookup;           // Fast lookup by encoded member ID
+    private TransactionHistory transactionHistory;       // Recent transactions in memory, older ones on disk
     
     // Library information
     private String libraryName;
+    private String dataDirectory = "data";       // Where books/members/transactions files live
+    private String reportsDirectory = "reports"; // Where generated reports are written
+    
+    // Latency histograms and outcome counters for the hot operations
+    private final LibraryMetrics metrics = new LibraryMetrics();
+    
+    // Results of recent title, author and keyword searches, patched as books come and go
+    private final SearchResultCache searchCache = new SearchResultCache();
+    
+    // Title and author completions ranked by how often they are borrowed
+    private final AutocompleteIndex autocomplete = new AutocompleteIndex();
+    
+    // Title and author words for typo-tolerant search
+    private final FuzzyIndex fuzzyIndex = new FuzzyIndex();
+    
+    // Title and author words with BM25 impacts for relevance-ranked search
+    private final RankedSearchIndex rankedIndex = new RankedSearchIndex();
+    
+    // Members by type, borrowing limit, name trigrams and whether they have loans
+    private final MemberSearchIndex memberSearch = new MemberSearchIndex();
+    
+    // Member ID -> titles of the books they have out, in borrow order (members with none are absent)
+    private final Map<String, Set<String>> loansByMember = new HashMap<>();
+    
+    // Outstanding loans by due date
+    private final LoanSchedule loanSchedule = new LoanSchedule();
+    
+    // Members waiting for titles that are out, first come first served (saved in full to holds.txt)
+    private final HoldQueues holds = new HoldQueues();
+    private boolean holdsChanged;   // Holds changed since the last save
+    private final List<Consumer<HoldQueues.Hold>> holdReadyListeners = new CopyOnWriteArrayList<>();
+    
+    // Each committed transaction, in commit order, for consumers that run off the lock (see subscribeToTransactions)
+    private final TransactionRingBuffer transactionEvents = new TransactionRingBuffer();
+    
+    // Versions of book availability and member loan counts, for point-in-time reports
+    private final VersionClock versions = new VersionClock();
+    
+    // Books and members changed since the last save (null = removed), keyed by title / member ID
+    private static final String BOOKS_DELTA = "books.delta.txt";
+    private static final String MEMBERS_DELTA = "members.delta.txt";
+    private static final int MIN_FOLD_RECORDS = 1000;
+    private final LinkedHashMap<String, Book> changedBooks = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Person> changedMembers = new LinkedHashMap<>();
+    private String baseFilesDirectory;  // Directory whose books.txt/members.txt the deltas apply to
+    // Each rewrite of books.txt/members.txt gets a new generation, stamped in its header and in
+    // the header of each delta file written on top of it; a delta with another stamp is stale
+    private static final String GENERATION_HEADER = "# Generation: ";
+    private long booksGeneration;       // Generation of books.txt in baseFilesDirectory (guarded by saveLock)
+    private long membersGeneration;     // Generation of members.txt in baseFilesDirectory (guarded by saveLock)
+    private int deltaRecords;           // Records in the delta files
+    
+    // Saves and loads run one at a time on saveLock, which is never taken while holding the library lock
+    private final Object saveLock = new Object();
+    private volatile boolean syncWrites;            // Force saved files to the storage device
+    private volatile PersistenceService persistence; // Background saving, if started
+    private final Object persistenceLock = new Object();
+    
+    // Sealing of transactions the hot window has outgrown, off the borrow/return path (see spillHistory)
+    private final ExecutorService historySpiller = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "library-history-spill");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean spillPending = new AtomicBoolean();
+    
+    // Hold-ready listeners are called here, in the order the holds became ready, never under the library lock
+    private final ExecutorService holdNotifier = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "library-hold-notifications");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Background merging of small transaction segments (see compactTransactionHistory)
+    private final Object compactionLock = new Object();
+    private ScheduledExecutorService compactionScheduler;
+    
+    // Periodic overdue checks (see startOverdueChecks)
+    private final Object overdueLock = new Object();
+    private ScheduledExecutorService overdueScheduler;
+    private final List<Consumer<LoanSchedule.Loan>> overdueListeners = new CopyOnWriteArrayList<>();
+    
+    // The stored transaction history is read after startup (see loadFromFiles); until then
+    // transactionHistory holds only what was recorded since
+    private FutureTask<LoadedHistory> historyLoader;   // Null once the history is loaded
+    private File historyStore;                              // The store historyLoader reads
+    private boolean historyWarmup = true;                   // Read it on a background thread straight away
     
     // Constructor
     public Library(String libraryName) {
         this.libraryName = libraryName;
-        this.books = new ArrayList<>();
-        this.members = new ArrayList<>();
+        this.catalog = CatalogSnapshot.EMPTY;
         this.bookLookup = new HashMap<>();
-        this.memberLookup = new HashMap<>();
-        this.transactionHistory = new LinkedList<>();
-        this.sortedTransactions = new TreeSet<>();
+        this.memberLookup = new MemberIndex();
+        this.transactionHistory = new TransactionHistory();
+        this.transactionHistory.setSpillRequest(this::requestHistorySpill);
         
         System.out.println("Library '" + libraryName + "' initialized successfully!");
     }
@@ -49,7 +159,7 @@ public class Library implements Borrowable {
     /**
      * Add a new book to the library with validation
      */
-    public boolean addBook(Book book) throws InvalidDataException {
+    public synchronized boolean addBook(Book book) throws InvalidDataException {
         if (book == null) {
             throw new InvalidDataException("book", "null", "valid Book object");
         }
@@ -64,8 +174,13 @@ public class Library implements Borrowable {
                 return false;
             }
             
-            books.add(book);
             bookLookup.put(book.getTitle(), book);
+            catalog = catalog.withBooksAdded(Collections.singletonList(book));
+            searchCache.booksAdded(Collections.singletonList(book), catalog.getBookVersion());
+            autocomplete.bookAdded(book);
+            fuzzyIndex.bookAdded(book);
+            rankedIndex.bookAdded(book);
+            bookChanged(book);
             System.out.println("✓ Book '" + book.getTitle() + "' added to library successfully!");
             return true;
             
@@ -81,7 +196,7 @@ public class Library implements Borrowable {
     /**
      * Add a new book with individual parameters and validation
      */
-    public boolean addBook(String title, String author, String isbn) {
+    public synchronized boolean addBook(String title, String author, String isbn) {
         try {
             ValidationUtils.validateBookData(title, author, isbn);
             Book book = new Book(title, author, isbn);
@@ -95,69 +210,180 @@ public class Library implements Borrowable {
     /**
      * Remove a book from the library
      */
-    public boolean removeBook(String title) throws BookNotFoundException {
+    public synchronized boolean removeBook(String title) throws BookNotFoundException {
         Book book = findBookByTitle(title);
         
         if (!book.isAvailable()) {
             System.out.println("Error: Cannot remove book '" + title + "' - currently borrowed!");
             return false;
         }
+        if (holds.hasHolds(book.getTitle())) {
+            System.out.println("Error: Cannot remove book '" + title + "' - members have holds on it!");
+            return false;
+        }
         
-        books.remove(book);
         bookLookup.remove(title);
+        catalog = catalog.withBookRemoved(book);
+        searchCache.bookRemoved(book, catalog.getBookVersion());
+        autocomplete.bookRemoved(book);
+        fuzzyIndex.bookRemoved(book);
+        rankedIndex.bookRemoved(book);
+        bookRemoved(title);
         System.out.println("✓ Book '" + title + "' removed from library successfully!");
         return true;
     }
     
     /**
-     * Search for books by title (partial match)
+     * Search for books by title (partial match); repeated queries are answered from searchCache
      */
     public List<Book> searchBooksByTitle(String searchTerm) {
-        List<Book> results = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        SearchEvent event = SearchEvent.start(LibraryMetrics.SEARCH_TITLE, searchTerm);
         String searchLower = searchTerm.toLowerCase();
+        List<Book> results = cachedSearch("title:" + searchLower,
+                                          book -> book.getTitle().toLowerCase().contains(searchLower));
         
-        for (Book book : books) {
-            if (book.getTitle().toLowerCase().contains(searchLower)) {
-                results.add(book);
-            }
-        }
-        
+        metrics.recordSuccess(LibraryMetrics.SEARCH_TITLE, startNanos);
+        event.complete(results.size());
         return results;
     }
     
     /**
-     * Search for books by author (partial match)
+     * Search for books by author (partial match); repeated queries are answered from searchCache
      */
     public List<Book> searchBooksByAuthor(String author) {
-        List<Book> results = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        SearchEvent event = SearchEvent.start(LibraryMetrics.SEARCH_AUTHOR, author);
         String authorLower = author.toLowerCase();
+        List<Book> results = cachedSearch("author:" + authorLower,
+                                          book -> book.getAuthor().toLowerCase().contains(authorLower));
         
-        for (Book book : books) {
-            if (book.getAuthor().toLowerCase().contains(authorLower)) {
-                results.add(book);
+        metrics.recordSuccess(LibraryMetrics.SEARCH_AUTHOR, startNanos);
+        event.complete(results.size());
+        return results;
+    }
+    
+    // Answer a search from the cache, or scan the current catalog and cache what matched
+    private List<Book> cachedSearch(String key, Predicate<Book> matcher) {
+        List<Book> results = searchCache.get(key);
+        if (results == null) {
+            CatalogSnapshot snapshot = catalog;
+            results = new ArrayList<>();
+            for (Book book : snapshot.getBooks()) {
+                if (matcher.test(book)) {
+                    results.add(book);
+                }
             }
+            searchCache.put(key, matcher, results, snapshot.getBookVersion());
         }
-        
         return results;
     }
     
+    /**
+     * Typo-tolerant search: books whose title or author has, for every word of
+     * the query, a word at most maxEdits edits away (fewer for short words, see
+     * FuzzyIndex), closest matches first. Uses a trigram index over the
+     * catalog's words instead of comparing the query with every title.
+     */
+    public List<Book> searchBooksFuzzy(String query, int maxEdits) {
+        long startNanos = System.nanoTime();
+        SearchEvent event = SearchEvent.start(LibraryMetrics.SEARCH_FUZZY, query);
+        List<Book> results = query == null ? new ArrayList<>() : fuzzyIndex.search(query, maxEdits);
+        metrics.recordSuccess(LibraryMetrics.SEARCH_FUZZY, startNanos);
+        event.complete(results.size());
+        return results;
+    }
+    
+    /**
+     * Relevance-ranked keyword search: the limit books whose titles and authors
+     * best match the words of the query by BM25 (title matches count double),
+     * best first. Unlike searchBooksByKeywords a book needs only some of the
+     * words, and the search reads just enough of RankedSearchIndex's posting
+     * lists to be sure of the top limit, however many books match.
+     */
+    public List<Book> searchBooksRanked(String query, int limit) {
+        long startNanos = System.nanoTime();
+        SearchEvent event = SearchEvent.start(LibraryMetrics.SEARCH_RANKED, query);
+        List<Book> results = query == null ? new ArrayList<>() : rankedIndex.search(query, limit);
+        metrics.recordSuccess(LibraryMetrics.SEARCH_RANKED, startNanos);
+        event.complete(results.size());
+        return results;
+    }
+    
+    /**
+     * Hit/miss counts and size of the search result cache
+     */
+    public SearchResultCache getSearchCache() {
+        return searchCache;
+    }
+    
+    /**
+     * Suggest up to limit book titles and authors with a word starting with
+     * prefix, most borrowed first. Cheap enough to call on every keystroke:
+     * it does not scan the catalog or take the library lock.
+     */
+    public List<AutocompleteIndex.Suggestion> autocomplete(String prefix, int limit) {
+        long startNanos = System.nanoTime();
+        SearchEvent event = SearchEvent.start(LibraryMetrics.AUTOCOMPLETE, prefix);
+        List<AutocompleteIndex.Suggestion> suggestions =
+            prefix == null ? new ArrayList<>() : autocomplete.suggest(prefix, limit);
+        metrics.recordSuccess(LibraryMetrics.AUTOCOMPLETE, startNanos);
+        event.complete(suggestions.size());
+        return suggestions;
+    }
+    
     /**
      * Find exact book by title
      */
-    public Book findBookByTitle(String title) throws BookNotFoundException {
+    public synchronized Book findBookByTitle(String title) throws BookNotFoundException {
         Book book = bookLookup.get(title);
         if (book == null) {
             throw new BookNotFoundException("Book '" + title + "' not found in library!");
         }
         return book;
     }
-    
+
+    /**
+     * Check whether a book with this exact title is already in the library
+     */
+    public synchronized boolean hasBook(String title) {
+        return bookLookup.containsKey(title);
+    }
+
+    /**
+     * Add a batch of pre-validated books to every index in one pass.
+     * Used by BulkCatalogImporter - skips per-book validation and console
+     * output, but still refuses duplicate titles. The whole batch becomes
+     * visible to searches at once, as a single new catalog snapshot.
+     * @return the books refused because their title is already in the library
+     */
+    public synchronized List<Book> addBooksInBulk(List<Book> batch) {
+        List<Book> added = new ArrayList<>(batch.size());
+        List<Book> refused = new ArrayList<>();
+        for (Book book : batch) {
+            if (bookLookup.putIfAbsent(book.getTitle(), book) != null) {
+                refused.add(book);
+            } else {
+                added.add(book);
+                autocomplete.bookAdded(book);
+                fuzzyIndex.bookAdded(book);
+                rankedIndex.bookAdded(book);
+                bookChanged(book);
+            }
+        }
+        catalog = catalog.withBooksAdded(added);
+        if (!added.isEmpty()) {
+            searchCache.booksAdded(added, catalog.getBookVersion());
+        }
+        return refused;
+    }
+
     // ==================== MEMBER MANAGEMENT METHODS ====================
     
     /**
      * Add a new member to the library with validation
      */
-    public boolean addMember(Person member) throws InvalidDataException {
+    public synchronized boolean addMember(Person member) throws InvalidDataException {
         if (member == null) {
             throw new InvalidDataException("member", "null", "valid Person object");
         }
@@ -184,8 +410,10 @@ public class Library implements Borrowable {
                 return false;
             }
             
-            members.add(member);
-            memberLookup.put(member.getId(), member);
+            memberLookup.put(member);
+            catalog = catalog.withMembersAdded(Collections.singletonList(member));
+            memberSearch.memberAdded(member, currentLoans(member));
+            memberChanged(member);
             System.out.println("✓ Member '" + member.getName() + "' added to library successfully!");
             return true;
             
@@ -201,17 +429,22 @@ public class Library implements Borrowable {
     /**
      * Remove a member from the library
      */
-    public boolean removeMember(String memberId) throws MemberNotFoundException {
+    public synchronized boolean removeMember(String memberId) throws MemberNotFoundException {
         Person member = findMemberById(memberId);
         
         // Check if member has borrowed books
-        if (getBorrowedBooksCount(memberId) > 0) {
+        if (loansByMember.containsKey(member.getId())) {
             System.out.println("Error: Cannot remove member '" + member.getName() + "' - has borrowed books!");
             return false;
         }
         
-        members.remove(member);
         memberLookup.remove(memberId);
+        catalog = catalog.withMemberRemoved(member);
+        memberSearch.memberRemoved(member);
+        for (HoldQueues.Hold hold : holds.removeMember(member.getId())) {
+            holdRemoved(hold, LocalDateTime.now());
+        }
+        memberRemoved(member.getId());
         System.out.println("✓ Member '" + member.getName() + "' removed from library successfully!");
         return true;
     }
@@ -219,7 +452,7 @@ public class Library implements Borrowable {
     /**
      * Find member by ID
      */
-    public Person findMemberById(String memberId) throws MemberNotFoundException {
+    public synchronized Person findMemberById(String memberId) throws MemberNotFoundException {
         Person member = memberLookup.get(memberId);
         if (member == null) {
             throw new MemberNotFoundException("Member with ID '" + memberId + "' not found!");
@@ -230,7 +463,9 @@ public class Library implements Borrowable {
     // ==================== BORROWABLE INTERFACE IMPLEMENTATION ====================
     
     @Override
-    public boolean borrowBook(String memberId, String bookTitle) {
+    public synchronized boolean borrowBook(String memberId, String bookTitle) {
+        long startNanos = System.nanoTime();
+        CirculationEvent event = CirculationEvent.start(LibraryMetrics.BORROW, memberId, bookTitle);
         Transaction transaction = null;
         try {
             // Validate input
@@ -241,10 +476,16 @@ public class Library implements Borrowable {
             Person member = findMemberById(memberId);
             Book book = findBookByTitle(bookTitle);
             
-            // Check if book is available
+            // Check if book is available, and not set aside for someone else's hold
             if (!book.isAvailable()) {
                 throw new BookAlreadyBorrowedException(bookTitle, book.getBorrowedBy());
             }
+            LocalDateTime now = LocalDateTime.now();
+            expireHolds(now);
+            HoldQueues.Hold ready = holds.readyHold(book.getTitle());
+            if (ready != null && !ready.getMemberId().equals(member.getId())) {
+                throw new BookOnHoldException(book.getTitle(), ready.getMemberId(), ready.getPickupBy());
+            }
             
             // Check if member can borrow more books
             if (!canMemberBorrowMore(memberId)) {
@@ -254,92 +495,142 @@ public class Library implements Borrowable {
                     currentBooks, maxBooks, member.getPersonType());
             }
             
-            // Perform borrowing operation
-            book.borrowBook(memberId);
+            // Perform borrowing operation (record the canonical ID, e.g. S001 for S0001)
+            memberId = member.getId();
+            LocalDateTime due = now.plusDays(member.getLoanPeriodDays());
+            book.borrowBook(memberId, due, versions);
+            if (ready != null) {
+                holds.remove(book.getTitle(), memberId); // Picked up
+                holdsChanged();
+            }
+            loansByMember.computeIfAbsent(memberId, key -> new LinkedHashSet<>()).add(book.getTitle());
+            loanSchedule.loanStarted(book.getTitle(), memberId, due);
+            bookChanged(book);
+            memberChanged(member);
             
             // Update member's borrowed count
             if (member instanceof Student) {
-                ((Student) member).borrowBook();
+                ((Student) member).borrowBook(versions);
             } else if (member instanceof Staff) {
-                ((Staff) member).borrowBook();
+                ((Staff) member).borrowBook(versions);
             }
+            memberSearch.loansChanged(member, currentLoans(member));
             
             // Record transaction
             transaction = new Transaction(memberId, member.getName(), 
                 bookTitle, book.getIsbn(), Transaction.TransactionType.BORROW);
+            transaction.setDueDate(due);
             transactionHistory.add(transaction);
-            sortedTransactions.add(transaction);
+            autocomplete.bookBorrowed(bookTitle);
             
-            System.out.println("✓ Book '" + bookTitle + "' borrowed by '" + member.getName() + "' successfully!");
-            return true;
+            System.out.println("✓ Book '" + bookTitle + "' borrowed by '" + member.getName() + "' successfully!" +
+                               " Due back " + due.toLocalDate() + ".");
+            transactionEvents.publish(transaction);
+            return circulationSucceeded(LibraryMetrics.BORROW, startNanos, event);
             
         } catch (BookNotFoundException e) {
             System.out.println("Borrowing failed: " + e.getMessage());
-            return false;
+            return circulationFailed(LibraryMetrics.BORROW, startNanos, event, e);
         } catch (MemberNotFoundException e) {
             System.out.println("Borrowing failed: " + e.getMessage());
-            return false;
+            return circulationFailed(LibraryMetrics.BORROW, startNanos, event, e);
         } catch (BookAlreadyBorrowedException e) {
             System.out.println("Borrowing failed: " + e.getDetailedMessage());
-            return false;
+            return circulationFailed(LibraryMetrics.BORROW, startNanos, event, e);
         } catch (MaxBooksExceededException e) {
             System.out.println("Borrowing failed: " + e.getMessage());
             System.out.println(e.getSuggestion());
-            return false;
+            return circulationFailed(LibraryMetrics.BORROW, startNanos, event, e);
         } catch (InvalidDataException e) {
             System.out.println("Borrowing failed: " + e.getValidationHelp());
-            return false;
+            return circulationFailed(LibraryMetrics.BORROW, startNanos, event, e);
         } catch (Exception e) {
             System.out.println("Unexpected error during borrowing: " + e.getMessage());
             // Rollback transaction if it was created
             if (transaction != null) {
-                transactionHistory.remove(transaction);
-                sortedTransactions.remove(transaction);
+                transactionHistory.removeNewest(transaction);
             }
-            return false;
+            return circulationFailed(LibraryMetrics.BORROW, startNanos, event, e);
         }
     }
     
     @Override
-    public boolean returnBook(String memberId, String bookTitle) {
+    public synchronized boolean returnBook(String memberId, String bookTitle) {
+        long startNanos = System.nanoTime();
+        CirculationEvent event = CirculationEvent.start(LibraryMetrics.RETURN, memberId, bookTitle);
         try {
             // Find member and book
             Person member = findMemberById(memberId);
             Book book = findBookByTitle(bookTitle);
             
             // Check if this member actually borrowed this book
+            memberId = member.getId();
             if (book.isAvailable() || !memberId.equals(book.getBorrowedBy())) {
                 System.out.println("Error: Member '" + member.getName() + "' did not borrow this book!");
-                return false;
+                return circulationFailed(LibraryMetrics.RETURN, startNanos, event, "NotBorrowedByMember");
             }
             
             // Perform return operation
-            book.returnBook();
+            book.returnBook(versions);
+            loanReturned(memberId, book.getTitle());
+            loanSchedule.loanEnded(book.getTitle());
+            bookChanged(book);
+            memberChanged(member);
             
             // Update member's borrowed count
             if (member instanceof Student) {
-                ((Student) member).returnBook();
+                ((Student) member).returnBook(versions);
             } else if (member instanceof Staff) {
-                ((Staff) member).returnBook();
+                ((Staff) member).returnBook(versions);
             }
+            memberSearch.loansChanged(member, currentLoans(member));
             
             // Record transaction
             Transaction transaction = new Transaction(memberId, member.getName(), 
                 bookTitle, book.getIsbn(), Transaction.TransactionType.RETURN);
             transactionHistory.add(transaction);
-            sortedTransactions.add(transaction);
             
             System.out.println("✓ Book '" + bookTitle + "' returned by '" + member.getName() + "' successfully!");
-            return true;
+            
+            transactionEvents.publish(transaction);
+            
+            // Set the copy aside for the next hold in line
+            HoldQueues.Hold ready = holds.promote(book.getTitle(), LocalDateTime.now());
+            if (ready != null) {
+                holdReady(ready);
+            }
+            return circulationSucceeded(LibraryMetrics.RETURN, startNanos, event);
             
         } catch (BookNotFoundException | MemberNotFoundException e) {
             System.out.println("Return failed: " + e.getMessage());
-            return false;
+            return circulationFailed(LibraryMetrics.RETURN, startNanos, event, e);
         }
     }
     
+    // Record the outcome of a borrow/return in both the metrics and the flight recorder,
+    // and commit whatever the operation changed so reports pinned from now on see it
+    private boolean circulationSucceeded(String operation, long startNanos, CirculationEvent event) {
+        versions.commit();
+        metrics.recordSuccess(operation, startNanos);
+        event.complete("SUCCESS");
+        return true;
+    }
+    
+    private boolean circulationFailed(String operation, long startNanos, CirculationEvent event,
+                                      Throwable cause) {
+        return circulationFailed(operation, startNanos, event, cause.getClass().getSimpleName());
+    }
+    
+    private boolean circulationFailed(String operation, long startNanos, CirculationEvent event,
+                                      String reason) {
+        versions.commit();
+        metrics.recordFailure(operation, startNanos, reason);
+        event.complete(reason);
+        return false;
+    }
+    
     @Override
-    public boolean canMemberBorrowMore(String memberId) {
+    public synchronized boolean canMemberBorrowMore(String memberId) {
         try {
             Person member = findMemberById(memberId);
             
@@ -356,27 +647,69 @@ public class Library implements Borrowable {
     }
     
     @Override
-    public int getBorrowedBooksCount(String memberId) {
+    public synchronized int getBorrowedBooksCount(String memberId) {
         try {
-            Person member = findMemberById(memberId);
-            
-            if (member instanceof Student) {
-                return ((Student) member).getCurrentBorrowedBooks();
-            } else if (member instanceof Staff) {
-                return ((Staff) member).getCurrentBorrowedBooks();
-            }
-            
-            return 0;
+            return currentLoans(findMemberById(memberId));
         } catch (MemberNotFoundException e) {
             return 0;
         }
     }
     
     @Override
-    public boolean isBookAvailable(String bookTitle) {
+    public synchronized List<String> getBorrowedBookTitles(String memberId) {
+        try {
+            Set<String> titles = loansByMember.get(findMemberById(memberId).getId());
+            return titles == null ? new ArrayList<>() : new ArrayList<>(titles);
+        } catch (MemberNotFoundException e) {
+            return new ArrayList<>();
+        }
+    }
+    
+    private void loanReturned(String memberId, String title) {
+        Set<String> titles = loansByMember.get(memberId);
+        if (titles != null && titles.remove(title) && titles.isEmpty()) {
+            loansByMember.remove(memberId);
+        }
+    }
+    
+    // Build loansByMember from the loaded books (the only catalog scan it needs)
+    private void rebuildLoans() {
+        loansByMember.clear();
+        for (Book book : catalog.getBooks()) {
+            String borrowedBy = book.getBorrowedBy();
+            if (borrowedBy != null) {
+                Person member = memberLookup.get(borrowedBy);
+                String memberId = member != null ? member.getId() : borrowedBy;
+                loansByMember.computeIfAbsent(memberId, key -> new LinkedHashSet<>()).add(book.getTitle());
+            }
+        }
+    }
+    
+    // Current loan count of a member
+    private static int currentLoans(Person member) {
+        if (member instanceof Student) {
+            return ((Student) member).getCurrentBorrowedBooks();
+        } else if (member instanceof Staff) {
+            return ((Staff) member).getCurrentBorrowedBooks();
+        }
+        return 0;
+    }
+    
+    // Loan count of a member as of a pinned version
+    private int getBorrowedBooksCountAt(Person member, long version) {
+        if (member instanceof Student) {
+            return ((Student) member).getCurrentBorrowedBooksAt(version);
+        } else if (member instanceof Staff) {
+            return ((Staff) member).getCurrentBorrowedBooksAt(version);
+        }
+        return 0;
+    }
+    
+    @Override
+    public synchronized boolean isBookAvailable(String bookTitle) {
         try {
             Book book = findBookByTitle(bookTitle);
-            return book.isAvailable();
+            return book.isAvailable() && holds.readyHold(book.getTitle()) == null;
         } catch (BookNotFoundException e) {
             return false;
         }
@@ -387,9 +720,10 @@ public class Library implements Borrowable {
     /**
      * Display all available books
      */
-    public void displayAvailableBooks() {
+    public synchronized void displayAvailableBooks() {
         System.out.println("\n=== AVAILABLE BOOKS IN " + libraryName.toUpperCase() + " ===");
         
+        List<Book> books = catalog.getBooks();
         if (books.isEmpty()) {
             System.out.println("No books in library.");
             return;
@@ -412,9 +746,10 @@ public class Library implements Borrowable {
     /**
      * Display all members
      */
-    public void displayAllMembers() {
+    public synchronized void displayAllMembers() {
         System.out.println("\n=== ALL MEMBERS IN " + libraryName.toUpperCase() + " ===");
         
+        List<Person> members = catalog.getMembers();
         if (members.isEmpty()) {
             System.out.println("No members registered.");
             return;
@@ -431,15 +766,16 @@ public class Library implements Borrowable {
     /**
      * Display library statistics
      */
-    public void displayLibraryStats() {
+    public synchronized void displayLibraryStats() {
         System.out.println("\n=== " + libraryName.toUpperCase() + " STATISTICS ===");
-        System.out.println("Total Books: " + books.size());
-        System.out.println("Total Members: " + members.size());
+        CatalogSnapshot snapshot = catalog;
+        System.out.println("Total Books: " + snapshot.getBookCount());
+        System.out.println("Total Members: " + snapshot.getMemberCount());
         
         int availableBooks = 0;
         int borrowedBooks = 0;
         
-        for (Book book : books) {
+        for (Book book : snapshot.getBooks()) {
             if (book.isAvailable()) {
                 availableBooks++;
             } else {
@@ -449,22 +785,31 @@ public class Library implements Borrowable {
         
         System.out.println("Available Books: " + availableBooks);
         System.out.println("Borrowed Books: " + borrowedBooks);
+        System.out.println("Holds: " + holds.size() + " (" + holds.readyCount() + " ready for pickup)");
         System.out.println("Students: " + countStudents());
         System.out.println("Staff: " + countStaff());
     }
     
     // Helper methods
     private int countStudents() {
+        return countStudents(catalog);
+    }
+    
+    private int countStaff() {
+        return countStaff(catalog);
+    }
+    
+    private static int countStudents(CatalogSnapshot snapshot) {
         int count = 0;
-        for (Person member : members) {
+        for (Person member : snapshot.getMembers()) {
             if (member instanceof Student) count++;
         }
         return count;
     }
     
-    private int countStaff() {
+    private static int countStaff(CatalogSnapshot snapshot) {
         int count = 0;
-        for (Person member : members) {
+        for (Person member : snapshot.getMembers()) {
             if (member instanceof Staff) count++;
         }
         return count;
@@ -476,11 +821,73 @@ public class Library implements Borrowable {
     }
     
     public int getTotalBooks() {
-        return books.size();
+        return catalog.getBookCount();
     }
     
     public int getTotalMembers() {
-        return members.size();
+        return catalog.getMemberCount();
+    }
+    
+    public int getAvailableBookCount() {
+        int available = 0;
+        for (Book book : catalog.getBooks()) {
+            if (book.isAvailable()) available++;
+        }
+        return available;
+    }
+    
+    /**
+     * Read-only snapshot of every book, in catalog order
+     */
+    public List<Book> getAllBooks() {
+        return catalog.getBooks();
+    }
+    
+    /**
+     * Read-only snapshot of every member, in registration order
+     */
+    public List<Person> getAllMembers() {
+        return catalog.getMembers();
+    }
+    
+    /**
+     * The current catalog snapshot - books and members as of one moment,
+     * unaffected by later additions and removals
+     */
+    public CatalogSnapshot getCatalogSnapshot() {
+        return catalog;
+    }
+    
+    public LibraryMetrics getMetrics() {
+        return metrics;
+    }
+    
+    public VersionClock getVersionClock() {
+        return versions;
+    }
+    
+    public String getDataDirectory() {
+        return dataDirectory;
+    }
+    
+    public void setDataDirectory(String dataDirectory) {
+        if (dataDirectory != null && !dataDirectory.trim().isEmpty()) {
+            this.dataDirectory = dataDirectory.trim();
+        } else {
+            System.out.println("Error: Data directory cannot be empty!");
+        }
+    }
+    
+    public String getReportsDirectory() {
+        return reportsDirectory;
+    }
+    
+    public void setReportsDirectory(String reportsDirectory) {
+        if (reportsDirectory != null && !reportsDirectory.trim().isEmpty()) {
+            this.reportsDirectory = reportsDirectory.trim();
+        } else {
+            System.out.println("Error: Reports directory cannot be empty!");
+        }
     }
     
     // ==================== ADVANCED SEARCH METHODS ====================
@@ -489,10 +896,13 @@ public class Library implements Borrowable {
      * Advanced book search with multiple criteria
      */
     public List<Book> advancedBookSearch(String title, String author, String isbn, Boolean available) {
+        long startNanos = System.nanoTime();
+        SearchEvent event = SearchEvent.start(LibraryMetrics.SEARCH_ADVANCED,
+            "title=" + title + ", author=" + author + ", isbn=" + isbn + ", available=" + available);
         List<Book> results = new ArrayList<>();
         
         try {
-            for (Book book : books) {
+            for (Book book : catalog.getBooks()) {
                 boolean matches = true;
                 
                 // Check title (case-insensitive partial match)
@@ -527,10 +937,13 @@ public class Library implements Borrowable {
                     results.add(book);
                 }
             }
+            metrics.recordSuccess(LibraryMetrics.SEARCH_ADVANCED, startNanos);
         } catch (Exception e) {
             System.out.println("Error during advanced search: " + e.getMessage());
+            metrics.recordFailure(LibraryMetrics.SEARCH_ADVANCED, startNanos, e);
         }
         
+        event.complete(results.size());
         return results;
     }
     
@@ -538,360 +951,1467 @@ public class Library implements Borrowable {
      * Search books by multiple keywords in title or author
      */
     public List<Book> searchBooksByKeywords(String... keywords) {
+        long startNanos = System.nanoTime();
         List<Book> results = new ArrayList<>();
         
         if (keywords == null || keywords.length == 0) {
             return results;
         }
+        SearchEvent event = SearchEvent.start(LibraryMetrics.SEARCH_KEYWORDS, String.join(" ", keywords));
         
         try {
-            for (Book book : books) {
-                boolean allKeywordsFound = true;
+            // Order and repeats do not change which books match, so the cache key ignores them
+            TreeSet<String> terms = new TreeSet<>();
+            for (String keyword : keywords) {
+                if (keyword != null && !keyword.trim().isEmpty()) {
+                    terms.add(keyword.toLowerCase().trim());
+                }
+            }
+            results = cachedSearch("keywords:" + String.join("\u0000", terms), book -> {
                 String searchText = (book.getTitle() + " " + book.getAuthor()).toLowerCase();
-                
-                for (String keyword : keywords) {
-                    if (keyword != null && !keyword.trim().isEmpty()) {
-                        if (!searchText.contains(keyword.toLowerCase().trim())) {
-                            allKeywordsFound = false;
-                            break;
-                        }
+                for (String term : terms) {
+                    if (!searchText.contains(term)) {
+                        return false;
                     }
                 }
-                
-                if (allKeywordsFound) {
-                    results.add(book);
-                }
-            }
+                return true;
+            });
+            metrics.recordSuccess(LibraryMetrics.SEARCH_KEYWORDS, startNanos);
         } catch (Exception e) {
             System.out.println("Error during keyword search: " + e.getMessage());
+            metrics.recordFailure(LibraryMetrics.SEARCH_KEYWORDS, startNanos, e);
         }
         
+        event.complete(results.size());
         return results;
     }
     
     /**
-     * Search members by type and other criteria
+     * Search members by type and other criteria, answered from memberSearch
+     * (results in catalog order)
      */
     public List<Person> searchMembers(String memberType, String namePattern, Integer maxBooksFilter) {
+        long startNanos = System.nanoTime();
+        SearchEvent event = SearchEvent.start(LibraryMetrics.SEARCH_MEMBERS,
+            "type=" + memberType + ", name=" + namePattern + ", maxBooks=" + maxBooksFilter);
         List<Person> results = new ArrayList<>();
         
         try {
-            for (Person member : members) {
-                boolean matches = true;
-                
-                // Check member type
-                if (memberType != null && !memberType.trim().isEmpty()) {
-                    if (!member.getPersonType().equalsIgnoreCase(memberType.trim())) {
-                        matches = false;
-                    }
-                }
-                
-                // Check name pattern
-                if (namePattern != null && !namePattern.trim().isEmpty()) {
-                    if (!member.getName().toLowerCase().contains(namePattern.toLowerCase().trim())) {
-                        matches = false;
-                    }
-                }
-                
-                // Check max books filter
-                if (maxBooksFilter != null) {
-                    if (member.getMaxBooks() != maxBooksFilter.intValue()) {
-                        matches = false;
-                    }
-                }
-                
-                if (matches) {
-                    results.add(member);
-                }
-            }
+            results = memberSearch.search(memberType, namePattern, maxBooksFilter);
+            metrics.recordSuccess(LibraryMetrics.SEARCH_MEMBERS, startNanos);
         } catch (Exception e) {
             System.out.println("Error during member search: " + e.getMessage());
+            metrics.recordFailure(LibraryMetrics.SEARCH_MEMBERS, startNanos, e);
         }
         
+        event.complete(results.size());
         return results;
     }
     
     /**
-     * Find overdue members (for future enhancement - placeholder)
+     * Members who currently have at least one book out (see findOverdueMembers)
      */
-    public List<Person> findMembersWithBorrowedBooks() {
-        List<Person> results = new ArrayList<>();
-        
-        try {
-            for (Person member : members) {
-                if (getBorrowedBooksCount(member.getId()) > 0) {
-                    results.add(member);
-                }
+    public synchronized List<Person> findMembersWithBorrowedBooks() {
+        return memberSearch.membersWithLoans();
+    }
+    
+    /**
+     * Members with at least one overdue loan, most overdue first
+     */
+    public synchronized List<Person> findOverdueMembers() {
+        Set<Person> members = new LinkedHashSet<>();
+        for (LoanSchedule.Loan loan : loanSchedule.overdueAt(LocalDateTime.now())) {
+            Person member = memberLookup.get(loan.getMemberId());
+            if (member != null) {
+                members.add(member);
             }
-        } catch (Exception e) {
-            System.out.println("Error finding members with borrowed books: " + e.getMessage());
         }
-        
-        return results;
+        return new ArrayList<>(members);
+    }
+    
+    /**
+     * Loans past their due date, most overdue first
+     */
+    public List<LoanSchedule.Loan> getOverdueLoans() {
+        return loanSchedule.overdueAt(LocalDateTime.now());
+    }
+    
+    /**
+     * Loans falling due within the given time from now, soonest first
+     */
+    public List<LoanSchedule.Loan> getLoansDueWithin(Duration window) {
+        LocalDateTime now = LocalDateTime.now();
+        return loanSchedule.dueBetween(now, now.plus(window));
     }
     
     // ==================== TRANSACTION HISTORY METHODS ====================
     
     /**
-     * Display recent transactions
+     * Display recent transactions (read from a history view, without the library lock)
      */
     public void displayRecentTransactions(int count) {
         System.out.println("\n=== RECENT TRANSACTIONS ===");
-        if (transactionHistory.isEmpty()) {
-            System.out.println("No transactions recorded.");
-            return;
-        }
-        
-        int displayed = 0;
-        for (Transaction transaction : sortedTransactions) {
-            if (displayed >= count) break;
-            transaction.displayTransaction();
-            displayed++;
+        try (TransactionHistory.View history = historyView()) {
+            if (history.isEmpty()) {
+                System.out.println("No transactions recorded.");
+                return;
+            }
+            
+            int displayed = 0;
+            for (Transaction transaction : history.newestFirst()) {
+                if (displayed >= count) break;
+                transaction.displayTransaction();
+                displayed++;
+            }
+        } catch (UncheckedIOException e) {
+            System.out.println("Error reading transaction history: " + e.getMessage());
         }
     }
     
     /**
-     * Display all transactions for a specific member
+     * Display all transactions for a specific member; only the segment blocks
+     * that can hold the member's transactions are read, without the library lock
      */
     public void displayMemberTransactions(String memberId) {
         System.out.println("\n=== TRANSACTIONS FOR MEMBER: " + memberId + " ===");
-        boolean found = false;
-        
-        for (Transaction transaction : sortedTransactions) {
-            if (transaction.getMemberId().equals(memberId)) {
-                transaction.displayTransaction();
-                found = true;
-            }
+        // Transactions record the canonical ID (S001 for S0001); the member index needs the lock
+        String canonicalId;
+        synchronized (this) {
+            Person member = memberLookup.get(memberId);
+            canonicalId = member != null ? member.getId() : memberId;
+        }
+        List<Transaction> memberTransactions;
+        try (TransactionHistory.View history = historyView()) {
+            memberTransactions = history.forMember(canonicalId);
+        } catch (IOException e) {
+            System.out.println("Error reading transaction history: " + e.getMessage());
+            return;
         }
         
-        if (!found) {
+        for (Transaction transaction : memberTransactions) {
+            transaction.displayTransaction();
+        }
+        if (memberTransactions.isEmpty()) {
             System.out.println("No transactions found for this member.");
         }
     }
     
+    // A snapshot of the full history to read outside the library lock
+    private TransactionHistory.View historyView() {
+        return withLoadedHistory(TransactionHistory::view);
+    }
+    
     /**
      * Get transaction count
      */
     public int getTransactionCount() {
-        return transactionHistory.size();
+        return withLoadedHistory(TransactionHistory::size);
     }
     
-    // ==================== FILE I/O METHODS ====================
+    /**
+     * How many of the most recent transactions are kept in memory; older ones
+     * are moved to on-disk segments and read back only when needed
+     */
+    public synchronized void setTransactionHotWindow(int capacity) {
+        transactionHistory.setHotCapacity(capacity);
+    }
+    
+    public synchronized int getTransactionHotWindow() {
+        return transactionHistory.getHotCapacity();
+    }
     
     /**
-     * Save all library data to files
+     * Transactions recorded from (inclusive) to (exclusive), oldest first.
+     * Seeks to the hours in range through the history's hourly index under
+     * the lock, then reads them from a view without it.
+     * @throws UncheckedIOException if a segment in range cannot be read
      */
-    public void saveToFiles() {
-        try {
-            saveBooksToFile();
-            saveMembersToFile();
-            saveTransactionsToFile();
-            System.out.println("✓ All library data saved successfully!");
+    public List<Transaction> transactionsBetween(LocalDateTime from, LocalDateTime to) {
+        checkRange(from, to);
+        try (TransactionHistory.View history = withLoadedHistory(loaded -> loaded.viewBetween(from, to))) {
+            return history.between(from, to);
         } catch (IOException e) {
-            System.out.println("Error saving library data: " + e.getMessage());
+            throw new UncheckedIOException(e);
         }
     }
     
     /**
-     * Load all library data from files
+     * Number of transactions recorded from (inclusive) to (exclusive)
      */
-    public void loadFromFiles() {
-        try {
-            loadBooksFromFile();
-            loadMembersFromFile();
-            loadTransactionsFromFile();
-            System.out.println("✓ All library data loaded successfully!");
-        } catch (IOException e) {
-            System.out.println("Error loading library data: " + e.getMessage());
-        }
+    public long countTransactionsBetween(LocalDateTime from, LocalDateTime to) {
+        checkRange(from, to);
+        return withLoadedHistory(history -> history.countBetween(from, to));
     }
     
     /**
-     * Save books to file
+     * Borrow/return totals per hour or day (unit HOURS or DAYS) from (inclusive)
+     * to (exclusive); periods without circulation are left out
      */
-    private void saveBooksToFile() throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter("data/books.txt"))) {
-            writer.println("# Library Books Data");
-            writer.println("# Format: Title,Author,ISBN,Available,BorrowedBy");
-            
-            for (Book book : books) {
-                String borrowedBy = book.getBorrowedBy() != null ? book.getBorrowedBy() : "";
-                writer.printf("%s,%s,%s,%b,%s%n",
-                    book.getTitle().replace(",", "&#44;"),
-                    book.getAuthor().replace(",", "&#44;"),
-                    book.getIsbn(),
-                    book.isAvailable(),
-                    borrowedBy
-                );
-            }
+    public List<CirculationSummary> summarizeTransactions(LocalDateTime from, LocalDateTime to, ChronoUnit unit) {
+        checkRange(from, to);
+        return withLoadedHistory(history -> history.summarize(from, to, unit));
+    }
+    
+    /**
+     * Look up one transaction by ID; older history is searched through the
+     * segment block index, so only blocks that can hold the ID are read
+     * (from a view, without holding the lock)
+     * @return the transaction, or null if there is none
+     */
+    public Transaction findTransaction(String transactionId) {
+        if (transactionId == null || transactionId.trim().isEmpty()) {
+            return null;
+        }
+        try (TransactionHistory.View history = historyView()) {
+            return history.find(transactionId.trim());
+        }
+    }
+    
+    // Called by the history (under the library lock) when its hot window is over capacity
+    private void requestHistorySpill() {
+        if (spillPending.compareAndSet(false, true)) {
+            historySpiller.execute(this::spillHistory);
         }
     }
     
     /**
-     * Save members to file
+     * Seal the transactions the hot window has outgrown and drop them from
+     * memory. Planned and applied under the library lock, written without it,
+     * and run under saveLock so it never races a save sealing the same store.
      */
-    private void saveMembersToFile() throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter("data/members.txt"))) {
-            writer.println("# Library Members Data");
-            writer.println("# Format: Type,ID,Name,Email,Phone,ExtraInfo,BorrowedBooks");
+    private void spillHistory() {
+        spillPending.set(false);
+        synchronized (saveLock) {
+            TransactionHistory history;
+            TransactionHistory.SealPlan plan;
+            synchronized (this) {
+                history = transactionHistory;
+                if (history.dropSealed()) {
+                    return; // A save sealed them meanwhile
+                }
+                try {
+                    plan = history.planSpill();
+                } catch (IOException e) {
+                    System.out.println("Warning: Could not move old transactions to disk: " + e.getMessage());
+                    return;
+                }
+            }
             
-            for (Person member : members) {
-                String extraInfo = "";
-                int borrowedBooks = 0;
-                
-                if (member instanceof Student) {
-                    Student student = (Student) member;
-                    extraInfo = (student.getCourse() != null ? student.getCourse() : "") + 
-                               "|" + student.getYear();
-                    borrowedBooks = student.getCurrentBorrowedBooks();
-                } else if (member instanceof Staff) {
-                    Staff staff = (Staff) member;
-                    extraInfo = (staff.getDepartment() != null ? staff.getDepartment() : "") + 
-                               "|" + (staff.getPosition() != null ? staff.getPosition() : "");
-                    borrowedBooks = staff.getCurrentBorrowedBooks();
+            try {
+                plan.execute();
+            } catch (IOException e) {
+                // Kept in memory; the history asks again once another quarter window has built up
+                System.out.println("Warning: Could not move old transactions to disk: " + e.getMessage());
+                return;
+            }
+            
+            TransactionHistory.ManifestUpdate manifest;
+            synchronized (this) {
+                manifest = history.applySeal(plan);
+                history.dropSealed();
+            }
+            if (manifest != null) {
+                try {
+                    manifest.write();
+                } catch (IOException e) {
+                    System.out.println("Warning: Could not update " + plan.getManifestFile() + ": " + e.getMessage());
                 }
-                
-                writer.printf("%s,%s,%s,%s,%s,%s,%d%n",
-                    member.getPersonType(),
-                    member.getId(),
-                    member.getName().replace(",", "&#44;"),
-                    member.getEmail(),
-                    member.getPhoneNumber() != null ? member.getPhoneNumber() : "",
-                    extraInfo.replace(",", "&#44;"),
-                    borrowedBooks
-                );
             }
         }
     }
     
     /**
-     * Save transactions to file
+     * Compaction strips member names and notes from transactions older than
+     * this many days (negative keeps them forever, the default)
      */
-    private void saveTransactionsToFile() throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter("data/transactions.txt"))) {
-            writer.println("# Library Transactions Data");
-            writer.println("# Format: TransactionID,MemberID,MemberName,BookTitle,BookISBN,Type,Timestamp,Notes");
-            
-            for (Transaction transaction : transactionHistory) {
-                writer.println(transaction.toFileFormat());
-            }
-        }
+    public synchronized void setTransactionRetentionDays(int days) {
+        transactionHistory.setRetentionDays(days);
     }
     
     /**
-     * Load books from file
+     * Merge small transaction segments and apply the retention policy. Each
+     * step is planned and applied under the library lock, but the segment
+     * reading and writing in between, and the manifest write and deletion of
+     * the replaced segments after, run without it.
+     * @return number of segments rewritten
      */
-    private void loadBooksFromFile() throws IOException {
-        File file = new File("data/books.txt");
-        if (!file.exists()) {
-            System.out.println("Books file not found. Starting with empty book collection.");
+    public int compactTransactionHistory() {
+        synchronized (compactionLock) {
+            int rewritten = 0;
+            while (true) {
+                TransactionHistory.CompactionPlan plan = withLoadedHistory(TransactionHistory::planCompaction);
+                if (plan == null) {
+                    return rewritten;
+                }
+                try {
+                    plan.execute();
+                    TransactionHistory.ManifestUpdate manifest;
+                    synchronized (this) {
+                        manifest = transactionHistory.applyCompaction(plan);
+                    }
+                    if (manifest == null) {
+                        return rewritten; // History was reloaded meanwhile
+                    }
+                    manifest.write();
+                    rewritten += plan.getSegmentCount();
+                } catch (IOException e) {
+                    System.out.println("Error compacting transactions " + plan.describe() + ": " + e.getMessage());
+                    return rewritten;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Compact the transaction history every periodSeconds on a daemon thread
+     */
+    public void startHistoryCompaction(long periodSeconds) {
+        synchronized (compactionLock) {
+            stopHistoryCompaction();
+            compactionScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "library-history-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactionScheduler.scheduleWithFixedDelay(this::compactTransactionHistory, periodSeconds,
+                                                       periodSeconds, TimeUnit.SECONDS);
+        }
+    }
+    
+    public void stopHistoryCompaction() {
+        synchronized (compactionLock) {
+            if (compactionScheduler != null) {
+                compactionScheduler.shutdownNow();
+                compactionScheduler = null;
+            }
+        }
+    }
+    
+    // ==================== OVERDUE CHECKS ====================
+    
+    /**
+     * Call the listener with each loan as it becomes overdue (while overdue
+     * checks are running; the first check reports every loan already overdue).
+     * Listeners run on the checking thread without the library lock held.
+     */
+    public void addOverdueListener(Consumer<LoanSchedule.Loan> listener) {
+        overdueListeners.add(listener);
+    }
+    
+    public void removeOverdueListener(Consumer<LoanSchedule.Loan> listener) {
+        overdueListeners.remove(listener);
+    }
+    
+    /**
+     * Check for newly overdue loans (and expire holds not picked up in time)
+     * every periodSeconds on a background thread
+     */
+    public void startOverdueChecks(long periodSeconds) {
+        synchronized (overdueLock) {
+            stopOverdueChecks();
+            overdueScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "library-overdue-checks");
+                thread.setDaemon(true);
+                return thread;
+            });
+            overdueScheduler.scheduleWithFixedDelay(() -> {
+                checkOverdueLoans();
+                expireHolds();
+            }, 0, periodSeconds, TimeUnit.SECONDS);
+        }
+    }
+    
+    public void stopOverdueChecks() {
+        synchronized (overdueLock) {
+            if (overdueScheduler != null) {
+                overdueScheduler.shutdownNow();
+                overdueScheduler = null;
+            }
+        }
+    }
+    
+    /**
+     * Hand each loan that became overdue since the last check to the overdue
+     * listeners (only the loans that just passed their due date are visited).
+     * Takes only the loan schedule's lock, never the library's, so listeners
+     * run on the calling thread while borrowing and returning carry on; call
+     * it without holding the library lock.
+     * @return how many loans became overdue
+     */
+    public int checkOverdueLoans() {
+        List<LoanSchedule.Loan> newlyOverdue = loanSchedule.takeNewlyOverdue(LocalDateTime.now());
+        for (LoanSchedule.Loan loan : newlyOverdue) {
+            for (Consumer<LoanSchedule.Loan> listener : overdueListeners) {
+                try {
+                    listener.accept(loan);
+                } catch (RuntimeException e) {
+                    System.out.println("Error in overdue listener: " + e.getMessage());
+                }
+            }
+        }
+        return newlyOverdue.size();
+    }
+    
+    // ==================== TRANSACTION EVENTS ====================
+    
+    /**
+     * Hand every transaction committed from now on to the handler, in commit
+     * order and in batches, on a thread of its own. Borrowing and returning
+     * never wait for it: a handler that falls a whole ring behind is told how
+     * many events it missed (see TransactionRingBuffer). Handlers must not
+     * change the transactions they are given.
+     */
+    public TransactionRingBuffer.Subscription subscribeToTransactions(String name,
+                                                                      TransactionRingBuffer.Handler handler) {
+        return transactionEvents.subscribe(name, handler);
+    }
+    
+    public TransactionRingBuffer getTransactionEvents() {
+        return transactionEvents;
+    }
+    
+    // ==================== HOLDS ====================
+    
+    /**
+     * Join the queue for a title that is out (or set aside for another
+     * member). When the copy comes back it is set aside for the member at the
+     * head of the queue for the pickup window, and the hold-ready listeners
+     * are told, so members wait to be called rather than trying again.
+     */
+    public synchronized boolean placeHold(String memberId, String bookTitle) {
+        try {
+            ValidationUtils.validateNotEmpty(memberId, "member ID");
+            ValidationUtils.validateNotEmpty(bookTitle, "book title");
+            Person member = findMemberById(memberId);
+            Book book = findBookByTitle(bookTitle);
+            memberId = member.getId();
+            LocalDateTime now = LocalDateTime.now();
+            expireHolds(now);
+            
+            if (memberId.equals(book.getBorrowedBy())) {
+                System.out.println("Error: Member '" + member.getName() + "' already has '" + book.getTitle() + "'!");
+                return false;
+            }
+            if (book.isAvailable() && !holds.hasHolds(book.getTitle())) {
+                System.out.println("'" + book.getTitle() + "' is available - no hold needed, borrow it now.");
+                return false;
+            }
+            if (holds.place(book.getTitle(), memberId, now) == null) {
+                System.out.println("Error: Member '" + member.getName() + "' already has a hold on '"
+                                   + book.getTitle() + "'!");
+                return false;
+            }
+            holdsChanged();
+            System.out.println("✓ Hold placed on '" + book.getTitle() + "' for '" + member.getName() +
+                               "' - number " + holds.position(book.getTitle(), memberId) + " in the queue.");
+            return true;
+        } catch (BookNotFoundException | MemberNotFoundException e) {
+            System.out.println("Hold failed: " + e.getMessage());
+            return false;
+        } catch (InvalidDataException e) {
+            System.out.println("Hold failed: " + e.getValidationHelp());
+            return false;
+        }
+    }
+    
+    /**
+     * Leave a title's queue; a copy set aside for the member passes to the next in line
+     */
+    public synchronized boolean cancelHold(String memberId, String bookTitle) {
+        try {
+            Person member = findMemberById(memberId);
+            Book book = findBookByTitle(bookTitle);
+            HoldQueues.Hold hold = holds.remove(book.getTitle(), member.getId());
+            if (hold == null) {
+                System.out.println("Error: Member '" + member.getName() + "' has no hold on '" + book.getTitle() + "'!");
+                return false;
+            }
+            holdRemoved(hold, LocalDateTime.now());
+            System.out.println("✓ Hold on '" + book.getTitle() + "' for '" + member.getName() + "' cancelled.");
+            return true;
+        } catch (BookNotFoundException | MemberNotFoundException e) {
+            System.out.println("Cancelling hold failed: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Holds on a title, the next in line first
+     */
+    public List<HoldQueues.Hold> getHoldQueue(String bookTitle) {
+        return holds.queueFor(bookTitle);
+    }
+    
+    /**
+     * @return the member's place in the title's queue (1 = next in line), or 0 if they have no hold on it
+     */
+    public synchronized int getHoldPosition(String memberId, String bookTitle) {
+        Person member = memberLookup.get(memberId);
+        return member == null ? 0 : holds.position(bookTitle, member.getId());
+    }
+    
+    /**
+     * Holds a member has placed, oldest first
+     */
+    public synchronized List<HoldQueues.Hold> getHolds(String memberId) {
+        Person member = memberLookup.get(memberId);
+        return member == null ? new ArrayList<>() : holds.holdsOf(member.getId());
+    }
+    
+    public int getHoldCount() {
+        return holds.size();
+    }
+    
+    public Duration getHoldPickupWindow() {
+        return holds.getPickupWindow();
+    }
+    
+    /**
+     * How long a returned copy is set aside for the next member in line
+     * (holds already ready keep their deadline)
+     */
+    public void setHoldPickupWindow(Duration pickupWindow) {
+        holds.setPickupWindow(pickupWindow);
+    }
+    
+    /**
+     * Call the listener with each hold whose copy has just been set aside for
+     * pickup. Listeners run one at a time on a notification thread of their
+     * own, in the order the holds became ready, after the return (or expiry)
+     * that readied them has released the library lock - a slow listener
+     * delays later notifications but never borrowing or returning.
+     */
+    public void addHoldReadyListener(Consumer<HoldQueues.Hold> listener) {
+        holdReadyListeners.add(listener);
+    }
+    
+    public void removeHoldReadyListener(Consumer<HoldQueues.Hold> listener) {
+        holdReadyListeners.remove(listener);
+    }
+    
+    /**
+     * Drop the ready holds not picked up in time, passing each copy to the
+     * next in line (also done before every borrow and hold, and by the
+     * overdue checks)
+     * @return how many holds expired
+     */
+    public synchronized int expireHolds() {
+        return expireHolds(LocalDateTime.now());
+    }
+    
+    private int expireHolds(LocalDateTime now) {
+        List<HoldQueues.Hold> expired = holds.takeExpired(now);
+        for (HoldQueues.Hold hold : expired) {
+            System.out.println("Hold on '" + hold.getBookTitle() + "' for " + hold.getMemberId() +
+                               " expired - not picked up by " + hold.getPickupBy().toLocalDate() + ".");
+            holdRemoved(hold, now);
+        }
+        return expired.size();
+    }
+    
+    // A hold left its queue: if the copy was set aside for it, set it aside for the next in line
+    private void holdRemoved(HoldQueues.Hold hold, LocalDateTime now) {
+        holdsChanged();
+        if (hold.isReady()) {
+            HoldQueues.Hold next = holds.promote(hold.getBookTitle(), now);
+            if (next != null) {
+                holdReady(next);
+            }
+        }
+    }
+    
+    private void holdReady(HoldQueues.Hold hold) {
+        holdsChanged();
+        System.out.println("📚 '" + hold.getBookTitle() + "' is being held for " + hold.getMemberId() +
+                           " until " + hold.getPickupBy().toLocalDate() + ".");
+        if (holdReadyListeners.isEmpty()) {
             return;
         }
+        // Queued now, so notifications keep the order the holds became ready in; the
+        // notifier runs them once it can, which is no sooner than this lock is released
+        holdNotifier.execute(() -> {
+            for (Consumer<HoldQueues.Hold> listener : holdReadyListeners) {
+                try {
+                    listener.accept(hold);
+                } catch (RuntimeException e) {
+                    System.out.println("Error in hold listener: " + e.getMessage());
+                }
+            }
+        });
+    }
+    
+    private void holdsChanged() {
+        holdsChanged = true;
+        changeRecorded();
+    }
+    
+    private static void checkRange(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Both ends of the time range are required");
+        }
+    }
+    
+    // ==================== FILE I/O METHODS ====================
+    
+    /**
+     * Save all library data to files. After the first full save only the
+     * books and members changed since the last save are appended to the
+     * books/members delta files, so the cost follows what changed rather than
+     * the size of the library; the deltas are folded back into books.txt and
+     * members.txt once they grow to a quarter of the catalog (or on demand,
+     * see foldDeltaFiles()). Transactions are sealed into new segments.
+     *
+     * The library lock is held only while collecting what changed; the files
+     * are written without it, so borrowing and returning carry on during a
+     * save. Saves (and loads) run one at a time.
+     */
+    public void saveToFiles() {
+        if (save(false)) {
+            System.out.println("✓ All library data saved successfully!");
+        }
+    }
+    
+    /**
+     * Rewrite books.txt and members.txt in full and delete the delta files
+     */
+    public void foldDeltaFiles() {
+        save(true);
+    }
+    
+    /**
+     * Save without the console confirmation (used by PersistenceService)
+     * @return true if everything was written
+     */
+    boolean saveQuietly() {
+        return save(false);
+    }
+    
+    private boolean save(boolean forceFold) {
+        long startNanos = System.nanoTime();
+        synchronized (saveLock) {
+            String directory = null;
+            boolean fold = false;
+            CatalogSnapshot snapshot = null;
+            long version = -1;
+            List<String> bookChanges = null;
+            List<String> memberChanges = null;
+            List<String> holdRecords = null;
+            TransactionHistory.SealPlan seal = null;
+            TransactionHistory.ManifestUpdate manifest = null;
+            IOException failure = null;
+            
+            try {
+                waitForHistoryLoader();
+                // Under the lock: copy the changed records, or pin a version for a full rewrite
+                synchronized (this) {
+                    directory = dataDirectory;
+                    fold = forceFold || !directory.equals(baseFilesDirectory)
+                        || deltaRecords + changedBooks.size() + changedMembers.size()
+                           >= Math.max(MIN_FOLD_RECORDS, (catalog.getBookCount() + catalog.getMemberCount()) / 4);
+                    if (fold) {
+                        snapshot = catalog;
+                        version = versions.pin();
+                    } else {
+                        bookChanges = bookChangeRecords();
+                        memberChanges = memberChangeRecords();
+                    }
+                    if (fold || holdsChanged) {
+                        holdRecords = holds.records();
+                        holdsChanged = false;
+                    }
+                    changedBooks.clear();
+                    changedMembers.clear();
+                    ensureHistoryLoaded(); // Sealing into an unread store would replace it
+                    File store = new File(directory, "transactions");
+                    if (transactionHistory.canWriteTo(store)) {
+                        seal = transactionHistory.planSeal(store);
+                    } else {
+                        System.out.println("Warning: Transactions not saved - " + store
+                                           + " could not be loaded and is left as it is");
+                    }
+                }
+                
+                // Without the lock: write the files
+                if (fold) {
+                    // A delta left behind by a crash before it is deleted no longer matches the new stamp
+                    long generation = Math.max(Math.max(booksGeneration, membersGeneration) + 1,
+                                               System.currentTimeMillis());
+                    saveBooksToFile(directory, snapshot, version, generation);
+                    booksGeneration = generation;
+                    saveMembersToFile(directory, snapshot, version, generation);
+                    membersGeneration = generation;
+                    new File(directory, BOOKS_DELTA).delete();
+                    new File(directory, MEMBERS_DELTA).delete();
+                } else {
+                    appendDeltaRecords(new File(directory, BOOKS_DELTA), booksGeneration,
+                        "# Library Book Changes (applied to books.txt in order)",
+                        "# Format: U,Title,Author,ISBN,Available,BorrowedBy,DueDate | D,Title", bookChanges);
+                    appendDeltaRecords(new File(directory, MEMBERS_DELTA), membersGeneration,
+                        "# Library Member Changes (applied to members.txt in order)",
+                        "# Format: U,Type,ID,Name,Email,Phone,ExtraInfo,BorrowedBooks | D,ID", memberChanges);
+                }
+                if (holdRecords != null) {
+                    saveHoldsToFile(directory, holdRecords);
+                }
+                if (seal != null) {
+                    PersistenceEvent event = PersistenceEvent.start("save", seal.getManifestFile());
+                    seal.execute();
+                    event.complete(seal.getTransactionCount(), seal.getBytesWritten());
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            
+            // Under the lock again: publish what was written
+            synchronized (this) {
+                if (version >= 0) {
+                    versions.unpin(version);
+                }
+                if (failure == null) {
+                    if (fold) {
+                        deltaRecords = 0;
+                        baseFilesDirectory = directory;
+                    } else {
+                        deltaRecords += bookChanges.size() + memberChanges.size();
+                    }
+                } else {
+                    baseFilesDirectory = null; // The changes collected above were not all written - rewrite everything next time
+                    holdsChanged |= holdRecords != null;
+                }
+                if (seal != null) {
+                    manifest = transactionHistory.applySeal(seal);
+                }
+            }
+            
+            try {
+                if (failure == null && manifest != null) {
+                    manifest.write();
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            
+            if (failure != null) {
+                System.out.println("Error saving library data: " + failure.getMessage());
+                metrics.recordFailure(LibraryMetrics.SAVE, startNanos, failure);
+                return false;
+            }
+            metrics.recordSuccess(LibraryMetrics.SAVE, startNanos);
+            return true;
+        }
+    }
+    
+    /**
+     * Save automatically on a dedicated thread: a burst of changes is saved
+     * once, delayMillis after it dies down, and never later than maxDelayMillis
+     * after the first unsaved change
+     */
+    public void startBackgroundSaving(long delayMillis, long maxDelayMillis,
+                                      PersistenceService.Durability durability) {
+        synchronized (persistenceLock) {
+            stopBackgroundSaving();
+            syncWrites = durability == PersistenceService.Durability.SYNC;
+            synchronized (this) {
+                transactionHistory.setSyncWrites(syncWrites);
+            }
+            PersistenceService service = new PersistenceService(this, delayMillis, maxDelayMillis, durability);
+            service.start();
+            persistence = service;
+        }
+    }
+    
+    /**
+     * Stop background saving after saving any outstanding changes
+     */
+    public void stopBackgroundSaving() {
+        synchronized (persistenceLock) {
+            PersistenceService service = persistence;
+            if (service != null) {
+                persistence = null;
+                service.stop();
+            }
+        }
+    }
+    
+    public PersistenceService getPersistenceService() {
+        return persistence;
+    }
+    
+    /**
+     * @return book and member records waiting in the delta files
+     */
+    public synchronized int getPendingDeltaRecords() {
+        return deltaRecords;
+    }
+    
+    /**
+     * @return books and members changed since the last save
+     */
+    public synchronized int getUnsavedChangeCount() {
+        return changedBooks.size() + changedMembers.size();
+    }
+    
+    /**
+     * Load all library data from files (waits for a save in progress to finish)
+     */
+    public void loadFromFiles() {
+        synchronized (saveLock) {
+            synchronized (this) {
+                baseFilesDirectory = null;
+                deltaRecords = 0;
+                try {
+                    boolean booksLoaded = loadBooksFromFile();
+                    boolean membersLoaded = loadMembersFromFile();
+                    rebuildLoans();
+                    loanSchedule.rebuild(catalog.getBooks());
+                    loadHoldsFromFile();
+                    startLoadingTransactions();
+                    changedBooks.clear();
+                    changedMembers.clear();
+                    if (booksLoaded && membersLoaded) {
+                        baseFilesDirectory = dataDirectory;
+                    }
+                    System.out.println("✓ All library data loaded successfully!");
+                } catch (IOException e) {
+                    System.out.println("Error loading library data: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    // Remember what changed since the last save (a null value records a removal)
+    private void bookChanged(Book book) {
+        changedBooks.put(book.getTitle(), book);
+        changeRecorded();
+    }
+    
+    private void bookRemoved(String title) {
+        changedBooks.put(title, null);
+        changeRecorded();
+    }
+    
+    private void memberChanged(Person member) {
+        changedMembers.put(member.getId(), member);
+        changeRecorded();
+    }
+    
+    private void memberRemoved(String memberId) {
+        changedMembers.put(memberId, null);
+        changeRecorded();
+    }
+    
+    private void changeRecorded() {
+        PersistenceService service = persistence;
+        if (service != null) {
+            service.changed();
+        }
+    }
+    
+    private List<String> bookChangeRecords() {
+        long version = versions.currentVersion();
+        List<String> records = new ArrayList<>(changedBooks.size());
+        for (Map.Entry<String, Book> change : changedBooks.entrySet()) {
+            records.add(change.getValue() != null ? "U," + bookRecord(change.getValue(), version)
+                                                  : "D," + change.getKey().replace(",", "&#44;"));
+        }
+        return records;
+    }
+    
+    private List<String> memberChangeRecords() {
+        long version = versions.currentVersion();
+        List<String> records = new ArrayList<>(changedMembers.size());
+        for (Map.Entry<String, Person> change : changedMembers.entrySet()) {
+            records.add(change.getValue() != null ? "U," + memberRecord(change.getValue(), version)
+                                                  : "D," + change.getKey());
+        }
+        return records;
+    }
+    
+    /**
+     * Save books to file - as of the given version, to a temporary file moved into place
+     */
+    private void saveBooksToFile(String directory, CatalogSnapshot snapshot, long version, long generation)
+            throws IOException {
+        File file = new File(directory, "books.txt");
+        File temp = new File(directory, "books.txt.tmp");
+        PersistenceEvent event = PersistenceEvent.start("save", file);
+        FileOutputStream out = new FileOutputStream(temp);
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(out))) {
+            writer.println("# Library Books Data");
+            writer.println(GENERATION_HEADER + generation);
+            writer.println("# Format: Title,Author,ISBN,Available,BorrowedBy,DueDate");
+            
+            for (Book book : snapshot.getBooks()) {
+                writer.println(bookRecord(book, version));
+            }
+            finishWrite(writer, out, temp);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        event.complete(snapshot.getBookCount(), file.length());
+    }
+    
+    /**
+     * Save members to file - as of the given version, to a temporary file moved into place
+     */
+    private void saveMembersToFile(String directory, CatalogSnapshot snapshot, long version, long generation)
+            throws IOException {
+        File file = new File(directory, "members.txt");
+        File temp = new File(directory, "members.txt.tmp");
+        PersistenceEvent event = PersistenceEvent.start("save", file);
+        FileOutputStream out = new FileOutputStream(temp);
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(out))) {
+            writer.println("# Library Members Data");
+            writer.println(GENERATION_HEADER + generation);
+            writer.println("# Format: Type,ID,Name,Email,Phone,ExtraInfo,BorrowedBooks");
+            
+            for (Person member : snapshot.getMembers()) {
+                writer.println(memberRecord(member, version));
+            }
+            finishWrite(writer, out, temp);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        event.complete(snapshot.getMemberCount(), file.length());
+    }
+    
+    /**
+     * Save the hold queues in full (they are small next to the catalog) - to a temporary file moved into place
+     */
+    private void saveHoldsToFile(String directory, List<String> records) throws IOException {
+        File file = new File(directory, "holds.txt");
+        File temp = new File(directory, "holds.txt.tmp");
+        PersistenceEvent event = PersistenceEvent.start("save", file);
+        FileOutputStream out = new FileOutputStream(temp);
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(out))) {
+            writer.println("# Library Holds Data (each title's queue in order; PickupBy only on ready holds)");
+            writer.println("# Format: Title,MemberID,PlacedAt,PickupBy");
+            
+            for (String record : records) {
+                writer.println(record);
+            }
+            finishWrite(writer, out, temp);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        event.complete(records.size(), file.length());
+    }
+    
+    // Append records to the delta file of the base file with the given generation (starting it, with a header, if needed)
+    private void appendDeltaRecords(File file, long generation, String title, String format, List<String> records)
+            throws IOException {
+        if (records.isEmpty()) return;
+        PersistenceEvent event = PersistenceEvent.start("save", file);
+        if (file.exists() && readGeneration(file) != generation) {
+            file.delete(); // Stale: written on top of an older base file
+        }
+        long before = file.length();
+        boolean isNew = !file.exists();
+        FileOutputStream out = new FileOutputStream(file, true);
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(out))) {
+            if (isNew) {
+                writer.println(title);
+                writer.println(GENERATION_HEADER + generation);
+                writer.println(format);
+            }
+            for (String record : records) {
+                writer.println(record);
+            }
+            finishWrite(writer, out, file);
+        }
+        event.complete(records.size(), file.length() - before);
+    }
+    
+    // Flush, check for errors and, under the SYNC durability policy, force the file to the device
+    private void finishWrite(PrintWriter writer, FileOutputStream out, File file) throws IOException {
+        writer.flush();
+        if (writer.checkError()) {
+            throw new IOException("Could not write " + file);
+        }
+        if (syncWrites) {
+            out.getFD().sync();
+        }
+    }
+    
+    private static String bookRecord(Book book, long version) {
+        String borrowedBy = book.getBorrowedByAt(version);
+        LocalDateTime due = book.getDueDateAt(version);
+        return String.format("%s,%s,%s,%b,%s%s",
+            book.getTitle().replace(",", "&#44;"),
+            book.getAuthor().replace(",", "&#44;"),
+            book.getIsbn(),
+            borrowedBy == null,
+            borrowedBy != null ? borrowedBy : "",
+            borrowedBy != null && due != null ? "," + due : ""
+        );
+    }
+    
+    private static String memberRecord(Person member, long version) {
+        String extraInfo = "";
+        int borrowedBooks = 0;
         
-        books.clear();
-        bookLookup.clear();
+        if (member instanceof Student) {
+            Student student = (Student) member;
+            extraInfo = (student.getCourse() != null ? student.getCourse() : "") + 
+                       "|" + student.getYear();
+            borrowedBooks = student.getCurrentBorrowedBooksAt(version);
+        } else if (member instanceof Staff) {
+            Staff staff = (Staff) member;
+            extraInfo = (staff.getDepartment() != null ? staff.getDepartment() : "") + 
+                       "|" + (staff.getPosition() != null ? staff.getPosition() : "");
+            borrowedBooks = staff.getCurrentBorrowedBooksAt(version);
+        }
+        
+        return String.format("%s,%s,%s,%s,%s,%s,%d",
+            member.getPersonType(),
+            member.getId(),
+            member.getName().replace(",", "&#44;"),
+            member.getEmail(),
+            member.getPhoneNumber() != null ? member.getPhoneNumber() : "",
+            extraInfo.replace(",", "&#44;"),
+            borrowedBooks
+        );
+    }
+    
+    /**
+     * Load books from books.txt, then apply the books delta file on top
+     * @return false if there is no books file
+     */
+    private boolean loadBooksFromFile() throws IOException {
+        File file = new File(dataDirectory, "books.txt");
+        if (!file.exists()) {
+            System.out.println("Books file not found. Starting with empty book collection.");
+            return false;
+        }
+        PersistenceEvent event = PersistenceEvent.start("load", file);
+        
+        LinkedHashMap<String, Book> books = new LinkedHashMap<>();
         
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 if (line.startsWith("#") || line.trim().isEmpty()) continue;
                 
-                String[] parts = line.split(",");
-                if (parts.length >= 4) {
-                    String title = parts[0].replace("&#44;", ",");
-                    String author = parts[1].replace("&#44;", ",");
-                    String isbn = parts[2];
-                    boolean available = Boolean.parseBoolean(parts[3]);
-                    String borrowedBy = parts.length > 4 && !parts[4].isEmpty() ? parts[4] : null;
-                    
-                    Book book = new Book(title, author, isbn);
-                    if (!available && borrowedBy != null) {
-                        book.borrowBook(borrowedBy);
+                Book book = parseBook(line);
+                if (book != null) {
+                    books.put(book.getTitle(), book);
+                }
+            }
+        }
+        
+        booksGeneration = readGeneration(file);
+        File delta = new File(dataDirectory, BOOKS_DELTA);
+        if (isCurrentDelta(delta, booksGeneration)) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(delta))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("U,")) {
+                        Book book = parseBook(line.substring(2));
+                        if (book != null) {
+                            books.put(book.getTitle(), book);
+                        }
+                    } else if (line.startsWith("D,")) {
+                        books.remove(line.substring(2).replace("&#44;", ","));
+                    } else {
+                        continue;
                     }
-                    
-                    books.add(book);
-                    bookLookup.put(title, book);
+                    deltaRecords++;
                 }
             }
         }
+        
+        bookLookup.clear();
+        bookLookup.putAll(books);
+        catalog = catalog.withBooks(books.values());
+        searchCache.catalogReplaced(catalog.getBookVersion());
+        autocomplete.rebuild(books.values());
+        fuzzyIndex.rebuild(books.values());
+        rankedIndex.rebuild(books.values());
+        event.complete(books.size(), file.length());
+        return true;
     }
     
     /**
-     * Load members from file
+     * Load members from members.txt, then apply the members delta file on top
+     * @return false if there is no members file
      */
-    private void loadMembersFromFile() throws IOException {
-        File file = new File("data/members.txt");
+    private boolean loadMembersFromFile() throws IOException {
+        File file = new File(dataDirectory, "members.txt");
         if (!file.exists()) {
             System.out.println("Members file not found. Starting with empty member collection.");
-            return;
+            return false;
         }
+        PersistenceEvent event = PersistenceEvent.start("load", file);
         
-        members.clear();
-        memberLookup.clear();
+        LinkedHashMap<String, Person> members = new LinkedHashMap<>();
         
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 if (line.startsWith("#") || line.trim().isEmpty()) continue;
                 
-                String[] parts = line.split(",");
-                if (parts.length >= 6) {
-                    String type = parts[0];
-                    String id = parts[1];
-                    String name = parts[2].replace("&#44;", ",");
-                    String email = parts[3];
-                    String phone = parts[4];
-                    String extraInfo = parts[5].replace("&#44;", ",");
-                    int borrowedBooks = parts.length > 6 ? Integer.parseInt(parts[6]) : 0;
-                    
-                    Person member = null;
-                    
-                    if ("Student".equals(type)) {
-                        String[] extra = extraInfo.split("\\|");
-                        String course = extra.length > 0 ? extra[0] : null;
-                        int year = extra.length > 1 ? Integer.parseInt(extra[1]) : 0;
-                        
-                        member = new Student(id, name, email, course, year);
-                        // Set borrowed books count
-                        for (int i = 0; i < borrowedBooks; i++) {
-                            ((Student) member).borrowBook();
-                        }
-                    } else if ("Staff".equals(type)) {
-                        String[] extra = extraInfo.split("\\|");
-                        String department = extra.length > 0 ? extra[0] : null;
-                        String position = extra.length > 1 ? extra[1] : null;
-                        
-                        member = new Staff(id, name, email, department, position);
-                        // Set borrowed books count
-                        for (int i = 0; i < borrowedBooks; i++) {
-                            ((Staff) member).borrowBook();
+                Person member = parseMember(line);
+                if (member != null) {
+                    members.put(member.getId(), member);
+                }
+            }
+        }
+        
+        membersGeneration = readGeneration(file);
+        File delta = new File(dataDirectory, MEMBERS_DELTA);
+        if (isCurrentDelta(delta, membersGeneration)) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(delta))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("U,")) {
+                        Person member = parseMember(line.substring(2));
+                        if (member != null) {
+                            members.put(member.getId(), member);
                         }
+                    } else if (line.startsWith("D,")) {
+                        members.remove(line.substring(2));
+                    } else {
+                        continue;
                     }
+                    deltaRecords++;
+                }
+            }
+        }
+        
+        memberLookup.clear();
+        for (Person member : members.values()) {
+            memberLookup.put(member);
+        }
+        catalog = catalog.withMembers(members.values());
+        memberSearch.rebuild(members.values(), Library::currentLoans);
+        event.complete(members.size(), file.length());
+        return true;
+    }
+    
+    /**
+     * Load holds from holds.txt (after the books and members), dropping holds
+     * on titles or by members no longer in the library
+     */
+    private void loadHoldsFromFile() throws IOException {
+        File file = new File(dataDirectory, "holds.txt");
+        List<HoldQueues.Hold> loaded = new ArrayList<>();
+        if (file.exists()) {
+            PersistenceEvent event = PersistenceEvent.start("load", file);
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("#") || line.trim().isEmpty()) continue;
                     
-                    if (member != null) {
-                        if (phone != null && !phone.isEmpty()) {
-                            member.setPhoneNumber(phone);
-                        }
-                        members.add(member);
-                        memberLookup.put(id, member);
+                    HoldQueues.Hold hold = HoldQueues.Hold.fromFileFormat(line);
+                    if (hold != null && bookLookup.containsKey(hold.getBookTitle())
+                            && memberLookup.get(hold.getMemberId()) != null) {
+                        loaded.add(hold);
                     }
                 }
             }
+            event.complete(loaded.size(), file.length());
         }
+        holds.rebuild(loaded, title -> bookLookup.get(title).isAvailable(), LocalDateTime.now());
+        holdsChanged = false;
+    }
+    
+    // A delta file stamped with another generation than its base file's is already folded in (or
+    // belongs to a base file that was replaced) - discard it
+    private static boolean isCurrentDelta(File delta, long baseGeneration) throws IOException {
+        if (!delta.exists()) {
+            return false;
+        }
+        if (readGeneration(delta) != baseGeneration) {
+            delta.delete();
+            return false;
+        }
+        return true;
+    }
+    
+    // The generation stamped in a data file's header (0 for files written before stamps were added)
+    private static long readGeneration(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null && line.startsWith("#")) {
+                if (line.startsWith(GENERATION_HEADER)) {
+                    try {
+                        return Long.parseLong(line.substring(GENERATION_HEADER.length()).trim());
+                    } catch (NumberFormatException e) {
+                        return -1; // Matches no base file
+                    }
+                }
+            }
+        }
+        return 0;
     }
     
     /**
-     * Load transactions from file
+     * Parse one books.txt record (null if malformed)
      */
-    private void loadTransactionsFromFile() throws IOException {
-        File file = new File("data/transactions.txt");
-        if (!file.exists()) {
-            System.out.println("Transactions file not found. Starting with empty transaction history.");
+    private static Book parseBook(String line) {
+        String[] parts = line.split(",");
+        if (parts.length < 4) {
+            return null;
+        }
+        String title = parts[0].replace("&#44;", ",");
+        String author = parts[1].replace("&#44;", ",");
+        String isbn = parts[2];
+        boolean available = Boolean.parseBoolean(parts[3]);
+        String borrowedBy = parts.length > 4 && !parts[4].isEmpty() ? parts[4] : null;
+        LocalDateTime due = null;
+        if (parts.length > 5 && !parts[5].isEmpty()) {
+            try {
+                due = LocalDateTime.parse(parts[5]);
+            } catch (DateTimeParseException e) {
+                // Keep the loan without a due date
+            }
+        }
+        
+        Book book = new Book(title, author, isbn);
+        if (!available && borrowedBy != null) {
+            book.borrowBook(borrowedBy, due, null);
+        }
+        return book;
+    }
+    
+    /**
+     * Parse one members.txt record (null if malformed or of an unknown type)
+     */
+    private static Person parseMember(String line) {
+        String[] parts = line.split(",");
+        if (parts.length < 6) {
+            return null;
+        }
+        String type = parts[0];
+        String id = parts[1];
+        String name = parts[2].replace("&#44;", ",");
+        String email = parts[3];
+        String phone = parts[4];
+        String extraInfo = parts[5].replace("&#44;", ",");
+        int borrowedBooks = parts.length > 6 ? Integer.parseInt(parts[6]) : 0;
+        
+        Person member = null;
+        
+        if ("Student".equals(type)) {
+            String[] extra = extraInfo.split("\\|");
+            String course = extra.length > 0 ? extra[0] : null;
+            int year = extra.length > 1 ? Integer.parseInt(extra[1]) : 0;
+            
+            member = new Student(id, name, email, course, year);
+            // Set borrowed books count
+            for (int i = 0; i < borrowedBooks; i++) {
+                ((Student) member).borrowBook();
+            }
+        } else if ("Staff".equals(type)) {
+            String[] extra = extraInfo.split("\\|");
+            String department = extra.length > 0 ? extra[0] : null;
+            String position = extra.length > 1 ? extra[1] : null;
+            
+            member = new Staff(id, name, email, department, position);
+            // Set borrowed books count
+            for (int i = 0; i < borrowedBooks; i++) {
+                ((Staff) member).borrowBook();
+            }
+        }
+        
+        if (member != null && phone != null && !phone.isEmpty()) {
+            member.setPhoneNumber(phone);
+        }
+        return member;
+    }
+    
+    /**
+     * Start loading transactions. The books and members are all a checkout
+     * needs, so the stored history is read on a background thread (or by the
+     * first call that needs it, see ensureHistoryLoaded) and startup time does
+     * not grow with it. New IDs are kept clear of the stored ones through the
+     * highest ID the store's manifest records; a store whose manifest does not
+     * record it, and an import of a transactions.txt file, are read straight away.
+     * A transactions.txt file is imported only when there is no store yet, and
+     * renamed once imported, so the store is never replaced by an older copy.
+     */
+    private void startLoadingTransactions() throws IOException {
+        if (historyLoader != null) {
+            historyLoader.cancel(false); // Superseded; a pending loader only reads the store
+            historyLoader = null;
+            transactionHistory.refuseStore(historyStore); // What we have of it is incomplete
+        }
+        File storeDirectory = new File(dataDirectory, "transactions");
+        File file = new File(dataDirectory, "transactions.txt");
+        boolean hasStore = TransactionHistory.hasStore(storeDirectory);
+        boolean importFile = file.exists() && !hasStore;
+        if (file.exists() && hasStore) {
+            System.out.println("Ignoring " + file + " - transactions are kept in " + storeDirectory);
+        }
+        long highestId;
+        try {
+            highestId = hasStore && !importFile ? TransactionHistory.highestTransactionNumber(storeDirectory) : -1;
+        } catch (IOException e) {
+            transactionHistory.refuseStore(storeDirectory);
+            throw e;
+        }
+        
+        TransactionHistory settings = transactionHistory;
+        transactionHistory = new TransactionHistory();
+        transactionHistory.copySettingsFrom(settings);
+        transactionHistory.setSpillRequest(this::requestHistorySpill);
+        FutureTask<LoadedHistory> loader = new FutureTask<>(
+            () -> new LoadedHistory(loadTransactionsFromFile(storeDirectory, file, importFile, settings)));
+        historyLoader = loader;
+        historyStore = storeDirectory;
+        
+        if (highestId < 0) {
+            ensureHistoryLoaded();
+            return;
+        }
+        Transaction.reserveIdsThrough(highestId);
+        if (historyWarmup) {
+            Thread warmup = new Thread(() -> {
+                loader.run();
+                synchronized (this) {
+                    if (historyLoader == loader) {
+                        ensureHistoryLoaded();
+                    }
+                }
+            }, "library-history-loader");
+            warmup.setDaemon(true);
+            warmup.start();
+        }
+    }
+    
+    /**
+     * Make transactionHistory the full history: wait for (or run) the loader,
+     * then add the transactions recorded since loading started. Called with
+     * the library lock held; if loading failed, the history recorded since is
+     * kept, and the store is left untouched - sealing into it would replace
+     * its manifest and lose the transactions it lists.
+     */
+    private void ensureHistoryLoaded() {
+        FutureTask<LoadedHistory> loader = historyLoader;
+        if (loader == null) {
             return;
         }
+        historyLoader = null;
+        loader.run(); // Returns at once if the warm-up thread has started it
+        try {
+            LoadedHistory loaded = loader.get();
+            loaded.history.copySettingsFrom(transactionHistory);
+            loaded.history.setSpillRequest(this::requestHistorySpill);
+            for (Transaction transaction : transactionHistory.oldestFirst()) {
+                loaded.history.add(transaction);
+            }
+            transactionHistory = loaded.history;
+            autocomplete.addCirculation(loaded.loansByTitle); // Loans since then were counted as they happened
+        } catch (ExecutionException e) {
+            transactionHistory.refuseStore(historyStore);
+            System.out.println("Error loading transactions: " + e.getCause().getMessage());
+            System.out.println("New transactions will not be saved to " + historyStore + " until it loads");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            transactionHistory.refuseStore(historyStore);
+            System.out.println("Interrupted while loading transactions; continuing without older history");
+        }
+    }
+    
+    /**
+     * What the history loader hands back: the stored history and how often
+     * each title was borrowed in it (for autocomplete ranking)
+     */
+    private static class LoadedHistory {
+        final TransactionHistory history;
+        final Map<String, Integer> loansByTitle = new HashMap<>();
         
-        transactionHistory.clear();
-        sortedTransactions.clear();
+        LoadedHistory(TransactionHistory history) {
+            this.history = history;
+            for (Transaction transaction : history.oldestFirst()) {
+                if (transaction.isBorrowTransaction()) {
+                    loansByTitle.merge(transaction.getBookTitle(), 1, Integer::sum);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Run a query on the full history under the library lock. The loader is
+     * waited for (or run) outside the lock, so borrowing and returning carry
+     * on while the stored history is read; under the lock only the merge of
+     * what was recorded meanwhile is left.
+     */
+    private <T> T withLoadedHistory(Function<TransactionHistory, T> query) {
+        while (true) {
+            waitForHistoryLoader();
+            synchronized (this) {
+                if (isHistoryReady()) {
+                    ensureHistoryLoaded();
+                    return query.apply(transactionHistory);
+                }
+            }
+            // A reload started between waiting and locking - wait for that one too
+        }
+    }
+    
+    // True if ensureHistoryLoaded would not have to wait (call with the library lock held)
+    private boolean isHistoryReady() {
+        return historyLoader == null || historyLoader.isDone() || Thread.currentThread().isInterrupted();
+    }
+    
+    // Read the stored history outside the library lock, so ensureHistoryLoaded has only the merge left
+    private void waitForHistoryLoader() {
+        FutureTask<LoadedHistory> loader;
+        synchronized (this) {
+            loader = historyLoader;
+        }
+        if (loader != null) {
+            loader.run();
+            try {
+                loader.get();
+            } catch (ExecutionException | CancellationException e) {
+                // Reported by ensureHistoryLoaded, or superseded by a newer load
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * Whether loadFromFiles starts reading the transaction history on a
+     * background thread (the default) or leaves it to the first call that needs it
+     */
+    public synchronized void setHistoryWarmup(boolean historyWarmup) {
+        this.historyWarmup = historyWarmup;
+    }
+    
+    /**
+     * @return true once the stored transaction history has been read
+     */
+    public synchronized boolean isHistoryLoaded() {
+        return historyLoader == null;
+    }
+    
+    /**
+     * Load transactions into a new history - opens the segment store in
+     * data/transactions, or imports a transactions.txt file (older format)
+     * into a fresh store. Runs without the library lock.
+     */
+    private static TransactionHistory loadTransactionsFromFile(File storeDirectory, File file, boolean importFile,
+                                                               TransactionHistory settings) throws IOException {
+        TransactionHistory history = new TransactionHistory();
+        history.copySettingsFrom(settings);
+        if (importFile) {
+            importTransactionsFile(history, file, storeDirectory);
+        } else if (TransactionHistory.hasStore(storeDirectory)) {
+            PersistenceEvent event = PersistenceEvent.start("load", new File(storeDirectory, "manifest.txt"));
+            history.open(storeDirectory);
+            event.complete(history.size(), history.getManifestFile().length());
+        } else {
+            System.out.println("Transactions file not found. Starting with empty transaction history.");
+            history.create(storeDirectory);
+        }
+        return history;
+    }
+    
+    private static void importTransactionsFile(TransactionHistory history, File file, File storeDirectory)
+            throws IOException {
+        PersistenceEvent event = PersistenceEvent.start("load", file);
+        
+        history.create(storeDirectory);
         
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
             String line;
@@ -900,26 +2420,67 @@ public class Library implements Borrowable {
                 
                 Transaction transaction = Transaction.fromFileFormat(line);
                 if (transaction != null) {
-                    transactionHistory.add(transaction);
-                    sortedTransactions.add(transaction);
+                    history.add(transaction);
                 }
             }
         }
+        history.seal();
+        event.complete(history.size(), file.length());
+        
+        // The store now holds these transactions; keep the file, but never import it again
+        File imported = new File(file.getPath() + ".imported");
+        if (!imported.exists() && file.renameTo(imported)) {
+            System.out.println("✓ Imported " + history.size() + " transactions; " + file.getName() +
+                               " renamed to " + imported.getName());
+        } else {
+            System.out.println("Imported " + history.size() + " transactions; " + file.getName() +
+                               " is no longer read and can be removed");
+        }
     }
     
     // ==================== REPORTING SYSTEM ====================
     
     /**
-     * Generate and save comprehensive library report
+     * Generate and save comprehensive library report.
+     * Every section describes the same moment: the catalog, a view of the
+     * transaction history and a VersionClock pin are taken together under the
+     * lock, then the report is read and written without blocking borrowing
+     * and returning.
      */
     public boolean generateLibraryReport(String reportFileName) {
+        long startNanos = System.nanoTime();
+        CatalogSnapshot snapshot;
+        long version;
+        TransactionHistory.View history;
+        while (true) {
+            waitForHistoryLoader();
+            synchronized (this) {
+                if (!isHistoryReady()) {
+                    continue; // A reload started meanwhile
+                }
+                ensureHistoryLoaded();
+                snapshot = catalog;
+                version = versions.pin();
+                history = transactionHistory.view();
+                break;
+            }
+        }
+        
         try {
-            File reportsDir = new File("reports");
+            int totalTransactions = history.size();
+            List<Transaction> recentTransactions = new ArrayList<>();
+            for (Transaction transaction : history.newestFirst()) {
+                if (recentTransactions.size() >= 10) break; // Show only last 10
+                recentTransactions.add(transaction);
+            }
+            
+
+            File reportsDir = new File(reportsDirectory);
             if (!reportsDir.exists()) {
-                reportsDir.mkdir();
+                reportsDir.mkdirs();
             }
             
-            try (PrintWriter writer = new PrintWriter(new FileWriter("reports/" + reportFileName))) {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(new File(reportsDirectory, reportFileName)))) {
                 writer.println("=".repeat(60));
                 writer.println("               LIBRARY MANAGEMENT REPORT");
                 writer.println("=".repeat(60));
@@ -930,27 +2491,28 @@ public class Library implements Borrowable {
                 // Library Statistics
                 writer.println("LIBRARY STATISTICS:");
                 writer.println("-".repeat(30));
-                writer.printf("Total Books: %d%n", getTotalBooks());
-                writer.printf("Total Members: %d%n", getTotalMembers());
-                writer.printf("Total Transactions: %d%n", getTransactionCount());
+                writer.printf("Total Books: %d%n", snapshot.getBookCount());
+                writer.printf("Total Members: %d%n", snapshot.getMemberCount());
+                writer.printf("Total Transactions: %d%n", totalTransactions);
                 
                 int availableBooks = 0;
                 int borrowedBooks = 0;
-                for (Book book : books) {
-                    if (book.isAvailable()) availableBooks++;
+                for (Book book : snapshot.getBooks()) {
+                    if (book.isAvailableAt(version)) availableBooks++;
                     else borrowedBooks++;
                 }
                 writer.printf("Available Books: %d%n", availableBooks);
                 writer.printf("Borrowed Books: %d%n", borrowedBooks);
-                writer.printf("Students: %d%n", countStudents());
-                writer.printf("Staff: %d%n", countStaff());
+                writer.printf("Students: %d%n", countStudents(snapshot));
+                writer.printf("Staff: %d%n", countStaff(snapshot));
                 writer.println();
                 
                 // Books Report
                 writer.println("BOOKS INVENTORY:");
                 writer.println("-".repeat(30));
-                for (Book book : books) {
-                    String status = book.isAvailable() ? "Available" : "Borrowed by " + book.getBorrowedBy();
+                for (Book book : snapshot.getBooks()) {
+                    String borrower = book.getBorrowedByAt(version);
+                    String status = borrower == null ? "Available" : "Borrowed by " + borrower;
                     writer.printf("• %s by %s [%s] - %s%n", 
                         book.getTitle(), book.getAuthor(), book.getIsbn(), status);
                 }
@@ -959,26 +2521,23 @@ public class Library implements Borrowable {
                 // Members Report
                 writer.println("MEMBERS DIRECTORY:");
                 writer.println("-".repeat(30));
-                for (Person member : members) {
+                for (Person member : snapshot.getMembers()) {
                     writer.printf("• %s (%s) - %s - %s - Books: %d/%d%n",
                         member.getName(), member.getId(), member.getPersonType(),
-                        member.getEmail(), getBorrowedBooksCount(member.getId()), member.getMaxBooks());
+                        member.getEmail(), getBorrowedBooksCountAt(member, version), member.getMaxBooks());
                 }
                 writer.println();
                 
                 // Recent Transactions
                 writer.println("RECENT TRANSACTIONS:");
                 writer.println("-".repeat(30));
-                int transactionCount = 0;
-                for (Transaction transaction : sortedTransactions) {
-                    if (transactionCount >= 10) break; // Show only last 10
+                for (Transaction transaction : recentTransactions) {
                     writer.printf("[%s] %s: %s %s '%s'%n",
                         transaction.getTransactionId(),
                         transaction.getFormattedTimestamp(),
                         transaction.getMemberName(),
                         transaction.getType().toString().toLowerCase() + "ed",
                         transaction.getBookTitle());
-                    transactionCount++;
                 }
                 
                 writer.println();
@@ -987,31 +2546,60 @@ public class Library implements Borrowable {
                 writer.println("=".repeat(60));
             }
             
-            System.out.println("✓ Library report generated successfully: reports/" + reportFileName);
+            System.out.println("✓ Library report generated successfully: " + reportsDirectory + "/" + reportFileName);
+            metrics.recordSuccess(LibraryMetrics.LIBRARY_REPORT, startNanos);
             return true;
             
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             System.out.println("Error generating report: " + e.getMessage());
+            metrics.recordFailure(LibraryMetrics.LIBRARY_REPORT, startNanos, e);
             return false;
         } catch (Exception e) {
             System.out.println("Unexpected error during report generation: " + e.getMessage());
+            metrics.recordFailure(LibraryMetrics.LIBRARY_REPORT, startNanos, e);
             return false;
+        } finally {
+            history.close();
+            versions.unpin(version);
         }
     }
     
     /**
-     * Generate borrowing activity report
+     * Generate borrowing activity report, as of one pinned moment (see generateLibraryReport)
      */
     public boolean generateBorrowingReport(String memberId, String reportFileName) {
+        long startNanos = System.nanoTime();
+        long version = -1;
         try {
-            Person member = findMemberById(memberId);
+            Person member;
+            List<String> borrowedTitles;
+            TransactionHistory.View history;
+            while (true) {
+                waitForHistoryLoader();
+                synchronized (this) {
+                    if (!isHistoryReady()) {
+                        continue; // A reload started meanwhile
+                    }
+                    member = findMemberById(memberId);
+                    ensureHistoryLoaded();
+                    version = versions.pin();
+                    borrowedTitles = getBorrowedBookTitles(member.getId());
+                    history = transactionHistory.view();
+                    break;
+                }
+            }
+            // Read outside the lock, skipping segment blocks that cannot hold the member
+            List<Transaction> memberTransactions;
+            try (history) {
+                memberTransactions = history.forMember(member.getId());
+            }
             
-            File reportsDir = new File("reports");
+            File reportsDir = new File(reportsDirectory);
             if (!reportsDir.exists()) {
-                reportsDir.mkdir();
+                reportsDir.mkdirs();
             }
             
-            try (PrintWriter writer = new PrintWriter(new FileWriter("reports/" + reportFileName))) {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(new File(reportsDirectory, reportFileName)))) {
                 writer.println("=".repeat(60));
                 writer.println("           MEMBER BORROWING ACTIVITY REPORT");
                 writer.println("=".repeat(60));
@@ -1024,32 +2612,38 @@ public class Library implements Borrowable {
                 writer.println("BORROWING STATISTICS:");
                 writer.println("-".repeat(30));
                 writer.printf("Current Borrowed Books: %d/%d%n", 
-                    getBorrowedBooksCount(memberId), member.getMaxBooks());
+                    getBorrowedBooksCountAt(member, version), member.getMaxBooks());
                 
                 // Count member's transactions
                 int borrowCount = 0;
                 int returnCount = 0;
-                for (Transaction transaction : transactionHistory) {
-                    if (transaction.getMemberId().equals(memberId)) {
-                        if (transaction.isBorrowTransaction()) borrowCount++;
-                        else returnCount++;
-                    }
+                for (Transaction transaction : memberTransactions) {
+                    if (transaction.isBorrowTransaction()) borrowCount++;
+                    else returnCount++;
                 }
                 writer.printf("Total Books Borrowed: %d%n", borrowCount);
                 writer.printf("Total Books Returned: %d%n", returnCount);
                 writer.println();
                 
+                writer.println("CURRENTLY BORROWED:");
+                writer.println("-".repeat(30));
+                if (borrowedTitles.isEmpty()) {
+                    writer.println("None");
+                }
+                for (String title : borrowedTitles) {
+                    writer.println("• " + title);
+                }
+                writer.println();
+                
                 writer.println("TRANSACTION HISTORY:");
                 writer.println("-".repeat(30));
-                for (Transaction transaction : sortedTransactions) {
-                    if (transaction.getMemberId().equals(memberId)) {
-                        writer.printf("[%s] %s: %s '%s' (%s)%n",
-                            transaction.getTransactionId(),
-                            transaction.getFormattedTimestamp(),
-                            transaction.getType().toString(),
-                            transaction.getBookTitle(),
-                            transaction.getBookIsbn());
-                    }
+                for (Transaction transaction : memberTransactions) {
+                    writer.printf("[%s] %s: %s '%s' (%s)%n",
+                        transaction.getTransactionId(),
+                        transaction.getFormattedTimestamp(),
+                        transaction.getType().toString(),
+                        transaction.getBookTitle(),
+                        transaction.getBookIsbn());
                 }
                 
                 writer.println();
@@ -1059,18 +2653,26 @@ public class Library implements Borrowable {
             }
             
             System.out.println("✓ Borrowing report generated for " + member.getName() + 
-                             ": reports/" + reportFileName);
+                             ": " + reportsDirectory + "/" + reportFileName);
+            metrics.recordSuccess(LibraryMetrics.BORROWING_REPORT, startNanos);
             return true;
             
         } catch (MemberNotFoundException e) {
             System.out.println("Cannot generate report: " + e.getMessage());
+            metrics.recordFailure(LibraryMetrics.BORROWING_REPORT, startNanos, e);
             return false;
         } catch (IOException e) {
             System.out.println("Error generating borrowing report: " + e.getMessage());
+            metrics.recordFailure(LibraryMetrics.BORROWING_REPORT, startNanos, e);
             return false;
         } catch (Exception e) {
             System.out.println("Unexpected error during borrowing report generation: " + e.getMessage());
+            metrics.recordFailure(LibraryMetrics.BORROWING_REPORT, startNanos, e);
             return false;
+        } finally {
+            if (version >= 0) {
+                versions.unpin(version);
+            }
         }
     }
 }
\ No newline at end of file
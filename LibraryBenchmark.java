@@ -0,0 +1,392 @@
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LibraryBenchmark - Micro-benchmark harness for the Library hot paths
+ * Demonstrates: Warm-up and measurement phases, Management beans, Functional interfaces
+ *
+ * Benchmarks borrowBook/returnBook, searchBooksByKeywords (uncached and
+ * cached), advancedBookSearch, loadFromFiles, generateLibraryReport and
+ * saveToFiles (incremental and folded) against synthetic libraries of every requested
+ * catalog size and history size. For each case
+ * it reports:
+ *   - Throughput     (operations per second)
+ *   - Average time   (microseconds per operation)
+ *   - GC allocation  (bytes allocated per operation, GC count and GC time)
+ *
+ * Usage:
+ *   java LibraryBenchmark [--books 1000,10000,100000,1000000] [--history 1000,100000]
+ *                         [--bench borrowReturn,keywordSearch,...] [--warmup 3]
+ *                         [--iterations 5] [--time 1000] [--fork true]
+ *
+ * All files are written to a temporary directory, never to data/ or reports/.
+ *
+ * This is a hand-rolled harness rather than JMH: the project builds with
+ * plain javac and has no build file or third-party dependencies to pull JMH
+ * and its annotation processor in with. To get the isolation JMH gives by
+ * forking, each benchmark runs by default in a fresh JVM of its own (--fork
+ * false runs everything in this one, sharing JIT profiles and heap between
+ * benchmarks). Its limits compared with JMH:
+ *   - One fork per benchmark and case, no run-to-run error estimate
+ *   - Timing is per iteration (System.nanoTime around a loop), not per call
+ *   - Results are folded into a volatile sink - no Blackhole, so very cheap
+ *     operations may still be partly optimized away
+ *   - Single-threaded; no compiler or profiler integration
+ */
+public class LibraryBenchmark {
+
+    private static final String[] AUTHOR_NAMES = {
+        "Herbert Schildt", "Joshua Bloch", "Brian Goetz", "Kathy Sierra", "Robert Martin",
+        "Martin Fowler", "Doug Lea", "Cay Horstmann", "Bruce Eckel", "Venkat Subramaniam"
+    };
+    private static final String[] TITLE_WORDS = {
+        "Java", "Concurrency", "Patterns", "Effective", "Clean", "Design", "Practice",
+        "Algorithms", "Systems", "Programming", "Complete", "Reference", "Modern", "Guide"
+    };
+
+    // Operation under test - index lets each call pick a different book/member
+    private interface Operation {
+        void run(Fixture fixture, int index) throws Exception;
+    }
+
+    // Results are folded in here so the JIT cannot discard the work
+    private static volatile long sink;
+
+    // Books (and members) each save benchmark call changes first, so the save has work to do
+    private static final int CHANGES_PER_SAVE = 10;
+
+    private static PrintStream console;
+
+    public static void main(String[] args) throws Exception {
+        int[] bookCounts = {1000, 10000, 100000, 1000000};
+        int[] historySizes = {1000, 100000};
+        List<String> selected = null;
+        int warmupIterations = 3;
+        int measuredIterations = 5;
+        long iterationMillis = 1000;
+        boolean fork = true;
+        boolean header = true;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--books":
+                    bookCounts = parseSizes(args[i + 1]);
+                    break;
+                case "--history":
+                    historySizes = parseSizes(args[i + 1]);
+                    break;
+                case "--bench":
+                    selected = List.of(args[i + 1].split(","));
+                    break;
+                case "--warmup":
+                    warmupIterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--iterations":
+                    measuredIterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--time":
+                    iterationMillis = Long.parseLong(args[i + 1]);
+                    break;
+                case "--fork":
+                    fork = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                case "--header":    // Used by forked runs, which print only their result rows
+                    header = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+
+        Map<String, Operation> benchmarks = createBenchmarks();
+        if (selected != null) {
+            benchmarks.keySet().retainAll(selected);
+        }
+
+        console = System.out;
+        if (header) {
+            console.printf("%-20s %10s %10s %14s %14s %14s %8s %10s%n",
+                "Benchmark", "Books", "History", "Ops/sec", "Avg us/op", "Alloc B/op", "GCs", "GC ms");
+            console.println("-".repeat(108));
+        }
+
+        for (int bookCount : bookCounts) {
+            for (int historySize : historySizes) {
+                if (fork) {
+                    for (String name : benchmarks.keySet()) {
+                        runForked(name, bookCount, historySize, warmupIterations, measuredIterations, iterationMillis);
+                    }
+                    continue;
+                }
+                Fixture fixture = quietly(() -> Fixture.create(bookCount, historySize));
+                for (Map.Entry<String, Operation> benchmark : benchmarks.entrySet()) {
+                    Result result = measure(fixture, benchmark.getValue(),
+                        warmupIterations, measuredIterations, iterationMillis);
+                    console.printf("%-20s %10d %10d %,14.1f %,14.2f %,14d %8d %10d%n",
+                        benchmark.getKey(), bookCount, historySize, result.opsPerSecond(),
+                        result.averageMicros(), result.bytesPerOp(), result.gcCount, result.gcMillis);
+                }
+                fixture.delete();
+            }
+        }
+    }
+
+    /**
+     * Run one benchmark for one case in a fresh JVM with this one's class path and JVM options
+     */
+    private static void runForked(String name, int bookCount, int historySize, int warmupIterations,
+                                  int measuredIterations, long iterationMillis) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), "LibraryBenchmark",
+            "--books", String.valueOf(bookCount), "--history", String.valueOf(historySize),
+            "--bench", name, "--warmup", String.valueOf(warmupIterations),
+            "--iterations", String.valueOf(measuredIterations), "--time", String.valueOf(iterationMillis),
+            "--fork", "false", "--header", "false"));
+        int exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if (exitCode != 0) {
+            System.out.println("Forked run of " + name + " failed with exit code " + exitCode);
+        }
+    }
+
+    /**
+     * The benchmark catalogue - insertion order is the run order.
+     * Read-only benchmarks come first so they all see the requested history size.
+     */
+    private static Map<String, Operation> createBenchmarks() {
+        Map<String, Operation> benchmarks = new LinkedHashMap<>();
+
+        // The queries repeat, so the search cache is emptied first to measure the catalog scan
+        benchmarks.put("keywordSearch", (f, i) -> {
+            f.library.getSearchCache().clear();
+            sink += f.library.searchBooksByKeywords(
+                TITLE_WORDS[i % TITLE_WORDS.length], AUTHOR_NAMES[i % AUTHOR_NAMES.length].split(" ")[1]).size();
+        });
+        // The same queries answered from the search cache (after the first round)
+        benchmarks.put("keywordSearchCached", (f, i) ->
+            sink += f.library.searchBooksByKeywords(
+                TITLE_WORDS[i % TITLE_WORDS.length], AUTHOR_NAMES[i % AUTHOR_NAMES.length].split(" ")[1]).size());
+        benchmarks.put("advancedSearch", (f, i) ->
+            sink += f.library.advancedBookSearch(
+                TITLE_WORDS[i % TITLE_WORDS.length], AUTHOR_NAMES[i % AUTHOR_NAMES.length], null, Boolean.TRUE).size());
+        benchmarks.put("loadFromFiles", (f, i) -> f.library.loadFromFiles());
+        benchmarks.put("libraryReport", (f, i) -> f.library.generateLibraryReport("benchmark_report.txt"));
+        // Saves only write what changed, so each call first changes a fixed number of books and
+        // members; the incremental save appends them to the delta files (folding when they outgrow
+        // a quarter of the catalog), the folded one rewrites books.txt and members.txt in full
+        benchmarks.put("saveToFiles", (f, i) -> {
+            changeBooksAndMembers(f, i);
+            f.library.saveToFiles();
+        });
+        benchmarks.put("saveFolded", (f, i) -> {
+            changeBooksAndMembers(f, i);
+            f.library.foldDeltaFiles();
+        });
+        // Runs last: every call appends two transactions, growing the history
+        benchmarks.put("borrowReturn", (f, i) -> {
+            String memberId = f.memberIds[i % f.memberIds.length];
+            String title = f.titles[(int) ((i * 7919L) % f.titles.length)];
+            f.library.borrowBook(memberId, title);
+            f.library.returnBook(memberId, title);
+        });
+
+        return benchmarks;
+    }
+
+    // Borrow and return CHANGES_PER_SAVE books, each by a different member (also adds transactions)
+    private static void changeBooksAndMembers(Fixture f, int index) {
+        for (int k = 0; k < CHANGES_PER_SAVE; k++) {
+            long change = (long) index * CHANGES_PER_SAVE + k;
+            String memberId = f.memberIds[(int) (change % f.memberIds.length)];
+            String title = f.titles[(int) ((change * 7919L) % f.titles.length)];
+            f.library.borrowBook(memberId, title);
+            f.library.returnBook(memberId, title);
+        }
+    }
+
+    // ==================== MEASUREMENT ====================
+
+    private static Result measure(Fixture fixture, Operation operation, int warmupIterations,
+                                  int measuredIterations, long iterationMillis) throws Exception {
+        return quietly(() -> {
+            // loadFromFiles needs something on disk to load
+            fixture.library.saveToFiles();
+
+            int index = 0;
+            for (int i = 0; i < warmupIterations; i++) {
+                index = runFor(fixture, operation, index, iterationMillis);
+            }
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            Result result = new Result();
+            long startBytes = allocatedBytes(threads);
+            long[] startGc = gcTotals();
+
+            for (int i = 0; i < measuredIterations; i++) {
+                long start = System.nanoTime();
+                int before = index;
+                index = runFor(fixture, operation, index, iterationMillis);
+                result.nanos += System.nanoTime() - start;
+                result.ops += index - before;
+            }
+
+            result.bytes = allocatedBytes(threads) - startBytes;
+            long[] endGc = gcTotals();
+            result.gcCount = endGc[0] - startGc[0];
+            result.gcMillis = endGc[1] - startGc[1];
+            return result;
+        });
+    }
+
+    /**
+     * Run the operation back to back for roughly the given time (always at least once)
+     */
+    private static int runFor(Fixture fixture, Operation operation, int index, long millis) throws Exception {
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        do {
+            operation.run(fixture, index++);
+        } while (System.nanoTime() < deadline);
+        return index;
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0; // Allocation counters not supported on this JVM
+    }
+
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] {count, millis};
+    }
+
+    // ==================== HELPERS ====================
+
+    private interface Task<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * Library reports every operation on System.out; silence it while measuring
+     */
+    private static <T> T quietly(Task<T> task) throws Exception {
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return task.call();
+        } finally {
+            System.setOut(original);
+        }
+    }
+
+    private static int[] parseSizes(String value) {
+        String[] parts = value.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim().replace("_", ""));
+        }
+        return sizes;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * A synthetic library with its own data and reports directories
+     */
+    private static class Fixture {
+        Library library;
+        String[] titles;
+        String[] memberIds;
+        File workDir;
+
+        static Fixture create(int bookCount, int historySize) throws Exception {
+            Fixture fixture = new Fixture();
+            fixture.workDir = java.nio.file.Files.createTempDirectory("library-bench").toFile();
+            fixture.library = new Library("Benchmark Library");
+            fixture.library.setDataDirectory(new File(fixture.workDir, "data").getPath());
+            fixture.library.setReportsDirectory(new File(fixture.workDir, "reports").getPath());
+
+            fixture.titles = new String[bookCount];
+            List<Book> batch = new ArrayList<>(bookCount);
+            for (int i = 0; i < bookCount; i++) {
+                String title = TITLE_WORDS[i % TITLE_WORDS.length] + " " +
+                               TITLE_WORDS[(i / TITLE_WORDS.length) % TITLE_WORDS.length] + " Vol " + i;
+                fixture.titles[i] = title;
+                batch.add(new Book(title, AUTHOR_NAMES[i % AUTHOR_NAMES.length],
+                                   String.format("978%010d", i)));
+            }
+            fixture.library.addBooksInBulk(batch);
+
+            int memberCount = Math.max(10, Math.min(bookCount / 10, 100000));
+            fixture.memberIds = new String[memberCount];
+            for (int i = 0; i < memberCount; i++) {
+                Person member = i % 3 == 0
+                    ? new Staff(String.format("T%03d", i), "Staff Member", "staff" + i + "@library.org",
+                                "Library Services", "Librarian")
+                    : new Student(String.format("S%03d", i), "Student Member", "student" + i + "@library.org",
+                                  "Computer Science", 1 + i % 4);
+                fixture.library.addMember(member);
+                fixture.memberIds[i] = member.getId();
+            }
+
+            // Each borrow/return pair records two transactions
+            for (int i = 0; i < historySize / 2; i++) {
+                String memberId = fixture.memberIds[i % memberCount];
+                String title = fixture.titles[i % bookCount];
+                fixture.library.borrowBook(memberId, title);
+                fixture.library.returnBook(memberId, title);
+            }
+
+            return fixture;
+        }
+
+        void delete() {
+            deleteRecursively(workDir);
+        }
+    }
+
+    private static class Result {
+        long ops;
+        long nanos;
+        long bytes;
+        long gcCount;
+        long gcMillis;
+
+        double opsPerSecond() {
+            return nanos == 0 ? 0 : ops * 1_000_000_000.0 / nanos;
+        }
+
+        double averageMicros() {
+            return ops == 0 ? 0 : nanos / 1000.0 / ops;
+        }
+
+        long bytesPerOp() {
+            return ops == 0 ? 0 : bytes / ops;
+        }
+    }
+}
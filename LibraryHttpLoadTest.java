@@ -0,0 +1,171 @@
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LibraryHttpLoadTest - Concurrent load test for LibraryHttpServer on localhost
+ * Demonstrates: java.net.http.HttpClient, Closed-loop concurrent clients, Latency histograms
+ *
+ * Starts an in-process LibraryHttpServer (over a WorkloadGenerator data set,
+ * unless --data is given) and hammers it with many concurrent clients, each
+ * looping over borrow / return / search / member / stats requests. Reports
+ * throughput, latency percentiles and the status code breakdown.
+ *
+ * Usage:
+ *   java LibraryHttpLoadTest [--clients 1000] [--duration 15] [--data dir] [--url http://host:port]
+ */
+public class LibraryHttpLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int clients = 1000;
+        int durationSeconds = 15;
+        String dataDirectory = null;
+        String baseUrl = null;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--clients":  clients = Integer.parseInt(args[i + 1]); break;
+                case "--duration": durationSeconds = Integer.parseInt(args[i + 1]); break;
+                case "--data":     dataDirectory = args[i + 1]; break;
+                case "--url":      baseUrl = args[i + 1]; break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+
+        PrintStream console = System.out;
+        File generatedData = null;
+        if (dataDirectory == null) {
+            generatedData = Files.createTempDirectory("library-loadtest").toFile();
+            dataDirectory = generatedData.getPath();
+            WorkloadGenerator.main(new String[] {"--books", "20000", "--members", "5000",
+                                                 "--transactions", "20000", "--out", dataDirectory});
+        }
+
+        // The library is loaded locally to pick realistic titles and member IDs
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Library library = new Library("Load Test Library");
+        library.setDataDirectory(dataDirectory);
+        library.loadFromFiles();
+
+        LibraryHttpServer server = null;
+        if (baseUrl == null) {
+            server = new LibraryHttpServer(library);
+            server.start(0);
+            baseUrl = "http://localhost:" + server.getPort();
+        }
+
+        List<String> titles = new ArrayList<>();
+        for (Book book : library.getAllBooks()) titles.add(book.getTitle());
+        List<String> memberIds = new ArrayList<>();
+        for (Person member : library.getAllMembers()) memberIds.add(member.getId());
+
+        console.printf("Load testing %s with %,d concurrent clients for %ds...%n", baseUrl, clients, durationSeconds);
+
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(LibraryHttpServer.createRequestExecutor())
+            .build();
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLongArray statusCounts = new AtomicLongArray(600);
+        LongAdder transportErrors = new LongAdder();
+        long deadline = System.nanoTime() + durationSeconds * 1_000_000_000L;
+        String url = baseUrl;
+
+        long start = System.nanoTime();
+        ExecutorService clientThreads = LibraryHttpServer.createRequestExecutor();
+        for (int c = 0; c < clients; c++) {
+            long seed = c;
+            clientThreads.submit(() -> {
+                Random random = new Random(seed);
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = nextRequest(url, random, titles, memberIds);
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        latency.record(System.nanoTime() - sent);
+                        statusCounts.incrementAndGet(Math.min(599, response.statusCode()));
+                    } catch (Exception e) {
+                        transportErrors.increment();
+                    }
+                }
+                return null;
+            });
+        }
+        clientThreads.shutdown();
+        clientThreads.awaitTermination(durationSeconds + 60L, TimeUnit.SECONDS);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        if (server != null) server.stop();
+        System.setOut(console);
+        if (generatedData != null) deleteRecursively(generatedData);
+
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        console.printf("Completed %,d requests in %.1fs - %.1f requests/sec%n",
+            snapshot.getCount(), elapsedSeconds, snapshot.getCount() / elapsedSeconds);
+        console.printf("Latency ms: p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+            snapshot.getPercentileNanos(50) / 1e6, snapshot.getPercentileNanos(90) / 1e6,
+            snapshot.getPercentileNanos(99) / 1e6, snapshot.getPercentileNanos(99.9) / 1e6,
+            snapshot.getMaxNanos() / 1e6);
+        StringBuilder statuses = new StringBuilder("Status codes:");
+        for (int code = 0; code < statusCounts.length(); code++) {
+            if (statusCounts.get(code) > 0) {
+                statuses.append(String.format(" %d=%,d", code, statusCounts.get(code)));
+            }
+        }
+        console.println(statuses + (transportErrors.sum() > 0 ? " transport errors=" + transportErrors.sum() : ""));
+    }
+
+    /**
+     * Mix: 40% search, 20% borrow, 20% return, 15% member lookup, 5% stats
+     */
+    private static HttpRequest nextRequest(String baseUrl, Random random, List<String> titles,
+                                           List<String> memberIds) {
+        String title = titles.get(random.nextInt(titles.size()));
+        String memberId = memberIds.get(random.nextInt(memberIds.size()));
+        int roll = random.nextInt(100);
+
+        if (roll < 40) {
+            String word = title.split(" ")[0];
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/api/search?by=title&q=" + encode(word))).GET().build();
+        } else if (roll < 80) {
+            String path = roll < 60 ? "/api/borrow" : "/api/return";
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("memberId=" + encode(memberId) + "&title=" + encode(title)))
+                .build();
+        } else if (roll < 95) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/api/members/" + encode(memberId))).GET().build();
+        }
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/stats")).GET().build();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
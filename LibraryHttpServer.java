@@ -0,0 +1,439 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LibraryHttpServer - JSON HTTP front end over a Library
+ * Demonstrates: com.sun.net.httpserver, Thread-per-request executors, JSON encoding
+ *
+ * Lets many desk and kiosk clients use one library at the same time:
+ *   POST /api/borrow        memberId, title      - borrow a book
+ *   POST /api/return        memberId, title      - return a book
+ *   POST /api/hold          memberId, title      - join the queue for a book that is out
+ *   POST /api/hold/cancel   memberId, title      - leave the queue
+ *   GET  /api/holds         title                - the queue for a book, next in line first
+ *   GET  /api/search        q, by=title|author|keywords|fuzzy
+ *   GET  /api/search        q, by=ranked, limit=10 - best BM25 matches first
+ *   GET  /api/autocomplete  q, limit=10          - title/author suggestions, most borrowed first
+ *   GET  /api/members/{id}                       - member details, loans and holds
+ *   GET  /api/overdue       dueWithinHours       - overdue loans, or loans falling due within the hours
+ *   GET  /api/stats                              - library statistics
+ *
+ * Parameters may be sent in the query string or as a form-encoded POST body.
+ * Each request runs on its own virtual thread when the JVM supports them
+ * (Java 21+), otherwise on a cached pool of platform threads.
+ *
+ * Usage:
+ *   java LibraryHttpServer [--port 8080] [--data data]
+ */
+public class LibraryHttpServer {
+
+    private final Library library;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    // Constructor
+    public LibraryHttpServer(Library library) {
+        if (library == null) {
+            throw new IllegalArgumentException("Library cannot be null");
+        }
+        this.library = library;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        String dataDirectory = "data";
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[i + 1]); break;
+                case "--data": dataDirectory = args[i + 1]; break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+
+        Library library = new Library("University Central Library");
+        library.setDataDirectory(dataDirectory);
+        library.loadFromFiles();
+        library.getMetrics().registerMBean(library.getLibraryName());
+
+        LibraryHttpServer httpServer = new LibraryHttpServer(library);
+        httpServer.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(httpServer::stop));
+    }
+
+    // ==================== LIFECYCLE ====================
+
+    /**
+     * Start listening; port 0 picks any free port (see getPort())
+     */
+    public synchronized void start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        executor = createRequestExecutor();
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/api/borrow", exchange -> handle(exchange, "POST", this::borrow));
+        server.createContext("/api/return", exchange -> handle(exchange, "POST", this::returnBook));
+        server.createContext("/api/hold", exchange -> handle(exchange, "POST", this::placeHold));
+        server.createContext("/api/hold/cancel", exchange -> handle(exchange, "POST", this::cancelHold));
+        server.createContext("/api/holds", exchange -> handle(exchange, "GET", this::holds));
+        server.createContext("/api/search", exchange -> handle(exchange, "GET", this::search));
+        server.createContext("/api/autocomplete", exchange -> handle(exchange, "GET", this::autocomplete));
+        server.createContext("/api/members/", exchange -> handle(exchange, "GET", this::member));
+        server.createContext("/api/overdue", exchange -> handle(exchange, "GET", this::overdue));
+        server.createContext("/api/stats", exchange -> handle(exchange, "GET", this::stats));
+        server.start();
+        System.out.println("✓ Library HTTP API listening on http://localhost:" + getPort() + "/api/");
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            server = null;
+            System.out.println("✓ Library HTTP API stopped");
+        }
+    }
+
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    /**
+     * One virtual thread per request on Java 21+, a cached thread pool otherwise
+     */
+    static ExecutorService createRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "library-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // ==================== ENDPOINTS ====================
+
+    private interface Endpoint {
+        Response call(HttpExchange exchange, Map<String, String> params) throws Exception;
+    }
+
+    private Response borrow(HttpExchange exchange, Map<String, String> params) throws Exception {
+        String memberId = required(params, "memberId");
+        String title = required(params, "title");
+        Person member = library.findMemberById(memberId);
+        library.findBookByTitle(title);
+
+        boolean borrowed = library.borrowBook(memberId, title);
+        return new Response(borrowed ? 200 : 409, "{\"success\":" + borrowed +
+            ",\"memberId\":" + json(member.getId()) + ",\"title\":" + json(title) +
+            ",\"borrowedBooks\":" + library.getBorrowedBooksCount(memberId) +
+            ",\"maxBooks\":" + member.getMaxBooks() + "}");
+    }
+
+    private Response returnBook(HttpExchange exchange, Map<String, String> params) throws Exception {
+        String memberId = required(params, "memberId");
+        String title = required(params, "title");
+        Person member = library.findMemberById(memberId);
+        library.findBookByTitle(title);
+
+        boolean returned = library.returnBook(memberId, title);
+        return new Response(returned ? 200 : 409, "{\"success\":" + returned +
+            ",\"memberId\":" + json(member.getId()) + ",\"title\":" + json(title) + "}");
+    }
+
+    private Response placeHold(HttpExchange exchange, Map<String, String> params) throws Exception {
+        String memberId = required(params, "memberId");
+        String title = required(params, "title");
+        Person member = library.findMemberById(memberId);
+        library.findBookByTitle(title);
+
+        boolean placed = library.placeHold(memberId, title);
+        return new Response(placed ? 200 : 409, "{\"success\":" + placed +
+            ",\"memberId\":" + json(member.getId()) + ",\"title\":" + json(title) +
+            ",\"position\":" + library.getHoldPosition(memberId, title) + "}");
+    }
+
+    private Response cancelHold(HttpExchange exchange, Map<String, String> params) throws Exception {
+        String memberId = required(params, "memberId");
+        String title = required(params, "title");
+        Person member = library.findMemberById(memberId);
+        library.findBookByTitle(title);
+
+        boolean cancelled = library.cancelHold(memberId, title);
+        return new Response(cancelled ? 200 : 409, "{\"success\":" + cancelled +
+            ",\"memberId\":" + json(member.getId()) + ",\"title\":" + json(title) + "}");
+    }
+
+    private Response holds(HttpExchange exchange, Map<String, String> params) throws Exception {
+        String title = required(params, "title");
+        library.findBookByTitle(title);
+
+        List<HoldQueues.Hold> queue = library.getHoldQueue(title);
+        StringBuilder body = new StringBuilder("{\"title\":").append(json(title))
+            .append(",\"count\":").append(queue.size()).append(",\"holds\":[");
+        for (int i = 0; i < queue.size(); i++) {
+            if (i > 0) body.append(',');
+            appendHold(body, queue.get(i));
+        }
+        return new Response(200, body.append("]}").toString());
+    }
+
+    private Response search(HttpExchange exchange, Map<String, String> params) throws Exception {
+        String query = required(params, "q");
+        String by = params.getOrDefault("by", "title");
+
+        List<Book> results;
+        switch (by) {
+            case "title":    results = library.searchBooksByTitle(query); break;
+            case "author":   results = library.searchBooksByAuthor(query); break;
+            case "keywords": results = library.searchBooksByKeywords(query.trim().split("\\s+")); break;
+            case "fuzzy":    results = library.searchBooksFuzzy(query, FuzzyIndex.MAX_EDITS); break;
+            case "ranked":   results = library.searchBooksRanked(query, limit(params)); break;
+            default:
+                throw new InvalidDataException("by", by, "title, author, keywords, fuzzy or ranked");
+        }
+
+        StringBuilder body = new StringBuilder("{\"count\":").append(results.size()).append(",\"books\":[");
+        for (int i = 0; i < results.size(); i++) {
+            if (i > 0) body.append(',');
+            appendBook(body, results.get(i));
+        }
+        return new Response(200, body.append("]}").toString());
+    }
+
+    private Response autocomplete(HttpExchange exchange, Map<String, String> params) throws Exception {
+        String prefix = required(params, "q");
+        List<AutocompleteIndex.Suggestion> suggestions = library.autocomplete(prefix, limit(params));
+        StringBuilder body = new StringBuilder("{\"count\":").append(suggestions.size()).append(",\"suggestions\":[");
+        for (int i = 0; i < suggestions.size(); i++) {
+            AutocompleteIndex.Suggestion suggestion = suggestions.get(i);
+            if (i > 0) body.append(',');
+            body.append("{\"text\":").append(json(suggestion.getText()))
+                .append(",\"kind\":").append(json(suggestion.getKind().toString().toLowerCase()))
+                .append(",\"circulation\":").append(suggestion.getCirculation()).append('}');
+        }
+        return new Response(200, body.append("]}").toString());
+    }
+
+    private Response member(HttpExchange exchange, Map<String, String> params) throws Exception {
+        // Percent-decoded once, from the raw path; a '+' in a path is itself, not a space
+        String path = exchange.getRequestURI().getRawPath();
+        String memberId = URLDecoder.decode(path.substring("/api/members/".length()).replace("+", "%2B"),
+                                            StandardCharsets.UTF_8);
+        Person member = library.findMemberById(memberId);
+
+        List<String> titles = library.getBorrowedBookTitles(member.getId());
+        StringBuilder borrowedTitles = new StringBuilder("[");
+        for (int i = 0; i < titles.size(); i++) {
+            if (i > 0) borrowedTitles.append(',');
+            borrowedTitles.append(json(titles.get(i)));
+        }
+        List<HoldQueues.Hold> holds = library.getHolds(member.getId());
+        StringBuilder holdList = new StringBuilder("[");
+        for (int i = 0; i < holds.size(); i++) {
+            if (i > 0) holdList.append(',');
+            appendHold(holdList, holds.get(i));
+        }
+        return new Response(200, "{\"id\":" + json(member.getId()) + ",\"name\":" + json(member.getName()) +
+            ",\"type\":" + json(member.getPersonType()) + ",\"email\":" + json(member.getEmail()) +
+            ",\"borrowedBooks\":" + titles.size() + ",\"borrowedTitles\":" + borrowedTitles.append(']') +
+            ",\"holds\":" + holdList.append(']') +
+            ",\"maxBooks\":" + member.getMaxBooks() + "}");
+    }
+
+    private Response overdue(HttpExchange exchange, Map<String, String> params) throws Exception {
+        List<LoanSchedule.Loan> loans;
+        String hours = params.get("dueWithinHours");
+        if (hours == null) {
+            loans = library.getOverdueLoans();
+        } else {
+            long window;
+            try {
+                window = Long.parseLong(hours.trim());
+            } catch (NumberFormatException e) {
+                throw new InvalidDataException("dueWithinHours", hours, "a number of hours from 1 to 8760");
+            }
+            if (window < 1 || window > 8760) {
+                throw new InvalidDataException("dueWithinHours", hours, "a number of hours from 1 to 8760");
+            }
+            loans = library.getLoansDueWithin(Duration.ofHours(window));
+        }
+
+        StringBuilder body = new StringBuilder("{\"count\":").append(loans.size()).append(",\"loans\":[");
+        for (int i = 0; i < loans.size(); i++) {
+            LoanSchedule.Loan loan = loans.get(i);
+            if (i > 0) body.append(',');
+            body.append("{\"title\":").append(json(loan.getBookTitle()))
+                .append(",\"memberId\":").append(json(loan.getMemberId()))
+                .append(",\"dueDate\":").append(json(loan.getDueDate().toString())).append('}');
+        }
+        return new Response(200, body.append("]}").toString());
+    }
+
+    private Response stats(HttpExchange exchange, Map<String, String> params) {
+        int totalBooks = library.getTotalBooks();
+        int availableBooks = library.getAvailableBookCount();
+        return new Response(200, "{\"library\":" + json(library.getLibraryName()) +
+            ",\"totalBooks\":" + totalBooks + ",\"availableBooks\":" + availableBooks +
+            ",\"borrowedBooks\":" + (totalBooks - availableBooks) +
+            ",\"totalMembers\":" + library.getTotalMembers() +
+            ",\"transactions\":" + library.getTransactionCount() + "}");
+    }
+
+    // ==================== REQUEST HANDLING ====================
+
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        Response response;
+        try {
+            if (!method.equals(exchange.getRequestMethod())) {
+                response = error(405, "Use " + method + " for " + exchange.getRequestURI().getPath());
+            } else {
+                response = endpoint.call(exchange, parseParameters(exchange));
+            }
+        } catch (BookNotFoundException | MemberNotFoundException e) {
+            response = error(404, e.getMessage());
+        } catch (InvalidDataException e) {
+            response = error(400, e.getMessage());
+        } catch (Exception e) {
+            response = error(500, "Unexpected error: " + e.getMessage());
+        }
+
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseQuery(exchange.getRequestURI().getRawQuery(), params);
+
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            parseQuery(readBody(exchange.getRequestBody()), params);
+        }
+        return params;
+    }
+
+    private static void parseQuery(String query, Map<String, String> params) {
+        if (query == null || query.isEmpty()) return;
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                       URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        in.transferTo(buffer);
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String required(Map<String, String> params, String name) throws InvalidDataException {
+        String value = params.get(name);
+        ValidationUtils.validateNotEmpty(value, name);
+        return value.trim();
+    }
+
+    // Optional result limit, 1 to 100, default 10
+    private static int limit(Map<String, String> params) throws InvalidDataException {
+        String value = params.getOrDefault("limit", "10");
+        int limit;
+        try {
+            limit = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidDataException("limit", value, "a number from 1 to 100");
+        }
+        if (limit < 1 || limit > 100) {
+            throw new InvalidDataException("limit", value, "a number from 1 to 100");
+        }
+        return limit;
+    }
+
+    // ==================== JSON HELPERS ====================
+
+    private static void appendBook(StringBuilder body, Book book) {
+        body.append("{\"title\":").append(json(book.getTitle()))
+            .append(",\"author\":").append(json(book.getAuthor()))
+            .append(",\"isbn\":").append(json(book.getIsbn()))
+            .append(",\"available\":").append(book.isAvailable())
+            .append(",\"borrowedBy\":").append(json(book.getBorrowedBy()))
+            .append('}');
+    }
+
+    private static void appendHold(StringBuilder body, HoldQueues.Hold hold) {
+        body.append("{\"title\":").append(json(hold.getBookTitle()))
+            .append(",\"memberId\":").append(json(hold.getMemberId()))
+            .append(",\"placedAt\":").append(json(hold.getPlacedAt().toString()))
+            .append(",\"ready\":").append(hold.isReady())
+            .append(",\"pickupBy\":").append(json(hold.isReady() ? hold.getPickupBy().toString() : null))
+            .append('}');
+    }
+
+    /**
+     * Quote and escape a string as a JSON value (null becomes JSON null)
+     */
+    static String json(String value) {
+        if (value == null) return "null";
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':  quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, "{\"success\":false,\"error\":" + json(message) + "}");
+    }
+
+    private static class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -1,3 +1,9 @@
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -18,16 +24,65 @@ import java.util.Scanner;
 public class LibraryManagementSystem {
     private static Library library;
     private static Scanner scanner;
+    private static TransactionRingBuffer.Subscription journal;   // Null unless -Dlibrary.events.journal is set
     
     public static void main(String[] args) {
         // Initialize system
         scanner = new Scanner(System.in);
         library = new Library("University Central Library");
         
-        // Load existing data if available
+        // Load existing data if available; the transaction history is read in the background
+        // unless -Dlibrary.history.warmup=false, which leaves it to the first history view or report
         System.out.println("Starting Library Management System...");
+        library.setHistoryWarmup(Boolean.parseBoolean(System.getProperty("library.history.warmup", "true")));
         library.loadFromFiles();
         
+        // Expose operation metrics over JMX; -Dlibrary.metrics.dumpSeconds=N also writes periodic snapshots
+        library.getMetrics().registerMBean(library.getLibraryName());
+        long dumpSeconds = Long.getLong("library.metrics.dumpSeconds", 0);
+        if (dumpSeconds > 0) {
+            library.getMetrics().startSnapshotDump(
+                new java.io.File(library.getReportsDirectory(), "metrics_snapshot.txt"), dumpSeconds);
+        }
+        
+        // -Dlibrary.history.compactSeconds=N merges small transaction segments in the background;
+        // -Dlibrary.history.retentionDays=N also strips personal details from older transactions
+        library.setTransactionRetentionDays(Integer.getInteger("library.history.retentionDays", -1));
+        long compactSeconds = Long.getLong("library.history.compactSeconds", 0);
+        if (compactSeconds > 0) {
+            library.startHistoryCompaction(compactSeconds);
+        }
+        
+        // -Dlibrary.autosave.delayMillis=N saves changes in the background once they have been quiet
+        // for N ms (at most library.autosave.maxDelayMillis after the first); library.autosave.sync=true fsyncs
+        long autosaveDelay = Long.getLong("library.autosave.delayMillis", 0);
+        if (autosaveDelay > 0) {
+            library.startBackgroundSaving(autosaveDelay,
+                Long.getLong("library.autosave.maxDelayMillis", autosaveDelay * 10),
+                Boolean.getBoolean("library.autosave.sync") ? PersistenceService.Durability.SYNC
+                                                            : PersistenceService.Durability.BUFFERED);
+        }
+        
+        // -Dlibrary.overdue.checkSeconds=N announces loans as they pass their due date
+        long overdueSeconds = Long.getLong("library.overdue.checkSeconds", 0);
+        if (overdueSeconds > 0) {
+            library.addOverdueListener(loan -> System.out.println("\n⏰ Overdue: " + loan));
+            library.startOverdueChecks(overdueSeconds);
+        }
+        
+        // -Dlibrary.events.journal=FILE appends every transaction to FILE on a consumer thread
+        String journalFile = System.getProperty("library.events.journal");
+        if (journalFile != null && !journalFile.isEmpty()) {
+            try {
+                journal = TransactionJournal.start(library, new File(journalFile));
+                // Also on Ctrl+C: closing writes out the transactions still queued for the journal
+                TransactionRingBuffer.Subscription subscription = journal;
+                Runtime.getRuntime().addShutdownHook(new Thread(subscription::close));
+            } catch (IOException e) {
+                System.out.println("❌ Could not open transaction journal: " + e.getMessage());
+            }
+        }
+        
         // Display welcome message
         displayWelcome();
         
@@ -161,10 +216,11 @@ public class LibraryManagementSystem {
             System.out.println("╚══════════════════════════════════════════════════════════╝");
             System.out.println("  1. 📚 Borrow Book");
             System.out.println("  2. 📥 Return Book");
-            System.out.println("  3. 📈 Transaction Log");
+            System.out.println("  3. 🔖 Place / Cancel Hold");
+            System.out.println("  4. 📈 Transaction Log");
             System.out.println("  0. ⬅️  Back to Main Menu");
             
-            int choice = getMenuChoice(0, 3);
+            int choice = getMenuChoice(0, 4);
             
             switch (choice) {
                 case 1:
@@ -174,6 +230,9 @@ public class LibraryManagementSystem {
                     returnBook();
                     break;
                 case 3:
+                    manageHold();
+                    break;
+                case 4:
                     viewTransactionLog();
                     break;
                 case 0:
@@ -240,9 +299,10 @@ public class LibraryManagementSystem {
             System.out.println("╚══════════════════════════════════════════════════════════╝");
             System.out.println("  1. 💾 Save All Data");
             System.out.println("  2. 📂 Load Data");
+            System.out.println("  3. 📥 Bulk Import Catalog (CSV/TSV)");
             System.out.println("  0. ⬅️  Back to Main Menu");
             
-            int choice = getMenuChoice(0, 2);
+            int choice = getMenuChoice(0, 3);
             
             switch (choice) {
                 case 1:
@@ -251,6 +311,9 @@ public class LibraryManagementSystem {
                 case 2:
                     loadData();
                     break;
+                case 3:
+                    bulkImportCatalog();
+                    break;
                 case 0:
                     return;
             }
@@ -373,6 +436,37 @@ public class LibraryManagementSystem {
         waitForEnter();
     }
     
+    private static void manageHold() {
+        clearScreen();
+        System.out.println("╔══════════════════════════════════════════════════════════╗");
+        System.out.println("║                  PLACE / CANCEL HOLD                    ║");
+        System.out.println("╚══════════════════════════════════════════════════════════╝");
+        
+        try {
+            System.out.print("🆔 Enter member ID: ");
+            String memberId = scanner.nextLine().trim();
+            
+            System.out.print("📖 Enter book title: ");
+            String bookTitle = scanner.nextLine().trim();
+            
+            System.out.println("  1. Place hold (join the queue)");
+            System.out.println("  2. Cancel hold");
+            int action = getMenuChoice(1, 2);
+            
+            if (action == 1 ? library.placeHold(memberId, bookTitle) : library.cancelHold(memberId, bookTitle)) {
+                System.out.println("✅ Holds on '" + bookTitle + "': " + library.getHoldQueue(bookTitle).size() +
+                                   " member(s) waiting.");
+            } else {
+                System.out.println("❌ Hold not changed. Please check the details.");
+            }
+            
+        } catch (Exception e) {
+            System.out.println("❌ Error updating hold: " + e.getMessage());
+        }
+        
+        waitForEnter();
+    }
+    
     private static void returnBook() {
         clearScreen();
         System.out.println("╔══════════════════════════════════════════════════════════╗");
@@ -410,6 +504,14 @@ public class LibraryManagementSystem {
         System.out.println("\n📊 Quick Overview:");
         System.out.println("   👥 Active Members: " + library.getTotalMembers());
         System.out.println("   🔄 Total Transactions: " + library.getTransactionCount());
+        if (library.getPersistenceService() != null) {
+            System.out.println("   💾 " + library.getPersistenceService());
+        }
+        System.out.println("   🔍 " + library.getSearchCache());
+        System.out.println("   📨 " + library.getTransactionEvents());
+        System.out.println("   ⏰ Overdue Loans: " + library.getOverdueLoans().size() +
+                           " (" + library.findOverdueMembers().size() + " members), due in the next 24 hours: " +
+                           library.getLoansDueWithin(java.time.Duration.ofHours(24)).size());
         
         waitForEnter();
     }
@@ -421,7 +523,24 @@ public class LibraryManagementSystem {
         System.out.println("╚══════════════════════════════════════════════════════════╝");
         
         System.out.println("📊 Total Transactions: " + library.getTransactionCount());
-        System.out.println("🚧 Detailed transaction log feature coming soon!");
+        
+        LocalDateTime today = LocalDate.now().atStartOfDay();
+        System.out.println("\n📅 Circulation over the last 7 days:");
+        List<CirculationSummary> days = library.summarizeTransactions(today.minusDays(6), today.plusDays(1),
+                                                                      ChronoUnit.DAYS);
+        if (days.isEmpty()) {
+            System.out.println("   No borrowing or returns in the last 7 days.");
+        }
+        for (CirculationSummary day : days) {
+            System.out.printf("   %s  📚 %d borrowed  📥 %d returned%n",
+                day.getPeriodStart().toLocalDate(), day.getBorrows(), day.getReturns());
+        }
+        
+        List<Transaction> todays = library.transactionsBetween(today, today.plusDays(1));
+        System.out.println("\n🕒 Today's transactions (" + todays.size() + "):");
+        for (int i = Math.max(0, todays.size() - 20); i < todays.size(); i++) {
+            todays.get(i).displayTransaction(); // The 20 most recent
+        }
         waitForEnter();
     }
     
@@ -457,6 +576,7 @@ public class LibraryManagementSystem {
         var results = library.searchBooksByTitle(title);
         if (results.isEmpty()) {
             System.out.println("❌ No books found with title containing: " + title);
+            showFuzzyMatches(title);
         } else {
             System.out.println("✅ Found " + results.size() + " book(s):");
             for (Book book : results) {
@@ -479,6 +599,7 @@ public class LibraryManagementSystem {
         var results = library.searchBooksByAuthor(author);
         if (results.isEmpty()) {
             System.out.println("❌ No books found by author containing: " + author);
+            showFuzzyMatches(author);
         } else {
             System.out.println("✅ Found " + results.size() + " book(s):");
             for (Book book : results) {
@@ -489,6 +610,17 @@ public class LibraryManagementSystem {
         waitForEnter();
     }
     
+    // Offer close matches when an exact search finds nothing (usually a typo)
+    private static void showFuzzyMatches(String query) {
+        var matches = library.searchBooksFuzzy(query, FuzzyIndex.MAX_EDITS);
+        if (!matches.isEmpty()) {
+            System.out.println("💡 Did you mean:");
+            for (int i = 0; i < Math.min(5, matches.size()); i++) {
+                System.out.println("  📖 " + matches.get(i).toString());
+            }
+        }
+    }
+    
     private static void generateLibraryReport() {
         clearScreen();
         System.out.println("╔══════════════════════════════════════════════════════════╗");
@@ -552,6 +684,28 @@ public class LibraryManagementSystem {
         waitForEnter();
     }
     
+    private static void bulkImportCatalog() {
+        clearScreen();
+        System.out.println("╔══════════════════════════════════════════════════════════╗");
+        System.out.println("║                BULK IMPORT CATALOG                      ║");
+        System.out.println("╚══════════════════════════════════════════════════════════╝");
+        
+        System.out.print("📁 Enter catalog file path (Title,Author,ISBN per row): ");
+        String fileName = scanner.nextLine().trim();
+        
+        try {
+            BulkCatalogImporter.ImportResult result = new BulkCatalogImporter(library).importFile(fileName);
+            System.out.println("✅ Imported " + result.getImported() + " book(s).");
+            if (result.getRejected() > 0) {
+                System.out.println("⚠️  " + result.getRejected() + " row(s) rejected - see " + result.getRejectFile());
+            }
+        } catch (Exception e) {
+            System.out.println("❌ Import failed: " + e.getMessage());
+        }
+        
+        waitForEnter();
+    }
+    
     // Helper methods
     private static int getMenuChoice(int min, int max) {
         while (true) {
@@ -614,6 +768,11 @@ public class LibraryManagementSystem {
             System.out.println("✅ Data saved successfully!");
         }
         
+        library.stopBackgroundSaving(); // Saves anything still pending when autosave is on
+        if (journal != null) {
+            journal.close(); // Journals the transactions not yet written and closes the file
+        }
+        
         System.out.println("\\n👋 Thank you for using the Library Management System!");
         System.out.println("🏛️  " + library.getLibraryName() + " - Have a great day!");
         
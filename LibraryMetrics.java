@@ -0,0 +1,248 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * LibraryMetrics - Per-operation latency histograms and outcome counters
+ * Demonstrates: JMX MBeans, ConcurrentHashMap, LongAdder, Scheduled executors
+ *
+ * Library records the latency and outcome of every circulation, search,
+ * persistence and report call here. Failures are counted per exception type
+ * (BookAlreadyBorrowedException, MaxBooksExceededException, ...). The numbers
+ * can be read live over JMX or appended periodically to a snapshot file.
+ */
+public class LibraryMetrics implements LibraryMetricsMBean {
+
+    // Instrumented operation names
+    public static final String BORROW = "borrowBook";
+    public static final String RETURN = "returnBook";
+    public static final String SEARCH_TITLE = "searchBooksByTitle";
+    public static final String SEARCH_AUTHOR = "searchBooksByAuthor";
+    public static final String SEARCH_KEYWORDS = "searchBooksByKeywords";
+    public static final String SEARCH_FUZZY = "searchBooksFuzzy";
+    public static final String SEARCH_RANKED = "searchBooksRanked";
+    public static final String SEARCH_ADVANCED = "advancedBookSearch";
+    public static final String SEARCH_MEMBERS = "searchMembers";
+    public static final String AUTOCOMPLETE = "autocomplete";
+    public static final String SAVE = "saveToFiles";
+    public static final String LIBRARY_REPORT = "generateLibraryReport";
+    public static final String BORROWING_REPORT = "generateBorrowingReport";
+
+    private final ConcurrentHashMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<String> operationOrder = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService snapshotScheduler;
+
+    // Constructor - pre-register the standard operations so they always show up
+    public LibraryMetrics() {
+        for (String operation : new String[] {BORROW, RETURN, SEARCH_TITLE, SEARCH_AUTHOR, SEARCH_KEYWORDS,
+                                               SEARCH_FUZZY, SEARCH_RANKED, SEARCH_ADVANCED, SEARCH_MEMBERS, AUTOCOMPLETE,
+                                               SAVE, LIBRARY_REPORT, BORROWING_REPORT}) {
+            stats(operation);
+        }
+    }
+
+    // ==================== RECORDING ====================
+
+    /**
+     * Record a successful call that started at startNanos (from System.nanoTime())
+     */
+    public void recordSuccess(String operation, long startNanos) {
+        OperationStats stats = stats(operation);
+        stats.latency.record(System.nanoTime() - startNanos);
+        stats.successes.increment();
+    }
+
+    /**
+     * Record a failed call, classified by the exception that caused it
+     */
+    public void recordFailure(String operation, long startNanos, Throwable cause) {
+        recordFailure(operation, startNanos, cause.getClass().getSimpleName());
+    }
+
+    /**
+     * Record a failed call with an explicit reason (for failures without an exception)
+     */
+    public void recordFailure(String operation, long startNanos, String reason) {
+        OperationStats stats = stats(operation);
+        stats.latency.record(System.nanoTime() - startNanos);
+        stats.failures.computeIfAbsent(reason, key -> new LongAdder()).increment();
+    }
+
+    private OperationStats stats(String operation) {
+        OperationStats stats = operations.get(operation);
+        if (stats == null) {
+            stats = operations.computeIfAbsent(operation, key -> {
+                operationOrder.add(key);
+                return new OperationStats();
+            });
+        }
+        return stats;
+    }
+
+    public LatencyHistogram.Snapshot latencySnapshot(String operation) {
+        return stats(operation).latency.snapshot();
+    }
+
+    // ==================== MBEAN ATTRIBUTES & OPERATIONS ====================
+
+    @Override
+    public String[] getOperationNames() {
+        return operationOrder.toArray(new String[0]);
+    }
+
+    @Override
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%-24s %10s %8s %10s %10s %10s %10s %10s%n",
+            "Operation", "OK", "Failed", "mean us", "p50 us", "p99 us", "p99.9 us", "max us"));
+        for (String operation : operationOrder) {
+            OperationStats stats = operations.get(operation);
+            LatencyHistogram.Snapshot latency = stats.latency.snapshot();
+            summary.append(String.format("%-24s %,10d %,8d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                operation, stats.successes.sum(), stats.failureTotal(),
+                latency.getMeanNanos() / 1000.0,
+                latency.getPercentileNanos(50) / 1000.0,
+                latency.getPercentileNanos(99) / 1000.0,
+                latency.getPercentileNanos(99.9) / 1000.0,
+                latency.getMaxNanos() / 1000.0));
+            if (!stats.failures.isEmpty()) {
+                summary.append("    failures: ").append(failureBreakdown(operation)).append('\n');
+            }
+        }
+        return summary.toString();
+    }
+
+    @Override
+    public long successCount(String operation) {
+        OperationStats stats = operations.get(operation);
+        return stats == null ? 0 : stats.successes.sum();
+    }
+
+    @Override
+    public long failureCount(String operation) {
+        OperationStats stats = operations.get(operation);
+        return stats == null ? 0 : stats.failureTotal();
+    }
+
+    /**
+     * Failure counts for one operation keyed by exception type, sorted by name
+     */
+    public Map<String, Long> failuresByType(String operation) {
+        Map<String, Long> result = new TreeMap<>();
+        OperationStats stats = operations.get(operation);
+        if (stats != null) {
+            stats.failures.forEach((type, count) -> result.put(type, count.sum()));
+        }
+        return result;
+    }
+
+    @Override
+    public String failureBreakdown(String operation) {
+        return failuresByType(operation).toString();
+    }
+
+    @Override
+    public double latencyPercentileMicros(String operation, double percentile) {
+        OperationStats stats = operations.get(operation);
+        return stats == null ? 0 : stats.latency.snapshot().getPercentileNanos(percentile) / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        for (OperationStats stats : operations.values()) {
+            stats.latency.reset();
+            stats.successes.reset();
+            stats.failures.clear();
+        }
+    }
+
+    // ==================== EXPORT ====================
+
+    /**
+     * Register this object with the platform MBean server as
+     * library:type=LibraryMetrics,name="<libraryName>" (replacing any previous one)
+     */
+    public void registerMBean(String libraryName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("library:type=LibraryMetrics,name=" + ObjectName.quote(libraryName));
+            try {
+                server.registerMBean(this, name);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(name);
+                server.registerMBean(this, name);
+            }
+        } catch (Exception e) {
+            System.out.println("Warning: Could not register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Append a timestamped summary to the given file every periodSeconds
+     */
+    public synchronized void startSnapshotDump(File file, long periodSeconds) {
+        stopSnapshotDump();
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "library-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleAtFixedRate(() -> dumpSnapshot(file), periodSeconds, periodSeconds,
+                                              TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopSnapshotDump() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+            snapshotScheduler = null;
+        }
+    }
+
+    /**
+     * Append one timestamped summary to the given file
+     */
+    public void dumpSnapshot(File file) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file, true))) {
+            writer.println("=== Metrics snapshot " + LocalDateTime.now() + " ===");
+            writer.print(getSummary());
+            writer.println();
+        } catch (IOException e) {
+            System.out.println("Error writing metrics snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Counters for one operation
+     */
+    private static class OperationStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder successes = new LongAdder();
+        final ConcurrentHashMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+        long failureTotal() {
+            long total = 0;
+            for (LongAdder count : failures.values()) {
+                total += count.sum();
+            }
+            return total;
+        }
+    }
+}
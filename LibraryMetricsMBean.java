@@ -0,0 +1,44 @@
+/**
+ * Management interface for LibraryMetrics
+ * Demonstrates: JMX Standard MBean naming convention (ClassName + "MBean")
+ *
+ * Getters appear as attributes and the remaining methods as operations in
+ * JConsole / VisualVM under the "library" domain.
+ */
+public interface LibraryMetricsMBean {
+
+    /**
+     * @return names of every instrumented operation
+     */
+    String[] getOperationNames();
+
+    /**
+     * @return a formatted table of counts and latency percentiles for all operations
+     */
+    String getSummary();
+
+    /**
+     * @return number of successful calls of an operation
+     */
+    long successCount(String operation);
+
+    /**
+     * @return number of failed calls of an operation, across all failure reasons
+     */
+    long failureCount(String operation);
+
+    /**
+     * @return failure counts of an operation broken down by exception type
+     */
+    String failureBreakdown(String operation);
+
+    /**
+     * @return latency of an operation at a percentile (0-100), in microseconds
+     */
+    double latencyPercentileMicros(String operation, double percentile);
+
+    /**
+     * Clear all counters and histograms
+     */
+    void reset();
+}
@@ -0,0 +1,148 @@
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * LoanSchedule - Outstanding loans ordered by due date
+ * Demonstrates: TreeSet range views, Time-ordered scheduling, Nested static classes
+ *
+ * Every book that is out with a due date is kept in a TreeSet sorted by due
+ * date (then title), with a title -> loan map for returns. "What is overdue
+ * now" is the head of the set before now and "what falls due in the next
+ * hour" is the slice between now and an hour from now, so both cost
+ * O(log n) plus the loans they return, not a pass over every loan.
+ *
+ * The overdue scheduler (Library.startOverdueChecks) calls takeNewlyOverdue,
+ * which hands out each loan once as it passes its due date.
+ */
+public class LoanSchedule {
+
+    private static final Comparator<Loan> BY_DUE_DATE =
+        Comparator.comparing(Loan::getDueDate).thenComparing(Loan::getBookTitle);
+
+    private final TreeSet<Loan> byDueDate = new TreeSet<>(BY_DUE_DATE);
+    private final Map<String, Loan> byTitle = new HashMap<>();
+    private LocalDateTime notifiedBefore = LocalDateTime.MIN; // Loans due before this were handed out
+
+    // ==================== QUERIES ====================
+
+    /**
+     * Loans due before the given time, most overdue first
+     */
+    public synchronized List<Loan> overdueAt(LocalDateTime now) {
+        return new ArrayList<>(byDueDate.headSet(probe(now), false));
+    }
+
+    /**
+     * Loans due from (inclusive) to (exclusive), soonest first
+     */
+    public synchronized List<Loan> dueBetween(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(byDueDate.subSet(probe(from), true, probe(to), false));
+    }
+
+    /**
+     * @return the earliest due date of any outstanding loan, or null if there are none
+     */
+    public synchronized LocalDateTime nextDueDate() {
+        return byDueDate.isEmpty() ? null : byDueDate.first().getDueDate();
+    }
+
+    public synchronized int size() {
+        return byDueDate.size();
+    }
+
+    /**
+     * Loans that have become overdue since the last call (all overdue loans
+     * on the first call), each returned only once
+     */
+    public synchronized List<Loan> takeNewlyOverdue(LocalDateTime now) {
+        List<Loan> newlyOverdue = new ArrayList<>();
+        if (now.isAfter(notifiedBefore)) {
+            newlyOverdue.addAll(byDueDate.subSet(probe(notifiedBefore), true, probe(now), false));
+            notifiedBefore = now;
+        }
+        return newlyOverdue;
+    }
+
+    // Sorts before every loan due at that time (titles are never empty)
+    private static Loan probe(LocalDateTime time) {
+        return new Loan("", "", time);
+    }
+
+    // ==================== MAINTENANCE ====================
+    // Called by Library while it holds its lock
+
+    synchronized void loanStarted(String bookTitle, String memberId, LocalDateTime dueDate) {
+        loanEnded(bookTitle);
+        if (dueDate != null) {
+            Loan loan = new Loan(bookTitle, memberId, dueDate);
+            byDueDate.add(loan);
+            byTitle.put(bookTitle, loan);
+        }
+    }
+
+    synchronized void loanEnded(String bookTitle) {
+        Loan loan = byTitle.remove(bookTitle);
+        if (loan != null) {
+            byDueDate.remove(loan);
+        }
+    }
+
+    /**
+     * Start over from the loans of the given books (after loading the catalog)
+     */
+    synchronized void rebuild(Collection<Book> books) {
+        byDueDate.clear();
+        byTitle.clear();
+        notifiedBefore = LocalDateTime.MIN;
+        for (Book book : books) {
+            if (book.getBorrowedBy() != null) {
+                loanStarted(book.getTitle(), book.getBorrowedBy(), book.getDueDate());
+            }
+        }
+    }
+
+    /**
+     * One book out on loan
+     */
+    public static class Loan {
+        private final String bookTitle;
+        private final String memberId;
+        private final LocalDateTime dueDate;
+
+        Loan(String bookTitle, String memberId, LocalDateTime dueDate) {
+            this.bookTitle = bookTitle;
+            this.memberId = memberId;
+            this.dueDate = dueDate;
+        }
+
+        public String getBookTitle() {
+            return bookTitle;
+        }
+
+        public String getMemberId() {
+            return memberId;
+        }
+
+        public LocalDateTime getDueDate() {
+            return dueDate;
+        }
+
+        public boolean isOverdueAt(LocalDateTime now) {
+            return dueDate.isBefore(now);
+        }
+
+        @Override
+        public String toString() {
+            return "'" + bookTitle + "' (" + memberId + ") due " + dueDate;
+        }
+    }
+}
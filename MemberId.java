@@ -0,0 +1,125 @@
+/**
+ * Utility class for the compact numeric member ID scheme
+ * Demonstrates: Bit packing, Static utility methods, Character parsing without regex
+ *
+ * A member ID is a type letter followed by a sequence number:
+ *   S001, S60000   - students
+ *   T001, T1234567 - staff
+ *
+ * Legacy three-digit IDs (S### / T###) are simply the smallest IDs in this
+ * scheme. Every ID packs into one long: the type tag lives in the top byte and
+ * the sequence number in the lower 56 bits, so indexes can key on a primitive
+ * instead of hashing strings. Leading zeros are not significant - S001 and
+ * S0001 name the same member.
+ */
+public class MemberId {
+
+    public static final long INVALID = -1L;
+
+    public static final int MIN_DIGITS = 3;
+    public static final int MAX_DIGITS = 15; // 10^15 fits comfortably in 56 bits
+
+    private static final int TAG_SHIFT = 56;
+    private static final long SEQUENCE_MASK = (1L << TAG_SHIFT) - 1;
+
+    // Type tags - never 0, so an encoded ID is always a positive, non-zero long
+    private static final int STUDENT_TAG = 1;
+    private static final int STAFF_TAG = 2;
+
+    // Private constructor to prevent instantiation (utility class)
+    private MemberId() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    /**
+     * Encode a member ID string into its packed long form
+     * @return the encoded ID, or INVALID if the string is not a member ID
+     */
+    public static long encode(String memberId) {
+        if (memberId == null) {
+            return INVALID;
+        }
+
+        int length = memberId.length();
+        int digits = length - 1;
+        if (digits < MIN_DIGITS || digits > MAX_DIGITS) {
+            return INVALID;
+        }
+
+        int tag = tagFor(memberId.charAt(0));
+        if (tag == 0) {
+            return INVALID;
+        }
+
+        long sequence = 0;
+        for (int i = 1; i < length; i++) {
+            char c = memberId.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            sequence = sequence * 10 + (c - '0');
+        }
+
+        return ((long) tag << TAG_SHIFT) | sequence;
+    }
+
+    /**
+     * Format an encoded ID back into its canonical string (at least 3 digits)
+     */
+    public static String format(long encodedId) {
+        if (!isValid(encodedId)) {
+            throw new IllegalArgumentException("Not an encoded member ID: " + encodedId);
+        }
+
+        String digits = Long.toString(sequenceOf(encodedId));
+        StringBuilder builder = new StringBuilder(1 + Math.max(MIN_DIGITS, digits.length()));
+        builder.append(typeLetter(encodedId));
+        for (int i = digits.length(); i < MIN_DIGITS; i++) {
+            builder.append('0');
+        }
+        return builder.append(digits).toString();
+    }
+
+    /**
+     * Build an encoded ID from its parts
+     */
+    public static long of(char typeLetter, long sequence) {
+        int tag = tagFor(typeLetter);
+        if (tag == 0 || sequence < 0 || sequence > SEQUENCE_MASK) {
+            return INVALID;
+        }
+        return ((long) tag << TAG_SHIFT) | sequence;
+    }
+
+    public static boolean isValid(long encodedId) {
+        int tag = (int) (encodedId >>> TAG_SHIFT);
+        return encodedId > 0 && (tag == STUDENT_TAG || tag == STAFF_TAG);
+    }
+
+    public static boolean isStudent(long encodedId) {
+        return (encodedId >>> TAG_SHIFT) == STUDENT_TAG;
+    }
+
+    public static boolean isStaff(long encodedId) {
+        return (encodedId >>> TAG_SHIFT) == STAFF_TAG;
+    }
+
+    public static long sequenceOf(long encodedId) {
+        return encodedId & SEQUENCE_MASK;
+    }
+
+    public static char typeLetter(long encodedId) {
+        return isStudent(encodedId) ? 'S' : 'T';
+    }
+
+    private static int tagFor(char typeLetter) {
+        switch (typeLetter) {
+            case 'S':
+                return STUDENT_TAG;
+            case 'T':
+                return STAFF_TAG;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+import java.util.HashMap;
+
+/**
+ * MemberIndex - Primitive-keyed hash index from member ID to Person
+ * Demonstrates: Open addressing, Linear probing, Backward-shift deletion
+ *
+ * Member IDs are encoded with MemberId into a single long, and members are
+ * stored in parallel long[] / Person[] arrays. Lookups never hash strings or
+ * box keys. IDs that do not fit the scheme (e.g. hand-edited data files) fall
+ * back to a small String-keyed map so they are never lost.
+ */
+public class MemberIndex {
+
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final long EMPTY = 0L; // Encoded IDs are never 0
+
+    private long[] keys;
+    private Person[] values;
+    private int size;
+    private int resizeThreshold;
+
+    // Members whose IDs cannot be encoded
+    private final HashMap<String, Person> nonStandardIds = new HashMap<>();
+
+    // Constructor
+    public MemberIndex(int expectedMembers) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedMembers) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    // Default constructor
+    public MemberIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Find a member by ID string
+     */
+    public Person get(String memberId) {
+        long key = MemberId.encode(memberId);
+        return key == MemberId.INVALID ? nonStandardIds.get(memberId) : get(key);
+    }
+
+    /**
+     * Find a member by encoded ID
+     */
+    public Person get(long encodedId) {
+        int mask = keys.length - 1;
+        for (int slot = slotFor(encodedId, mask); ; slot = (slot + 1) & mask) {
+            long key = keys[slot];
+            if (key == encodedId) return values[slot];
+            if (key == EMPTY) return null;
+        }
+    }
+
+    public boolean containsKey(String memberId) {
+        return get(memberId) != null;
+    }
+
+    /**
+     * Index a member under its own ID
+     * @return the member previously stored under that ID, or null
+     */
+    public Person put(Person member) {
+        long key = MemberId.encode(member.getId());
+        if (key == MemberId.INVALID) {
+            return nonStandardIds.put(member.getId(), member);
+        }
+
+        int mask = keys.length - 1;
+        int slot = slotFor(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                Person previous = values[slot];
+                values[slot] = member;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = member;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Remove a member by ID string
+     * @return the removed member, or null if none was indexed
+     */
+    public Person remove(String memberId) {
+        long key = MemberId.encode(memberId);
+        if (key == MemberId.INVALID) {
+            return nonStandardIds.remove(memberId);
+        }
+
+        int mask = keys.length - 1;
+        int slot = slotFor(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY) return null;
+            slot = (slot + 1) & mask;
+        }
+
+        Person removed = values[slot];
+        deleteSlot(slot, mask);
+        size--;
+        return removed;
+    }
+
+    public int size() {
+        return size + nonStandardIds.size();
+    }
+
+    public void clear() {
+        allocate(DEFAULT_CAPACITY);
+        nonStandardIds.clear();
+    }
+
+    // ==================== INTERNAL HELPERS ====================
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Person[capacity];
+        size = 0;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Backward-shift deletion keeps probe chains intact without tombstones
+     */
+    private void deleteSlot(int slot, int mask) {
+        int gap = slot;
+        for (int next = (gap + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slotFor(keys[next], mask);
+            // Move the entry back if the gap lies between its home slot and where it sits now
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = EMPTY;
+        values[gap] = null;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        Person[] oldValues = values;
+        allocate(newCapacity);
+
+        int mask = newCapacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slotFor(oldKeys[i], mask);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                size++;
+            }
+        }
+    }
+
+    private static int slotFor(long key, int mask) {
+        // Fibonacci hashing spreads sequential IDs across the table
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+}
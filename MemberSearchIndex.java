@@ -0,0 +1,253 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * MemberSearchIndex - Indexes for searching members by type, name and loans
+ * Demonstrates: BitSet indexes, Trigram inverted indexes, Posting-list intersection
+ *
+ * Every member gets an ordinal in catalog order. Member type, borrowing
+ * limit and "currently has loans" are each a BitSet of ordinals, and each
+ * trigram of a lower-case name has a sorted list of the ordinals whose name
+ * contains it. A search starts from the shortest list among the pattern's
+ * trigrams, intersects the others into it, then keeps the ordinals that are
+ * set in every BitSet the search filters on - checking the name itself only
+ * for what survives. Results come out in ordinal, i.e. catalog, order.
+ *
+ * Patterns shorter than a trigram are checked against the members the other
+ * filters leave. Removed members leave their ordinals behind in the trigram
+ * lists until there are more removed than live ones, when the index is
+ * built again.
+ */
+public class MemberSearchIndex {
+
+    private static final int GRAM = 3;
+
+    private Person[] members = new Person[64];                          // Ordinal -> member, null once removed
+    private String[] names = new String[64];                            // Ordinal -> lower-case name
+    private int nextOrdinal;
+    private int removed;
+    private final Map<Person, Integer> ordinals = new IdentityHashMap<>();
+    private final BitSet live = new BitSet();
+    private final BitSet withLoans = new BitSet();
+    private final Map<String, BitSet> byType = new HashMap<>();          // Lower-case person type
+    private final Map<Integer, BitSet> byMaxBooks = new HashMap<>();
+    private final Map<String, OrdinalList> grams = new HashMap<>();     // Name trigram -> ordinals
+
+    // ==================== SEARCH ====================
+
+    /**
+     * Members matching every given filter, in catalog order; a null or empty
+     * filter matches everyone
+     * @param memberType person type, ignoring case ("Student", "Staff")
+     * @param namePattern text the name must contain, ignoring case
+     * @param maxBooks borrowing limit the member must have
+     */
+    public synchronized List<Person> search(String memberType, String namePattern, Integer maxBooks) {
+        BitSet filter = (BitSet) live.clone();
+        if (memberType != null && !memberType.trim().isEmpty()) {
+            and(filter, byType.get(memberType.trim().toLowerCase()));
+        }
+        if (maxBooks != null) {
+            and(filter, byMaxBooks.get(maxBooks));
+        }
+
+        String pattern = namePattern == null ? "" : namePattern.trim().toLowerCase();
+        List<Person> results = new ArrayList<>();
+        if (pattern.length() < GRAM) {
+            for (int ordinal = filter.nextSetBit(0); ordinal >= 0; ordinal = filter.nextSetBit(ordinal + 1)) {
+                if (names[ordinal].contains(pattern)) {
+                    results.add(members[ordinal]);
+                }
+            }
+            return results;
+        }
+
+        // Intersect the pattern's trigram lists, shortest first
+        List<OrdinalList> lists = new ArrayList<>();
+        for (String gram : gramsOf(pattern)) {
+            OrdinalList list = grams.get(gram);
+            if (list == null) {
+                return results;
+            }
+            lists.add(list);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        int[] candidates = Arrays.copyOf(lists.get(0).ordinals, lists.get(0).size);
+        int count = candidates.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            count = intersect(candidates, count, lists.get(i));
+        }
+
+        for (int i = 0; i < count; i++) {
+            int ordinal = candidates[i];
+            if (filter.get(ordinal) && names[ordinal].contains(pattern)) {
+                results.add(members[ordinal]);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Members with at least one book out, in catalog order
+     */
+    public synchronized List<Person> membersWithLoans() {
+        List<Person> results = new ArrayList<>(withLoans.cardinality());
+        for (int ordinal = withLoans.nextSetBit(0); ordinal >= 0; ordinal = withLoans.nextSetBit(ordinal + 1)) {
+            results.add(members[ordinal]);
+        }
+        return results;
+    }
+
+    private static void and(BitSet filter, BitSet index) {
+        if (index == null) {
+            filter.clear();
+        } else {
+            filter.and(index);
+        }
+    }
+
+    // Keep the first count candidates that are also in list (both ascending); returns how many remain
+    private static int intersect(int[] candidates, int count, OrdinalList list) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            int ordinal = candidates[i];
+            j = list.seek(ordinal, j);
+            if (j < list.size && list.ordinals[j] == ordinal) {
+                candidates[kept++] = ordinal;
+            }
+        }
+        return kept;
+    }
+
+    // ==================== MAINTENANCE ====================
+    // Called by Library while it holds its lock
+
+    synchronized void rebuild(Collection<Person> all, ToIntFunction<Person> loanCount) {
+        members = new Person[Math.max(64, all.size())];
+        names = new String[members.length];
+        nextOrdinal = 0;
+        removed = 0;
+        ordinals.clear();
+        live.clear();
+        withLoans.clear();
+        byType.clear();
+        byMaxBooks.clear();
+        grams.clear();
+        for (Person member : all) {
+            memberAdded(member, loanCount.applyAsInt(member));
+        }
+    }
+
+    synchronized void memberAdded(Person member, int loans) {
+        if (nextOrdinal == members.length) {
+            members = Arrays.copyOf(members, nextOrdinal * 2);
+            names = Arrays.copyOf(names, nextOrdinal * 2);
+        }
+        int ordinal = nextOrdinal++;
+        members[ordinal] = member;
+        names[ordinal] = member.getName().toLowerCase();
+        ordinals.put(member, ordinal);
+        live.set(ordinal);
+        withLoans.set(ordinal, loans > 0);
+        byType.computeIfAbsent(member.getPersonType().toLowerCase(), key -> new BitSet()).set(ordinal);
+        byMaxBooks.computeIfAbsent(member.getMaxBooks(), key -> new BitSet()).set(ordinal);
+        for (String gram : gramsOf(names[ordinal])) {
+            grams.computeIfAbsent(gram, key -> new OrdinalList()).add(ordinal);
+        }
+    }
+
+    synchronized void memberRemoved(Person member) {
+        Integer ordinal = ordinals.remove(member);
+        if (ordinal == null) {
+            return;
+        }
+        members[ordinal] = null;
+        names[ordinal] = null;
+        live.clear(ordinal);
+        withLoans.clear(ordinal);
+        BitSet type = byType.get(member.getPersonType().toLowerCase());
+        if (type != null) {
+            type.clear(ordinal);
+        }
+        BitSet limit = byMaxBooks.get(member.getMaxBooks());
+        if (limit != null) {
+            limit.clear(ordinal);
+        }
+        if (++removed > ordinals.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * The member's loan count changed (after a borrow or return)
+     */
+    synchronized void loansChanged(Person member, int loans) {
+        Integer ordinal = ordinals.get(member);
+        if (ordinal != null) {
+            withLoans.set(ordinal, loans > 0);
+        }
+    }
+
+    public synchronized int size() {
+        return ordinals.size();
+    }
+
+    // Renumber the live members so the trigram lists lose the removed ordinals
+    private void compact() {
+        Map<Person, Integer> loans = new IdentityHashMap<>();
+        List<Person> remaining = new ArrayList<>(ordinals.size());
+        for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+            remaining.add(members[ordinal]);
+            loans.put(members[ordinal], withLoans.get(ordinal) ? 1 : 0);
+        }
+        rebuild(remaining, loans::get);
+    }
+
+    // Distinct trigrams of a lower-case name or pattern
+    private static List<String> gramsOf(String text) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            String gram = text.substring(i, i + GRAM);
+            if (!result.contains(gram)) {
+                result.add(gram);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ascending list of ordinals; new members have the highest ordinal, so adding appends
+     */
+    private static class OrdinalList {
+        int[] ordinals = new int[4];
+        int size;
+
+        void add(int ordinal) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+
+        // First index at or after from holding an ordinal >= target (galloping, then binary search)
+        int seek(int target, int from) {
+            int step = 1;
+            int high = from;
+            while (high < size && ordinals[high] < target) {
+                from = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            int index = Arrays.binarySearch(ordinals, from, Math.min(high + 1, size), target);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder event for saving or loading one data file
+ * Demonstrates: Custom JFR events, Annotations
+ *
+ * Recorded for every file by default (threshold 0 ms) so save/load activity
+ * can be lined up against GC and file I/O events in JDK Mission Control.
+ */
+@Name("library.Persistence")
+@Label("Persistence")
+@Category({"Library", "Persistence"})
+@Description("Saving or loading one library data file")
+@Threshold("0 ms")
+@StackTrace(false)
+public class PersistenceEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("File")
+    String file;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Records")
+    int records;
+
+    /**
+     * Create and start timing an event
+     */
+    public static PersistenceEvent start(String operation, java.io.File file) {
+        PersistenceEvent event = new PersistenceEvent();
+        event.begin();
+        event.operation = operation;
+        event.file = file.getPath();
+        return event;
+    }
+
+    /**
+     * Stop timing and commit the event if it passes the recording's threshold
+     */
+    public void complete(int records, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.records = records;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PersistenceService - Background saving with write coalescing
+ * Demonstrates: Dedicated worker threads, wait/notify, Write coalescing, Durability policies
+ *
+ * Library tells the service about every change it records (borrow, return,
+ * added or removed book or member). The first change starts a countdown and
+ * each further change restarts it, so a burst of activity is saved once,
+ * delay milliseconds after it dies down - but never later than maxDelay after
+ * the first unsaved change, however busy the desk is. Saves run on the
+ * service's own thread and hold the library lock only while collecting what
+ * changed (see Library.saveToFiles), so borrow and return never wait for the
+ * disk. A failed save is retried after the next delay.
+ */
+public class PersistenceService {
+
+    /**
+     * How far a save must get before it counts as done
+     */
+    public enum Durability {
+        /** Handed to the operating system: survives a crash of the JVM, not a power loss */
+        BUFFERED,
+        /** Forced to the storage device (fsync) before the save completes */
+        SYNC
+    }
+
+    private final Library library;
+    private final long delayNanos;
+    private final long maxDelayNanos;
+    private final Durability durability;
+    private Thread worker;
+
+    // Guarded by this
+    private boolean running;
+    private long pendingChanges;
+    private long firstChangeNanos;
+    private long lastChangeNanos;
+    private long saves;
+    private long savedChanges;
+    private long failures;
+    private long lastSaveMillis;
+
+    public PersistenceService(Library library, long delayMillis, long maxDelayMillis, Durability durability) {
+        if (delayMillis < 0 || maxDelayMillis < delayMillis) {
+            throw new IllegalArgumentException("Need 0 <= delay <= max delay (got " + delayMillis + "ms, "
+                                               + maxDelayMillis + "ms)");
+        }
+        this.library = library;
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.durability = durability;
+    }
+
+    // ==================== LIFECYCLE ====================
+
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "library-persistence");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Save any outstanding changes, then stop the worker thread
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            notifyAll();
+            thread = worker;
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Note one more unsaved change (called by Library while it holds its lock, so this stays tiny)
+     */
+    public synchronized void changed() {
+        long now = System.nanoTime();
+        if (pendingChanges++ == 0) {
+            firstChangeNanos = now;
+            notifyAll();
+        }
+        lastChangeNanos = now;
+    }
+
+    // ==================== WORKER ====================
+
+    private void run() {
+        while (true) {
+            long changes;
+            synchronized (this) {
+                try {
+                    while (running && pendingChanges == 0) {
+                        wait();
+                    }
+                    // Coalesce: wait for a quiet spell, but no longer than the max delay
+                    while (running) {
+                        long due = Math.min(lastChangeNanos + delayNanos, firstChangeNanos + maxDelayNanos);
+                        long remaining = due - System.nanoTime();
+                        if (remaining <= 0) break;
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+                if (pendingChanges == 0) {
+                    return; // Stopped with nothing left to save
+                }
+                changes = pendingChanges;
+                pendingChanges = 0;
+            }
+
+            long started = System.nanoTime();
+            boolean saved = library.saveQuietly();
+
+            synchronized (this) {
+                lastSaveMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                if (saved) {
+                    saves++;
+                    savedChanges += changes;
+                } else {
+                    failures++;
+                    if (!running) {
+                        return; // Do not retry forever on the way out
+                    }
+                    pendingChanges += changes;
+                    firstChangeNanos = lastChangeNanos = System.nanoTime();
+                }
+            }
+        }
+    }
+
+    // ==================== STATS ====================
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public synchronized long getPendingChanges() {
+        return pendingChanges;
+    }
+
+    public synchronized long getSaveCount() {
+        return saves;
+    }
+
+    /**
+     * Changes written so far; divided by getSaveCount() this is how many changes each save coalesced
+     */
+    public synchronized long getSavedChanges() {
+        return savedChanges;
+    }
+
+    public synchronized long getFailureCount() {
+        return failures;
+    }
+
+    public synchronized long getLastSaveMillis() {
+        return lastSaveMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Background saving (%s): %d saves, %d changes, %d pending, %d failed, last %dms",
+            durability, saves, savedChanges, pendingChanges, failures, lastSaveMillis);
+    }
+}
@@ -68,6 +68,7 @@ public abstract class Person {
     // Abstract methods - Must be implemented by child classes
     public abstract void displayInfo();
     public abstract int getMaxBooks();
+    public abstract int getLoanPeriodDays();
     public abstract String getPersonType();
     
     // Common method that can be overridden (Polymorphism preparation)
@@ -0,0 +1,373 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * RankedSearchIndex - Relevance-ranked top-k keyword search (BM25F)
+ * Demonstrates: Inverted indexes, BM25 scoring, Bounded heaps, Threshold-algorithm early termination
+ *
+ * Each word of a title or author has a posting list of the books using it,
+ * sorted by the word's impact in that book: its frequency in the title
+ * (weighted by TITLE_BOOST) and in the author name, each normalized by the
+ * field's length against the catalog average. A book's score for a query is
+ * the BM25 sum over the query words it contains:
+ *
+ *     idf(word) * impact * (K1 + 1) / (impact + K1)
+ *
+ * Search reads the query words' lists in step, highest impact first, scoring
+ * each new book in full and keeping the best k in a min-heap. The words'
+ * next impacts bound the score of any book not seen yet, so the search stops
+ * as soon as the k-th best score reaches that bound - a one-word query reads
+ * k + 1 postings, however many books contain the word.
+ *
+ * Lists are sorted when read, not on every change: removed books are left
+ * as gaps and added books wait, unsorted, at the end of the list, where a
+ * search scores them all before walking the sorted part. A list is sorted
+ * again once those grow past a small fraction of it. The average field
+ * lengths are fixed per epoch so sorted order stays valid in between; a new
+ * epoch starts once the catalog has grown or shrunk by a tenth.
+ */
+public class RankedSearchIndex {
+
+    public static final double K1 = 1.2;
+    public static final double B = 0.75;
+    public static final double TITLE_BOOST = 2.0;
+
+    private final Map<String, Postings> terms = new HashMap<>();
+    private int bookCount;
+    private long titleWords;
+    private long authorWords;
+
+    // Averages used for length normalization, fixed for an epoch
+    private int epoch;
+    private int epochBookCount;
+    private double averageTitle = 1;
+    private double averageAuthor = 1;
+
+    // ==================== SEARCH ====================
+
+    /**
+     * The limit best-scoring books for the words of the query, best first
+     * (a book needs to contain at least one of them)
+     */
+    public synchronized List<Book> search(String query, int limit) {
+        List<Postings> lists = new ArrayList<>();
+        List<String> queryTerms = new ArrayList<>();
+        for (String term : new LinkedHashSet<>(wordsOf(query))) {
+            Postings postings = terms.get(term);
+            if (postings != null) {
+                postings.prepare(this);
+                lists.add(postings);
+                queryTerms.add(term);
+            }
+        }
+        if (lists.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        double[] idf = new double[lists.size()];
+        for (int i = 0; i < idf.length; i++) {
+            idf[i] = idf(lists.get(i).liveCount());
+        }
+
+        // Min-heap of the best so far: the head is the k-th best, the one to beat
+        PriorityQueue<ScoredBook> best = new PriorityQueue<>(limit + 1, WORST_FIRST);
+        Set<Book> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Postings postings : lists) {
+            // Books added since the list was last sorted are few: score them all up front
+            for (int i = postings.sortedSize; i < postings.size; i++) {
+                offer(best, seen, postings.books[i], queryTerms, idf, limit);
+            }
+        }
+        int[] position = new int[lists.size()];
+        while (true) {
+            boolean read = false;
+            for (int i = 0; i < lists.size(); i++) {
+                Postings postings = lists.get(i);
+                if (position[i] < postings.sortedSize) {
+                    Book book = postings.books[position[i]++];
+                    read = true;
+                    if (book != null) {
+                        offer(best, seen, book, queryTerms, idf, limit);
+                    }
+                }
+            }
+            if (!read) break;
+
+            // No book still unseen can score more than the next impacts allow
+            double bound = 0;
+            for (int i = 0; i < lists.size(); i++) {
+                Postings postings = lists.get(i);
+                if (position[i] < postings.sortedSize) {
+                    bound += saturate(idf[i], postings.impacts[position[i]]);
+                }
+            }
+            if (best.size() == limit && best.peek().score >= bound) break;
+        }
+
+        List<ScoredBook> ranked = new ArrayList<>(best);
+        ranked.sort(WORST_FIRST.reversed());
+        List<Book> results = new ArrayList<>(ranked.size());
+        for (ScoredBook scored : ranked) {
+            results.add(scored.book);
+        }
+        return results;
+    }
+
+    private void offer(PriorityQueue<ScoredBook> best, Set<Book> seen, Book book,
+                       List<String> queryTerms, double[] idf, int limit) {
+        if (seen.add(book)) {
+            best.add(new ScoredBook(book, score(book, queryTerms, idf)));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+    }
+
+    private static final Comparator<ScoredBook> WORST_FIRST = (a, b) -> {
+        int byScore = Double.compare(a.score, b.score);
+        return byScore != 0 ? byScore : b.book.getTitle().compareTo(a.book.getTitle());
+    };
+
+    // Full score of one book, from its own text
+    private double score(Book book, List<String> queryTerms, double[] idf) {
+        List<String> title = wordsOf(book.getTitle());
+        List<String> author = wordsOf(book.getAuthor());
+        double score = 0;
+        for (int i = 0; i < queryTerms.size(); i++) {
+            double impact = impact(counts(queryTerms.get(i), title, author));
+            if (impact > 0) {
+                score += saturate(idf[i], impact);
+            }
+        }
+        return score;
+    }
+
+    private double idf(int booksWithTerm) {
+        return Math.log(1 + (bookCount - booksWithTerm + 0.5) / (booksWithTerm + 0.5));
+    }
+
+    private static double saturate(double idf, double impact) {
+        return idf * impact * (K1 + 1) / (impact + K1);
+    }
+
+    // BM25F pseudo-frequency: field frequencies normalized by field length and weighted
+    private double impact(long counts) {
+        double title = field(counts, 48) / (1 - B + B * field(counts, 32) / averageTitle);
+        double author = field(counts, 16) / (1 - B + B * field(counts, 0) / averageAuthor);
+        return TITLE_BOOST * title + author;
+    }
+
+    // A word's frequency in the title and author and the two lengths, 16 bits each
+    private static long counts(String term, List<String> title, List<String> author) {
+        return pack(Collections.frequency(title, term), 48) | pack(title.size(), 32)
+             | pack(Collections.frequency(author, term), 16) | pack(author.size(), 0);
+    }
+
+    private static long pack(int value, int shift) {
+        return (long) Math.min(value, 0xFFFF) << shift;
+    }
+
+    private static int field(long counts, int shift) {
+        return (int) (counts >>> shift) & 0xFFFF;
+    }
+
+    // ==================== MAINTENANCE ====================
+    // Called by Library while it holds its lock
+
+    synchronized void rebuild(Collection<Book> books) {
+        terms.clear();
+        bookCount = 0;
+        titleWords = 0;
+        authorWords = 0;
+        for (Book book : books) {
+            bookCount++;
+            titleWords += wordsOf(book.getTitle()).size();
+            authorWords += wordsOf(book.getAuthor()).size();
+        }
+        startEpoch();
+        for (Book book : books) {
+            addPostings(book);
+        }
+        for (Postings postings : terms.values()) {
+            postings.prepare(this); // Sort now rather than stall the first searches
+        }
+    }
+
+    synchronized void bookAdded(Book book) {
+        bookCount++;
+        titleWords += wordsOf(book.getTitle()).size();
+        authorWords += wordsOf(book.getAuthor()).size();
+        maybeStartEpoch();
+        addPostings(book);
+    }
+
+    synchronized void bookRemoved(Book book) {
+        List<String> title = wordsOf(book.getTitle());
+        List<String> author = wordsOf(book.getAuthor());
+        Set<String> distinct = new LinkedHashSet<>(title);
+        distinct.addAll(author);
+        boolean found = false;
+        for (String term : distinct) {
+            Postings postings = terms.get(term);
+            if (postings != null && postings.remove(book)) {
+                found = true;
+                if (postings.liveCount() == 0) {
+                    terms.remove(term);
+                }
+            }
+        }
+        if (found) {
+            bookCount--;
+            titleWords -= title.size();
+            authorWords -= author.size();
+            maybeStartEpoch();
+        }
+    }
+
+    public synchronized int getTermCount() {
+        return terms.size();
+    }
+
+    private void addPostings(Book book) {
+        List<String> title = wordsOf(book.getTitle());
+        List<String> author = wordsOf(book.getAuthor());
+        Set<String> distinct = new LinkedHashSet<>(title);
+        distinct.addAll(author);
+        for (String term : distinct) {
+            terms.computeIfAbsent(term, key -> new Postings()).add(book, counts(term, title, author));
+        }
+    }
+
+    private void maybeStartEpoch() {
+        if (Math.abs(bookCount - epochBookCount) > Math.max(10, epochBookCount / 10)) {
+            startEpoch();
+        }
+    }
+
+    // Fix new averages; posting lists notice the new epoch and re-sort when next read
+    private void startEpoch() {
+        epoch++;
+        epochBookCount = bookCount;
+        averageTitle = bookCount == 0 ? 1 : Math.max(1.0, (double) titleWords / bookCount);
+        averageAuthor = bookCount == 0 ? 1 : Math.max(1.0, (double) authorWords / bookCount);
+    }
+
+    // Lower-case runs of letters and digits, repeats included
+    private static List<String> wordsOf(String text) {
+        List<String> words = new ArrayList<>();
+        String lower = text.toLowerCase();
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean inWord = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static class ScoredBook {
+        final Book book;
+        final double score;
+
+        ScoredBook(Book book, double score) {
+            this.book = book;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Books using one word with their counts. The first sortedSize are in
+     * order of impact under the averages of sortedEpoch, with removed books
+     * left as nulls; books added since then follow, unsorted.
+     */
+    private static class Postings {
+        Book[] books = new Book[2];
+        long[] counts = new long[2];
+        double[] impacts = new double[2];
+        int size;
+        int sortedSize;
+        int removed;
+        int sortedEpoch;
+
+        void add(Book book, long bookCounts) {
+            if (size == books.length) {
+                books = Arrays.copyOf(books, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+                impacts = Arrays.copyOf(impacts, size * 2);
+            }
+            books[size] = book;
+            counts[size] = bookCounts;
+            size++;
+        }
+
+        boolean remove(Book book) {
+            for (int i = 0; i < size; i++) {
+                if (books[i] == book) {
+                    if (i < sortedSize) {
+                        books[i] = null;
+                        removed++;
+                    } else {
+                        books[i] = books[size - 1];
+                        counts[i] = counts[size - 1];
+                        books[--size] = null;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int liveCount() {
+            return size - removed;
+        }
+
+        // Sort again if the averages changed or too many books were added or removed since the last sort
+        void prepare(RankedSearchIndex index) {
+            int unsorted = size - sortedSize;
+            if (sortedEpoch == index.epoch && unsorted <= 32 + sortedSize / 16 && removed <= sortedSize / 4) {
+                return;
+            }
+            int live = 0;
+            for (int i = 0; i < size; i++) {
+                if (books[i] != null) {
+                    books[live] = books[i];
+                    counts[live] = counts[i];
+                    impacts[live] = index.impact(counts[i]);
+                    live++;
+                }
+            }
+            Integer[] order = new Integer[live];
+            for (int i = 0; i < live; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(impacts[b], impacts[a]));
+            Book[] sortedBooks = new Book[Math.max(2, live)];
+            long[] sortedCounts = new long[sortedBooks.length];
+            double[] sortedImpacts = new double[sortedBooks.length];
+            for (int i = 0; i < live; i++) {
+                sortedBooks[i] = books[order[i]];
+                sortedCounts[i] = counts[order[i]];
+                sortedImpacts[i] = impacts[order[i]];
+            }
+            books = sortedBooks;
+            counts = sortedCounts;
+            impacts = sortedImpacts;
+            size = sortedSize = live;
+            removed = 0;
+            sortedEpoch = index.epoch;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder event for one catalog or member search
+ * Demonstrates: Custom JFR events, Annotations
+ *
+ * Only searches slower than the threshold are recorded (10 ms by default,
+ * tunable per recording - see library-events.jfc).
+ */
+@Name("library.Search")
+@Label("Search")
+@Category({"Library", "Search"})
+@Description("A book or member search")
+@Threshold("10 ms")
+@StackTrace(false)
+public class SearchEvent extends jdk.jfr.Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Search Term")
+    String term;
+
+    @Label("Result Count")
+    int resultCount;
+
+    /**
+     * Create and start timing an event
+     */
+    public static SearchEvent start(String method, String term) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        event.method = method;
+        event.term = term;
+        return event;
+    }
+
+    /**
+     * Stop timing and commit the event if it passes the recording's threshold
+     */
+    public void complete(int resultCount) {
+        end();
+        if (shouldCommit()) {
+            this.resultCount = resultCount;
+            commit();
+        }
+    }
+}
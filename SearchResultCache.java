@@ -0,0 +1,259 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * SearchResultCache - Bounded cache of book search results with lock-free lookups
+ * Demonstrates: ConcurrentHashMap, Copy-on-write entries, CLOCK (second-chance) eviction,
+ *               Incremental invalidation, Version checks
+ *
+ * Library caches the books matched by title, author and keyword searches,
+ * keyed on the normalized query. Entries hold the Book objects themselves,
+ * so borrowing and returning - which only change a book's availability -
+ * show up in cached results without touching the cache. Adding or removing
+ * a book patches just the entries whose query it matches; every other entry
+ * stays valid.
+ *
+ * Lookups take no lock, so concurrent searches never wait for each other: an
+ * entry's book list is never changed once published (patches replace it),
+ * hits and misses are counted in LongAdders, and recency is a flag the
+ * lookup sets on its entry. Storing, patching and evicting are serialized
+ * on the cache. Eviction approximates least-recently-used with the CLOCK
+ * algorithm: the oldest entry is evicted unless it was used since the last
+ * sweep, in which case it gets a second chance at the back of the queue.
+ *
+ * Each entry describes one catalog book version (CatalogSnapshot.getBookVersion).
+ * A search stores its result only if the catalog it scanned is the one the
+ * cache currently describes, so a result computed while a book was being
+ * added or removed is never cached.
+ */
+public class SearchResultCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final int DEFAULT_MAX_BOOKS = 100_000;
+    private static final long MAX_PATCH_CHECKS = 1_000_000;   // Larger batches clear the cache instead
+
+    private final int maxEntries;
+    private final int maxBooks;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ArrayDeque<Entry> clock = new ArrayDeque<>();  // Eviction order (guarded by this)
+    private long bookVersion;       // Catalog book version the entries describe (guarded by this)
+    private int cachedBooks;        // Book references held by all entries (guarded by this)
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long evictions;         // Guarded by this
+    private long patches;           // Guarded by this
+
+    public SearchResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BOOKS);
+    }
+
+    /**
+     * @param maxEntries most queries kept
+     * @param maxBooks most book references kept across all entries (bounds memory
+     *                 when some queries match a large part of the catalog)
+     */
+    public SearchResultCache(int maxEntries, int maxBooks) {
+        if (maxEntries < 1 || maxBooks < 1) {
+            throw new IllegalArgumentException("Cache must hold at least one entry and one book");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBooks = maxBooks;
+    }
+
+    // ==================== LOOKUP ====================
+
+    /**
+     * @return a copy of the cached result for the query key, or null on a miss
+     */
+    public List<Book> get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (!entry.used) {
+            entry.used = true; // Written only when it changes, so hot entries are not written on every hit
+        }
+        return new ArrayList<>(entry.books);
+    }
+
+    /**
+     * Cache the result of a search over the catalog with the given book
+     * version; matcher must accept exactly the books in results
+     */
+    public synchronized void put(String key, Predicate<Book> matcher, List<Book> results, long bookVersion) {
+        if (bookVersion != this.bookVersion || results.size() > maxBooks) {
+            return;
+        }
+        Entry entry = new Entry(key, matcher, Collections.unmodifiableList(new ArrayList<>(results)));
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            clock.remove(previous);
+            cachedBooks -= previous.books.size();
+        }
+        clock.addLast(entry);
+        cachedBooks += results.size();
+        evict();
+    }
+
+    // ==================== INVALIDATION ====================
+    // Called by Library, holding its lock, after publishing the new catalog
+
+    /**
+     * Books were appended to the catalog; add them to the entries they match
+     */
+    synchronized void booksAdded(Collection<Book> added, long bookVersion) {
+        if (!advanceTo(bookVersion)) {
+            return;
+        }
+        if ((long) added.size() * entries.size() > MAX_PATCH_CHECKS) {
+            clear(); // A bulk import: cheaper to search again than to patch every entry
+            return;
+        }
+        for (Entry entry : clock) {
+            List<Book> books = null;
+            for (Book book : added) {
+                if (entry.matcher.test(book)) {
+                    if (books == null) {
+                        books = new ArrayList<>(entry.books);
+                    }
+                    books.add(book); // Appended books come last in catalog order too
+                    cachedBooks++;
+                    patches++;
+                }
+            }
+            if (books != null) {
+                entry.books = Collections.unmodifiableList(books);
+            }
+        }
+        evict();
+    }
+
+    /**
+     * A book was removed from the catalog; drop it from the entries that hold it
+     */
+    synchronized void bookRemoved(Book book, long bookVersion) {
+        if (!advanceTo(bookVersion)) {
+            return;
+        }
+        for (Entry entry : clock) {
+            if (entry.matcher.test(book)) {
+                List<Book> books = new ArrayList<>(entry.books);
+                if (books.removeIf(cached -> cached == book)) {
+                    cachedBooks -= entry.books.size() - books.size();
+                    entry.books = Collections.unmodifiableList(books);
+                    patches++;
+                }
+            }
+        }
+    }
+
+    /**
+     * The whole catalog was replaced (loaded from files)
+     */
+    synchronized void catalogReplaced(long bookVersion) {
+        clear();
+        this.bookVersion = bookVersion;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        clock.clear();
+        cachedBooks = 0;
+    }
+
+    // Move to the next book version; a skipped version means a change was missed, so start over
+    private boolean advanceTo(long bookVersion) {
+        boolean next = bookVersion == this.bookVersion + 1;
+        this.bookVersion = bookVersion;
+        if (!next) {
+            clear();
+        }
+        return next;
+    }
+
+    // CLOCK sweep: entries used since they last came round go to the back once more
+    private void evict() {
+        int secondChances = clock.size();
+        while ((clock.size() > maxEntries || cachedBooks > maxBooks) && !clock.isEmpty()) {
+            Entry eldest = clock.pollFirst();
+            if (eldest.used && secondChances-- > 0) {
+                eldest.used = false;
+                clock.addLast(eldest);
+                continue;
+            }
+            entries.remove(eldest.key, eldest);
+            cachedBooks -= eldest.books.size();
+            evictions++;
+        }
+    }
+
+    // ==================== STATS ====================
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Entries updated in place by added and removed books
+     */
+    public synchronized long getPatchCount() {
+        return patches;
+    }
+
+    public synchronized void resetStats() {
+        hits.reset();
+        misses.reset();
+        evictions = patches = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Search cache: %d queries, %d books, %d hits, %d misses (%.1f%% hits), %d evicted, %d patched",
+            entries.size(), cachedBooks, hits.sum(), misses.sum(), getHitRate() * 100, evictions, patches);
+    }
+
+    /**
+     * One cached query: the books it matched, in catalog order. The list is
+     * never modified; patches publish a new one.
+     */
+    private static class Entry {
+        final String key;
+        final Predicate<Book> matcher;
+        volatile List<Book> books;
+        volatile boolean used;      // Looked up since the eviction sweep last passed it
+
+        Entry(String key, Predicate<Book> matcher, List<Book> books) {
+            this.key = key;
+            this.matcher = matcher;
+            this.books = books;
+        }
+    }
+}
@@ -10,14 +10,14 @@ public class Staff extends Person {
     private String department;
     private String position;
     private double salary;
-    private int currentBorrowedBooks;
+    private final VersionedValue<Integer> currentBorrowedBooks = new VersionedValue<>(0);
     private static final int MAX_BOOKS = 5; // Staff can borrow max 5 books
+    private static final int LOAN_PERIOD_DAYS = 28; // Staff keep a book for 4 weeks
     
     // Constructor - calls parent constructor
     public Staff(String id, String name, String email) {
         super(id, name, email); // Call Person constructor
         this.staffId = id;
-        this.currentBorrowedBooks = 0;
     }
     
     // Overloaded constructor with additional staff info
@@ -26,7 +26,6 @@ public class Staff extends Person {
         this.staffId = id;
         this.department = department;
         this.position = position;
-        this.currentBorrowedBooks = 0;
     }
     
     // Full constructor
@@ -36,7 +35,6 @@ public class Staff extends Person {
         this.department = department;
         this.position = position;
         this.salary = salary;
-        this.currentBorrowedBooks = 0;
     }
     
     // Getter methods for staff-specific fields
@@ -57,7 +55,12 @@ public class Staff extends Person {
     }
     
     public int getCurrentBorrowedBooks() {
-        return currentBorrowedBooks;
+        return currentBorrowedBooks.get();
+    }
+    
+    // Borrowed count as of a version pinned with VersionClock.pin()
+    public int getCurrentBorrowedBooksAt(long version) {
+        return currentBorrowedBooks.getAt(version);
     }
     
     // Setter methods with validation
@@ -98,7 +101,7 @@ public class Staff extends Person {
         if (salary > 0) {
             System.out.println("Salary: $" + String.format("%.2f", salary));
         }
-        System.out.println("Books Currently Borrowed: " + currentBorrowedBooks + "/" + MAX_BOOKS);
+        System.out.println("Books Currently Borrowed: " + getCurrentBorrowedBooks() + "/" + MAX_BOOKS);
         System.out.println("=========================");
     }
     
@@ -107,6 +110,11 @@ public class Staff extends Person {
         return MAX_BOOKS;
     }
     
+    @Override
+    public int getLoanPeriodDays() {
+        return LOAN_PERIOD_DAYS;
+    }
+    
     @Override
     public String getPersonType() {
         return "Staff";
@@ -114,14 +122,19 @@ public class Staff extends Person {
     
     // Staff-specific methods
     public boolean canBorrowMoreBooks() {
-        return currentBorrowedBooks < MAX_BOOKS;
+        return getCurrentBorrowedBooks() < MAX_BOOKS;
     }
     
     public boolean borrowBook() {
+        return borrowBook(null);
+    }
+    
+    // Stamp the new count with the clock's write version (see VersionedValue.set)
+    public boolean borrowBook(VersionClock clock) {
         if (canBorrowMoreBooks()) {
-            currentBorrowedBooks++;
+            currentBorrowedBooks.set(getCurrentBorrowedBooks() + 1, clock);
             System.out.println("Book borrowed successfully! " + 
-                             "Current borrowed books: " + currentBorrowedBooks + "/" + MAX_BOOKS);
+                             "Current borrowed books: " + getCurrentBorrowedBooks() + "/" + MAX_BOOKS);
             return true;
         } else {
             System.out.println("Cannot borrow more books! Maximum limit (" + MAX_BOOKS + ") reached.");
@@ -130,10 +143,14 @@ public class Staff extends Person {
     }
     
     public boolean returnBook() {
-        if (currentBorrowedBooks > 0) {
-            currentBorrowedBooks--;
+        return returnBook(null);
+    }
+    
+    public boolean returnBook(VersionClock clock) {
+        if (getCurrentBorrowedBooks() > 0) {
+            currentBorrowedBooks.set(getCurrentBorrowedBooks() - 1, clock);
             System.out.println("Book returned successfully! " + 
-                             "Current borrowed books: " + currentBorrowedBooks + "/" + MAX_BOOKS);
+                             "Current borrowed books: " + getCurrentBorrowedBooks() + "/" + MAX_BOOKS);
             return true;
         } else {
             System.out.println("No books to return!");
@@ -183,7 +200,7 @@ public class Staff extends Person {
                 ", name='" + getName() + '\'' +
                 ", department='" + (department != null ? department : "N/A") + '\'' +
                 ", position='" + (position != null ? position : "N/A") + '\'' +
-                ", borrowedBooks=" + currentBorrowedBooks + "/" + MAX_BOOKS +
+                ", borrowedBooks=" + getCurrentBorrowedBooks() + "/" + MAX_BOOKS +
                 ", priority='" + getBorrowingPriority() + '\'' +
                 '}';
     }
@@ -9,14 +9,14 @@ public class Student extends Person {
     private String studentId;
     private String course;
     private int year;
-    private int currentBorrowedBooks;
+    private final VersionedValue<Integer> currentBorrowedBooks = new VersionedValue<>(0);
     private static final int MAX_BOOKS = 2; // Students can borrow max 2 books
+    private static final int LOAN_PERIOD_DAYS = 14; // Students keep a book for 2 weeks
     
     // Constructor - calls parent constructor
     public Student(String id, String name, String email) {
         super(id, name, email); // Call Person constructor
         this.studentId = id;
-        this.currentBorrowedBooks = 0;
     }
     
     // Overloaded constructor with additional student info
@@ -25,7 +25,6 @@ public class Student extends Person {
         this.studentId = id;
         this.course = course;
         this.year = year;
-        this.currentBorrowedBooks = 0;
     }
     
     // Getter methods for student-specific fields
@@ -42,7 +41,12 @@ public class Student extends Person {
     }
     
     public int getCurrentBorrowedBooks() {
-        return currentBorrowedBooks;
+        return currentBorrowedBooks.get();
+    }
+    
+    // Borrowed count as of a version pinned with VersionClock.pin()
+    public int getCurrentBorrowedBooksAt(long version) {
+        return currentBorrowedBooks.getAt(version);
     }
     
     // Setter methods with validation
@@ -72,7 +76,7 @@ public class Student extends Person {
         System.out.println("Phone: " + (getPhoneNumber() != null ? getPhoneNumber() : "Not provided"));
         System.out.println("Course: " + (course != null ? course : "Not specified"));
         System.out.println("Year: " + (year > 0 ? year : "Not specified"));
-        System.out.println("Books Currently Borrowed: " + currentBorrowedBooks + "/" + MAX_BOOKS);
+        System.out.println("Books Currently Borrowed: " + getCurrentBorrowedBooks() + "/" + MAX_BOOKS);
         System.out.println("===========================");
     }
     
@@ -81,6 +85,11 @@ public class Student extends Person {
         return MAX_BOOKS;
     }
     
+    @Override
+    public int getLoanPeriodDays() {
+        return LOAN_PERIOD_DAYS;
+    }
+    
     @Override
     public String getPersonType() {
         return "Student";
@@ -88,14 +97,19 @@ public class Student extends Person {
     
     // Student-specific methods
     public boolean canBorrowMoreBooks() {
-        return currentBorrowedBooks < MAX_BOOKS;
+        return getCurrentBorrowedBooks() < MAX_BOOKS;
     }
     
     public boolean borrowBook() {
+        return borrowBook(null);
+    }
+    
+    // Stamp the new count with the clock's write version (see VersionedValue.set)
+    public boolean borrowBook(VersionClock clock) {
         if (canBorrowMoreBooks()) {
-            currentBorrowedBooks++;
+            currentBorrowedBooks.set(getCurrentBorrowedBooks() + 1, clock);
             System.out.println("Book borrowed successfully! " + 
-                             "Current borrowed books: " + currentBorrowedBooks + "/" + MAX_BOOKS);
+                             "Current borrowed books: " + getCurrentBorrowedBooks() + "/" + MAX_BOOKS);
             return true;
         } else {
             System.out.println("Cannot borrow more books! Maximum limit (" + MAX_BOOKS + ") reached.");
@@ -104,10 +118,14 @@ public class Student extends Person {
     }
     
     public boolean returnBook() {
-        if (currentBorrowedBooks > 0) {
-            currentBorrowedBooks--;
+        return returnBook(null);
+    }
+    
+    public boolean returnBook(VersionClock clock) {
+        if (getCurrentBorrowedBooks() > 0) {
+            currentBorrowedBooks.set(getCurrentBorrowedBooks() - 1, clock);
             System.out.println("Book returned successfully! " + 
-                             "Current borrowed books: " + currentBorrowedBooks + "/" + MAX_BOOKS);
+                             "Current borrowed books: " + getCurrentBorrowedBooks() + "/" + MAX_BOOKS);
             return true;
         } else {
             System.out.println("No books to return!");
@@ -124,7 +142,7 @@ public class Student extends Person {
     
     // Method to check if student can graduate (example business logic)
     public boolean canGraduate() {
-        return year >= 4 && currentBorrowedBooks == 0;
+        return year >= 4 && getCurrentBorrowedBooks() == 0;
     }
     
     // Override toString for better display
@@ -135,7 +153,7 @@ public class Student extends Person {
                 ", name='" + getName() + '\'' +
                 ", course='" + (course != null ? course : "N/A") + '\'' +
                 ", year=" + year +
-                ", borrowedBooks=" + currentBorrowedBooks + "/" + MAX_BOOKS +
+                ", borrowedBooks=" + getCurrentBorrowedBooks() + "/" + MAX_BOOKS +
                 '}';
     }
 }
\ No newline at end of file
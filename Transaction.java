@@ -1,5 +1,6 @@
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Transaction class to track borrowing and returning operations
@@ -23,14 +24,15 @@ public class Transaction implements Comparable<Transaction> {
     private TransactionType type;
     private LocalDateTime timestamp;
     private String notes;
+    private LocalDateTime dueDate; // Borrows only: when the book is due back (null if not recorded)
     
-    // Static counter for unique transaction IDs
-    private static int transactionCounter = 1000;
+    // Static counter for unique transaction IDs (history may be loading on another thread)
+    private static final AtomicInteger transactionCounter = new AtomicInteger(1000);
     
     // Constructor for borrowing/returning
     public Transaction(String memberId, String memberName, String bookTitle, 
                       String bookIsbn, TransactionType type) {
-        this.transactionId = "T" + (++transactionCounter);
+        this.transactionId = "T" + transactionCounter.incrementAndGet();
         this.memberId = memberId;
         this.memberName = memberName;
         this.bookTitle = bookTitle;
@@ -76,6 +78,14 @@ public class Transaction implements Comparable<Transaction> {
         return timestamp;
     }
     
+    public LocalDateTime getDueDate() {
+        return dueDate;
+    }
+    
+    public void setDueDate(LocalDateTime dueDate) {
+        this.dueDate = dueDate;
+    }
+    
     public String getNotes() {
         return notes;
     }
@@ -108,6 +118,17 @@ public class Transaction implements Comparable<Transaction> {
         return type == TransactionType.RETURN;
     }
     
+    /**
+     * Copy without personal details - the member name becomes the member ID and
+     * notes are dropped - for records kept past their retention period
+     */
+    public Transaction withoutPersonalDetails() {
+        Transaction copy = fromFileFormat(toFileFormat());
+        copy.memberName = memberId;
+        copy.notes = "";
+        return copy;
+    }
+    
     // Display transaction information
     public void displayTransaction() {
         System.out.printf("[%s] %s: %s %s '%s' (%s)%n", 
@@ -122,9 +143,17 @@ public class Transaction implements Comparable<Transaction> {
         }
     }
     
-    // Convert to file format for saving
+    /**
+     * Keep new IDs above the given number, for stored transactions that have
+     * not been read yet
+     */
+    public static void reserveIdsThrough(long number) {
+        transactionCounter.accumulateAndGet((int) Math.min(number, Integer.MAX_VALUE), Math::max);
+    }
+    
+    // Convert to file format for saving (the due date is appended only when there is one)
     public String toFileFormat() {
-        return String.join(",",
+        String line = String.join(",",
             transactionId,
             memberId,
             memberName,
@@ -134,6 +163,7 @@ public class Transaction implements Comparable<Transaction> {
             timestamp.toString(),
             notes.replace(",", "&#44;") // Escape commas in notes
         );
+        return dueDate == null ? line : line + "," + dueDate;
     }
     
     // Create transaction from file format
@@ -149,10 +179,20 @@ public class Transaction implements Comparable<Transaction> {
             );
             
             transaction.transactionId = parts[0];
+            // Keep new IDs ahead of loaded ones so they never collide
+            try {
+                int loadedNumber = Integer.parseInt(parts[0].substring(1));
+                transactionCounter.accumulateAndGet(loadedNumber, Math::max);
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                // Non-numeric IDs cannot collide with generated ones
+            }
             transaction.timestamp = LocalDateTime.parse(parts[6]);
             if (parts.length > 7) {
                 transaction.notes = parts[7].replace("&#44;", ","); // Unescape commas
             }
+            if (parts.length > 8) {
+                transaction.dueDate = LocalDateTime.parse(parts[8]);
+            }
             
             return transaction;
         }
@@ -162,7 +202,10 @@ public class Transaction implements Comparable<Transaction> {
     // Implement Comparable for sorting (newest first)
     @Override
     public int compareTo(Transaction other) {
-        return other.timestamp.compareTo(this.timestamp); // Reverse chronological order
+        int byTime = other.timestamp.compareTo(this.timestamp); // Reverse chronological order
+        // Break ties by ID so transactions recorded in the same instant are not
+        // treated as duplicates by sorted collections
+        return byTime != 0 ? byTime : other.transactionId.compareTo(this.transactionId);
     }
     
     // Override equals for comparison
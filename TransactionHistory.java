@@ -0,0 +1,1314 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * TransactionHistory - Tiered, segmented transaction log
+ * Demonstrates: Tiered storage, Immutable segment files, Manifests, Compaction, Time-bucketed indexes
+ *
+ * Storage: transactions are sealed into immutable, block-compressed
+ * TransactionSegment files of about 25,000 transactions, listed in order by a
+ * manifest in the data/transactions directory. Saving only seals what was recorded since the
+ * last save; nothing is ever rewritten wholesale. Many small segments (from
+ * frequent saves) are merged by compaction, which can also strip personal
+ * details from transactions older than a retention period.
+ *
+ * Memory: only the newest transactions (the hot window) are kept on the heap.
+ * When the window grows past its capacity its older half is sealed if needed
+ * and dropped. Iteration walks both tiers in order and reads one segment at a
+ * time, so heap use stays flat however many years of history accumulate. With
+ * a spill request set (see setSpillRequest) add() never writes: it drops only
+ * what is already sealed and leaves the rest to the owner's background seal.
+ *
+ * Time index: every transaction has a sequence number (its position in the
+ * history), and an hourly index maps each hour to its first sequence number and
+ * its borrow/return totals. Time-range queries seek straight to the hours they
+ * cover: whole hours are answered from the index, and only the partial hours at
+ * either end of the range are read - segments outside the range are never opened.
+ *
+ * Transactions are kept in recording order, which is chronological; one
+ * recorded out of time order is indexed under the latest hour seen so far. Not
+ * thread-safe on its own: Library only touches it while holding its lock
+ * (compaction does its file I/O outside the lock, see planCompaction(), and
+ * long reads go through a View taken under the lock and read outside it).
+ * Reads that hit an unreadable segment fail with an (Unchecked)IOException;
+ * they never return part of the history as if it were all of it.
+ */
+public class TransactionHistory {
+
+    public static final int DEFAULT_HOT_CAPACITY = 50_000;
+    public static final int DEFAULT_SEGMENT_SIZE = 25_000;
+    private static final String MANIFEST = "manifest.txt";
+
+    // Memory tier
+    private final ArrayList<Transaction> hot = new ArrayList<>();       // Oldest first
+    private long hotStart;                                              // Sequence number of hot.get(0)
+    private int hotCapacity = DEFAULT_HOT_CAPACITY;
+    private int nextSpillAt = DEFAULT_HOT_CAPACITY;
+    private Runnable spillRequest;                                      // Seals in the background if set
+
+    // Disk tier
+    private final List<TransactionSegment> segments = new ArrayList<>(); // Oldest first, contiguous
+    private long sealedCount;                                           // Transactions held by segments
+    private File directory;                                             // Null until bound to a data directory
+    private boolean temporary;                                          // Directory is a private spill area
+    private int nextSegmentNumber = 1;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private int retentionDays = -1;                                     // Keep personal details forever
+    private File readOnlyStore;                                         // Store that failed to load: left alone
+
+    private boolean syncWrites;                                         // Force files to the device when written
+    private long manifestVersion;                                       // Bumped whenever the segment list changes
+    private final Object manifestLock = new Object();                   // Guards manifestWritten and the file
+    private long manifestWritten = -1;
+
+    private final TreeMap<Long, HourBucket> hours = new TreeMap<>();    // Epoch hour -> bucket
+
+    // Segments replaced while a View may still read them are deleted when the last View closes
+    private final Object viewLock = new Object();                       // Guards openViews and retired
+    private int openViews;
+    private final List<TransactionSegment> retired = new ArrayList<>();
+
+    // ==================== WRITING ====================
+
+    /**
+     * Append a newly recorded (or imported) transaction, dropping the older
+     * half of the hot window from memory when it is full
+     */
+    public void add(Transaction transaction) {
+        long hour = hourOf(transaction.getTimestamp());
+        Map.Entry<Long, HourBucket> latest = hours.lastEntry();
+        HourBucket bucket;
+        if (latest == null || hour > latest.getKey()) {
+            bucket = new HourBucket(totalCount());
+            hours.put(hour, bucket);
+        } else {
+            bucket = latest.getValue();
+        }
+        bucket.count(transaction, 1);
+
+        hot.add(transaction);
+        if (hot.size() > nextSpillAt) {
+            spill();
+        }
+    }
+
+    /**
+     * Undo the add of the most recent, not yet saved, transaction (used to roll back a failed borrow)
+     */
+    public boolean removeNewest(Transaction transaction) {
+        if (hot.isEmpty() || hot.get(hot.size() - 1) != transaction || totalCount() <= sealedCount) {
+            return false;
+        }
+        hot.remove(hot.size() - 1);
+        Map.Entry<Long, HourBucket> latest = hours.lastEntry();
+        latest.getValue().count(transaction, -1);
+        if (latest.getValue().firstSequence == totalCount()) {
+            hours.remove(latest.getKey()); // That hour is empty again
+        }
+        return true;
+    }
+
+    /**
+     * Forget everything in memory (segment files are left alone)
+     */
+    public void clear() {
+        manifestVersion++;
+        hot.clear();
+        hotStart = 0;
+        segments.clear();
+        sealedCount = 0;
+        hours.clear();
+        nextSpillAt = hotCapacity;
+    }
+
+    private void spill() {
+        if (spillRequest != null) {
+            if (!dropSealed()) {
+                // Over capacity until the background seal catches up; ask again every quarter window meanwhile
+                nextSpillAt = hot.size() + Math.max(1, hotCapacity / 4);
+                spillRequest.run();
+            }
+            return;
+        }
+        int dropCount = hot.size() - hotCapacity / 2;
+        try {
+            if (sealedCount < hotStart + dropCount) {
+                seal();
+            }
+            hot.subList(0, dropCount).clear();
+            hotStart += dropCount;
+            nextSpillAt = hotCapacity;
+        } catch (IOException e) {
+            // Keep everything in memory and try again once another half window has built up
+            System.out.println("Warning: Could not move old transactions to disk: " + e.getMessage());
+            nextSpillAt = hot.size() + Math.max(1, hotCapacity / 2);
+        }
+    }
+
+    /**
+     * Drop the oldest transactions from memory, down to half the hot window,
+     * as far as they are already sealed
+     * @return true if the window is back within its capacity
+     */
+    public boolean dropSealed() {
+        int dropCount = (int) Math.min(hot.size() - hotCapacity / 2, sealedCount - hotStart);
+        if (dropCount > 0) {
+            hot.subList(0, dropCount).clear();
+            hotStart += dropCount;
+        }
+        if (hot.size() > hotCapacity) {
+            return false;
+        }
+        nextSpillAt = hotCapacity;
+        return true;
+    }
+
+    /**
+     * Have add() call the given action instead of sealing when the hot window
+     * outgrows its capacity. The action is called with the library lock held
+     * and must not block: it should arrange for planSpill(), execute(),
+     * applySeal() and dropSealed() to run later (see Library.spillHistory).
+     * Not taken over by copySettingsFrom().
+     */
+    public void setSpillRequest(Runnable spillRequest) {
+        this.spillRequest = spillRequest;
+    }
+
+    // ==================== SEGMENT STORE ====================
+
+    /**
+     * Seal every transaction recorded since the last seal into new segments of
+     * at most segmentSize transactions, then rewrite the manifest
+     */
+    public void seal() throws IOException {
+        if (sealedCount == totalCount()) {
+            return;
+        }
+        ensureDirectory();
+        while (sealedCount < totalCount()) {
+            int from = (int) (sealedCount - hotStart);
+            int to = (int) Math.min(hot.size(), from + (long) segmentSize);
+            TransactionSegment segment = TransactionSegment.write(newSegmentFile(), sealedCount,
+                new ArrayList<>(hot.subList(from, to)), false, syncWrites);
+            segments.add(segment);
+            sealedCount = segment.getEndSequence();
+        }
+        writeManifest();
+    }
+
+    /**
+     * Copy the transactions recorded since the last seal so they can be
+     * written to the store in the given directory without holding the library
+     * lock: run execute() on the plan, then applySeal() under the lock and
+     * write the returned manifest update after releasing it again. If the
+     * store lives elsewhere its segments are first copied over (only happens
+     * when the data directory changes).
+     */
+    public SealPlan planSeal(File storeDirectory) throws IOException {
+        if (!canWriteTo(storeDirectory)) {
+            throw new IOException("The transaction store in " + storeDirectory + " could not be read; "
+                                  + "it is left untouched until it is loaded");
+        }
+        storeDirectory.mkdirs();
+        if (directory == null || !directory.getAbsoluteFile().equals(storeDirectory.getAbsoluteFile())) {
+            seedSegmentNumber(storeDirectory);
+            List<TransactionSegment> copies = new ArrayList<>(segments.size());
+            try {
+                for (TransactionSegment segment : segments) {
+                    copies.add(segment.copyTo(newSegmentFile(storeDirectory, false)));
+                }
+            } catch (IOException e) {
+                for (TransactionSegment copy : copies) {
+                    copy.delete();
+                }
+                throw e;
+            }
+            if (temporary) {
+                for (TransactionSegment segment : segments) {
+                    retire(segment);
+                }
+            }
+            segments.clear();
+            segments.addAll(copies);
+            directory = storeDirectory;
+            temporary = false;
+            manifestVersion++;
+        }
+
+        List<Transaction> unsealed = new ArrayList<>(hot.subList((int) (sealedCount - hotStart), hot.size()));
+        List<File> targets = new ArrayList<>();
+        for (int i = 0; i < unsealed.size(); i += segmentSize) {
+            targets.add(newSegmentFile());
+        }
+        return new SealPlan(directory, sealedCount, unsealed, targets, segmentSize, syncWrites);
+    }
+
+    /**
+     * Plan a seal of the unsealed transactions into wherever the history is
+     * stored (a private spill area if it is not bound to a data directory yet)
+     */
+    public SealPlan planSpill() throws IOException {
+        ensureDirectory();
+        return planSeal(directory);
+    }
+
+    /**
+     * Add the segments written by the plan to the store
+     * @return the manifest to write once the library lock is released, or
+     *         null if the history was sealed or reloaded meanwhile (the plan's
+     *         files are discarded - its transactions are sealed next time)
+     */
+    public ManifestUpdate applySeal(SealPlan plan) {
+        if (plan.directory != directory || plan.firstSequence != sealedCount
+                || plan.written.size() != plan.targets.size()) {
+            for (TransactionSegment segment : plan.written) {
+                segment.delete();
+            }
+            return null;
+        }
+        segments.addAll(plan.written);
+        sealedCount += plan.transactions.size();
+        if (!plan.written.isEmpty()) {
+            manifestVersion++;
+        }
+        return new ManifestUpdate();
+    }
+
+    /**
+     * Unsaved transactions copied by planSeal(); execute() writes them as
+     * segment files and touches nothing else, so it needs no lock
+     */
+    public static class SealPlan {
+        private final File directory;
+        private final long firstSequence;
+        private final List<Transaction> transactions;
+        private final List<File> targets;
+        private final int segmentSize;
+        private final boolean sync;
+        private final List<TransactionSegment> written = new ArrayList<>();
+
+        private SealPlan(File directory, long firstSequence, List<Transaction> transactions, List<File> targets,
+                         int segmentSize, boolean sync) {
+            this.directory = directory;
+            this.firstSequence = firstSequence;
+            this.transactions = transactions;
+            this.targets = targets;
+            this.segmentSize = segmentSize;
+            this.sync = sync;
+        }
+
+        public void execute() throws IOException {
+            try {
+                for (int i = 0; i < targets.size(); i++) {
+                    int from = i * segmentSize;
+                    int to = Math.min(transactions.size(), from + segmentSize);
+                    written.add(TransactionSegment.write(targets.get(i), firstSequence + from,
+                                                         transactions.subList(from, to), false, sync));
+                }
+            } catch (IOException e) {
+                // Only what this plan wrote - a failed write has already removed its own files
+                for (TransactionSegment segment : written) {
+                    segment.delete();
+                }
+                written.clear();
+                throw e;
+            }
+        }
+
+        public int getTransactionCount() {
+            return transactions.size();
+        }
+
+        /**
+         * Bytes of transaction data written by execute()
+         */
+        public long getBytesWritten() {
+            long total = 0;
+            for (TransactionSegment segment : written) {
+                total += segment.getStoredBytes();
+            }
+            return total;
+        }
+
+        public File getManifestFile() {
+            return new File(directory, MANIFEST);
+        }
+    }
+
+    /**
+     * Replace the in-memory state with the store in the given directory. The
+     * segment indexes are read in parallel, and the newest half window of
+     * transactions is read back into memory.
+     */
+    public void open(File storeDirectory) throws IOException {
+        clear();
+        directory = storeDirectory;
+        temporary = false;
+
+        List<String> entries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new FileReader(new File(storeDirectory, MANIFEST), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#") && !line.trim().isEmpty()) {
+                    entries.add(line);
+                }
+            }
+        }
+        openSegments(storeDirectory, entries);
+
+        for (TransactionSegment segment : segments) {
+            for (long[] row : segment.takeHourRows()) {
+                Map.Entry<Long, HourBucket> latest = hours.lastEntry();
+                HourBucket bucket;
+                if (latest == null || row[0] > latest.getKey()) {
+                    bucket = new HourBucket(segment.getFirstSequence() + row[1]);
+                    hours.put(row[0], bucket);
+                } else {
+                    bucket = latest.getValue();
+                }
+                bucket.borrows += (int) row[2];
+                bucket.returns += (int) row[3];
+            }
+        }
+        seedSegmentNumber(storeDirectory);
+
+        // Read the newest transactions back into the hot window
+        hotStart = sealedCount;
+        List<Transaction> newest = new ArrayList<>();
+        readRange(Math.max(0, sealedCount - hotCapacity / 2), sealedCount, newest::add);
+        hot.addAll(newest);
+        hotStart = sealedCount - newest.size();
+    }
+
+    private void openSegments(File storeDirectory, List<String> entries) throws IOException {
+        long[] firstSequences = new long[entries.size()];
+        long sequence = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            firstSequences[i] = sequence;
+            sequence += Integer.parseInt(entries.get(i).split(",")[1].trim());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(entries.size(), Runtime.getRuntime().availableProcessors())));
+        try {
+            List<Future<TransactionSegment>> opened = new ArrayList<>(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                String entry = entries.get(i);
+                long firstSequence = firstSequences[i];
+                opened.add(pool.submit(() -> TransactionSegment.open(storeDirectory, entry, firstSequence)));
+            }
+            for (Future<TransactionSegment> segment : opened) {
+                segments.add(segment.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while opening transaction segments");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                                                      : new IOException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        sealedCount = sequence;
+    }
+
+    /**
+     * Start an empty store in the given directory (used when there is none
+     * yet, or to import a transactions.txt file into). An existing store is
+     * never replaced: its directory is refused instead.
+     */
+    public void create(File storeDirectory) throws IOException {
+        if (hasStore(storeDirectory)) {
+            throw new IOException("A transaction store already exists in " + storeDirectory);
+        }
+        clear();
+        directory = storeDirectory;
+        temporary = false;
+        nextSegmentNumber = 1;
+        seedSegmentNumber(storeDirectory);
+    }
+
+    /**
+     * @return true if the directory holds a transaction store
+     */
+    public static boolean hasStore(File storeDirectory) {
+        return new File(storeDirectory, MANIFEST).exists();
+    }
+
+    /**
+     * Highest numeric transaction ID in the store, read from its manifest
+     * alone, so new IDs can be kept clear of the stored ones before the store
+     * is opened
+     * @return the ID number (0 for an empty store), or -1 if the manifest
+     *         does not record it for every segment
+     */
+    public static long highestTransactionNumber(File storeDirectory) throws IOException {
+        long highest = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new FileReader(new File(storeDirectory, MANIFEST), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#") || line.trim().isEmpty()) continue;
+                long segmentHighest = TransactionSegment.highestIdOf(line);
+                if (segmentHighest < 0) {
+                    return -1;
+                }
+                highest = Math.max(highest, segmentHighest);
+            }
+        }
+        return highest;
+    }
+
+    public File getManifestFile() {
+        return directory == null ? null : new File(directory, MANIFEST);
+    }
+
+    private void ensureDirectory() throws IOException {
+        if (directory == null) {
+            // Not bound to a data directory yet - spill to a private area until saved
+            directory = Files.createTempDirectory("library-history").toFile();
+            directory.deleteOnExit();
+            temporary = true;
+        }
+        directory.mkdirs();
+    }
+
+    /**
+     * Never write into the store in the given directory: its history could
+     * not be read, and sealing there would replace its manifest (and with it
+     * every transaction it lists). Not taken over by copySettingsFrom(), so a
+     * history loaded afresh from the store may write to it again.
+     */
+    public void refuseStore(File storeDirectory) {
+        readOnlyStore = storeDirectory.getAbsoluteFile();
+    }
+
+    /**
+     * @return false if the store in the directory was refused (see refuseStore)
+     */
+    public boolean canWriteTo(File storeDirectory) {
+        return readOnlyStore == null || !readOnlyStore.equals(storeDirectory.getAbsoluteFile());
+    }
+
+    private File newSegmentFile() {
+        return newSegmentFile(directory, temporary);
+    }
+
+    // The next segment name not taken in the directory (by a listed segment or by any leftover file)
+    private File newSegmentFile(File segmentDirectory, boolean temp) {
+        String name;
+        do {
+            name = String.format("segment-%06d", nextSegmentNumber++);
+        } while (new File(segmentDirectory, name + TransactionSegment.EXTENSION).exists()
+                 || new File(segmentDirectory, name + ".txt").exists()
+                 || new File(segmentDirectory, name + ".idx").exists());
+        File file = new File(segmentDirectory, name + TransactionSegment.EXTENSION);
+        if (temp) {
+            file.deleteOnExit();
+            new File(segmentDirectory, name + ".idx").deleteOnExit();
+        }
+        return file;
+    }
+
+    // Continue numbering after the highest segment file in the directory, listed or not
+    private void seedSegmentNumber(File segmentDirectory) {
+        String[] names = segmentDirectory.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            if (name.startsWith("segment-") && name.indexOf('.') > 0) {
+                nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(new File(segmentDirectory, name)) + 1);
+            }
+        }
+    }
+
+    private static int segmentNumber(File file) {
+        String name = file.getName();
+        try {
+            return Integer.parseInt(name.substring(name.indexOf('-') + 1, name.lastIndexOf('.')));
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        manifestVersion++;
+        new ManifestUpdate().write();
+    }
+
+    /**
+     * The segment list as of its creation (under the library lock), to be
+     * written with or without the lock. Updates may be written out of order:
+     * one older than what is already on disk is skipped. Segments the update
+     * no longer lists (after a compaction) are deleted once a manifest at
+     * least this new is on disk, never before.
+     */
+    public class ManifestUpdate {
+        private final File manifest = new File(directory, MANIFEST);
+        private final long version = manifestVersion;
+        private final List<String> lines = new ArrayList<>(segments.size());
+        private final boolean sync = syncWrites;
+        private final List<TransactionSegment> replaced;
+
+        private ManifestUpdate() {
+            this(Collections.emptyList());
+        }
+
+        private ManifestUpdate(List<TransactionSegment> replaced) {
+            for (TransactionSegment segment : segments) {
+                lines.add(segment.toManifestLine());
+            }
+            this.replaced = replaced;
+        }
+
+        public void write() throws IOException {
+            synchronized (manifestLock) {
+                if (version > manifestWritten || (version == manifestWritten && !manifest.exists())) {
+                    writeFile();
+                }
+            }
+            // What is on disk now lists the segments that replaced these
+            for (TransactionSegment segment : replaced) {
+                retire(segment);
+            }
+        }
+
+        // Write to a temporary file and move it into place, so readers see the old or the new manifest
+        private void writeFile() throws IOException {
+            File temp = new File(manifest.getParentFile(), MANIFEST + ".tmp");
+            FileOutputStream out = new FileOutputStream(temp);
+            try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                writer.println("# Library Transaction Segments (oldest first)");
+                writer.println("# Format: File,Count,FirstTimestamp,LastTimestamp,Redacted,MaxId");
+                for (String line : lines) {
+                    writer.println(line);
+                }
+                writer.flush();
+                if (writer.checkError()) {
+                    throw new IOException("Could not write " + temp);
+                }
+                if (sync) {
+                    out.getFD().sync();
+                }
+            }
+            try {
+                Files.move(temp.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            manifestWritten = version;
+        }
+    }
+
+    // ==================== COMPACTION ====================
+
+    /**
+     * Pick the next run of segments worth rewriting: adjacent small segments
+     * (under a quarter of the segment size) to merge, or one segment that is
+     * still plain text or whose transactions are all past the retention period
+     * but not yet redacted. Rewritten segments are always compressed.
+     * Call while holding the library lock; run execute() without it, then
+     * applyCompaction() with it again and write the returned manifest update
+     * once it is released.
+     * @return the plan, or null if there is nothing to compact
+     */
+    public CompactionPlan planCompaction() {
+        if (directory == null || !canWriteTo(directory)) {
+            return null;
+        }
+        LocalDateTime cutoff = retentionCutoff();
+        int smallLimit = Math.max(1, segmentSize / 4);
+
+        for (int i = 0; i < segments.size(); i++) {
+            TransactionSegment segment = segments.get(i);
+            if (segment.getCount() < smallLimit) {
+                int end = i + 1;
+                long merged = segment.getCount();
+                while (end < segments.size() && segments.get(end).getCount() < smallLimit
+                       && merged + segments.get(end).getCount() <= segmentSize) {
+                    merged += segments.get(end++).getCount();
+                }
+                if (end - i > 1) {
+                    return new CompactionPlan(new ArrayList<>(segments.subList(i, end)), newSegmentFile(), cutoff,
+                                              syncWrites);
+                }
+            }
+            boolean expired = cutoff != null && !segment.isRedacted() && segment.getLastTimestamp().isBefore(cutoff);
+            if (expired || !segment.isCompressed()) {
+                return new CompactionPlan(Collections.singletonList(segment), newSegmentFile(), cutoff,
+                                              syncWrites);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Swap the rewritten segment in for the ones it replaces
+     * @return the manifest to write once the library lock is released (writing
+     *         it deletes the replaced segments), or null if the store changed
+     *         meanwhile (the new file is discarded)
+     */
+    public ManifestUpdate applyCompaction(CompactionPlan plan) {
+        int start = segments.indexOf(plan.sources.get(0));
+        boolean unchanged = start >= 0 && start + plan.sources.size() <= segments.size()
+            && segments.subList(start, start + plan.sources.size()).equals(plan.sources);
+        if (!unchanged || plan.result == null) {
+            if (plan.result != null) {
+                plan.result.delete();
+            }
+            return null;
+        }
+
+        segments.subList(start, start + plan.sources.size()).clear();
+        segments.add(start, plan.result);
+        manifestVersion++;
+        return new ManifestUpdate(plan.sources);
+    }
+
+    private LocalDateTime retentionCutoff() {
+        return retentionDays < 0 ? null : LocalDateTime.now().minusDays(retentionDays);
+    }
+
+    /**
+     * A run of segments to rewrite as one. execute() only reads the (immutable)
+     * sources and writes a new file, so it needs no lock.
+     */
+    public static class CompactionPlan {
+        private final List<TransactionSegment> sources;
+        private final File target;
+        private final LocalDateTime retentionCutoff;
+        private final boolean sync;
+        private TransactionSegment result;
+
+        private CompactionPlan(List<TransactionSegment> sources, File target, LocalDateTime retentionCutoff,
+                               boolean sync) {
+            this.sources = sources;
+            this.target = target;
+            this.retentionCutoff = retentionCutoff;
+            this.sync = sync;
+        }
+
+        public void execute() throws IOException {
+            List<Transaction> transactions = new ArrayList<>();
+            for (TransactionSegment source : sources) {
+                for (Transaction transaction : source.readAll()) {
+                    if (retentionCutoff != null && transaction.getTimestamp().isBefore(retentionCutoff)) {
+                        transaction = transaction.withoutPersonalDetails();
+                    }
+                    transactions.add(transaction);
+                }
+            }
+            if (transactions.size() != getTransactionCount()) {
+                throw new IOException("Could not read every transaction of " + describe());
+            }
+            boolean redacted = retentionCutoff != null
+                && transactions.get(transactions.size() - 1).getTimestamp().isBefore(retentionCutoff);
+            result = TransactionSegment.write(target, sources.get(0).getFirstSequence(), transactions,
+                                              redacted, sync);
+        }
+
+        public int getSegmentCount() {
+            return sources.size();
+        }
+
+        public int getTransactionCount() {
+            int count = 0;
+            for (TransactionSegment source : sources) {
+                count += source.getCount();
+            }
+            return count;
+        }
+
+        public String describe() {
+            return sources.size() == 1 ? sources.get(0).getFile().getName()
+                : sources.get(0).getFile().getName() + ".." + sources.get(sources.size() - 1).getFile().getName();
+        }
+    }
+
+    // ==================== READING ====================
+
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, totalCount());
+    }
+
+    public boolean isEmpty() {
+        return totalCount() == 0;
+    }
+
+    private long totalCount() {
+        return hotStart + hot.size();
+    }
+
+    /**
+     * Every transaction, most recent first; segments are read lazily, so
+     * stopping early never touches the disk
+     * @throws UncheckedIOException (while iterating) if a segment cannot be read
+     */
+    public Iterable<Transaction> newestFirst() {
+        return () -> newestFirst(segments, hotStart, hot);
+    }
+
+    /**
+     * Every transaction in recording order (oldest first)
+     * @throws UncheckedIOException (while iterating) if a segment cannot be read
+     */
+    public Iterable<Transaction> oldestFirst() {
+        return () -> {
+            List<Supplier<Iterator<Transaction>>> sources = new ArrayList<>();
+            for (TransactionSegment segment : segments) {
+                if (segment.getFirstSequence() < hotStart) {
+                    sources.add(() -> readColdPart(segment, hotStart).iterator());
+                }
+            }
+            sources.add(hot::iterator);
+            return new TierIterator(sources);
+        };
+    }
+
+    private static Iterator<Transaction> newestFirst(List<TransactionSegment> segments, long hotStart,
+                                                     List<Transaction> hot) {
+        List<Supplier<Iterator<Transaction>>> sources = new ArrayList<>();
+        sources.add(() -> reversed(hot));
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            TransactionSegment segment = segments.get(i);
+            if (segment.getFirstSequence() < hotStart) {
+                sources.add(() -> reversed(readColdPart(segment, hotStart)));
+            }
+        }
+        return new TierIterator(sources);
+    }
+
+    /**
+     * Find a transaction by ID: the hot window is searched first (newest
+     * first), then only the segment blocks whose ID range covers the ID
+     * @return the transaction, or null if there is none
+     * @throws UncheckedIOException if a segment that may hold it cannot be read
+     */
+    public Transaction find(String transactionId) {
+        return find(segments, hotStart, hot, transactionId);
+    }
+
+    private static Transaction find(List<TransactionSegment> segments, long hotStart, List<Transaction> hot,
+                                    String transactionId) {
+        for (int i = hot.size() - 1; i >= 0; i--) {
+            if (hot.get(i).getTransactionId().equals(transactionId)) {
+                return hot.get(i);
+            }
+        }
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            TransactionSegment segment = segments.get(i);
+            if (segment.getFirstSequence() < hotStart && segment.mayContain(transactionId)) {
+                try {
+                    Transaction transaction = segment.find(transactionId);
+                    if (transaction != null) {
+                        return transaction;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not read " + segment.getFile().getName(), e);
+                }
+            }
+        }
+        return null;
+    }
+
+    // The part of a segment that is not also in the hot window
+    private static List<Transaction> readColdPart(TransactionSegment segment, long hotStart) {
+        try {
+            return segment.read(0, coldCount(segment, hotStart));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + segment.getFile().getName(), e);
+        }
+    }
+
+    private static int coldCount(TransactionSegment segment, long hotStart) {
+        return (int) Math.min(segment.getCount(), hotStart - segment.getFirstSequence());
+    }
+
+    // ==================== SNAPSHOTS ====================
+
+    /**
+     * Take a snapshot of the history as it is now (call with the library lock
+     * held), to read without the lock. Close it when done.
+     */
+    public View view() {
+        return new View(0, totalCount());
+    }
+
+    /**
+     * A view for reading the transactions recorded from (inclusive) to
+     * (exclusive) with View.between() outside the lock: the hours in range
+     * are located through the hourly index now, so only they are read later
+     */
+    public View viewBetween(LocalDateTime from, LocalDateTime to) {
+        long[] range = sequenceRange(from, to);
+        return range == null ? new View(0, 0) : new View(range[0], range[1]);
+    }
+
+    /**
+     * The segment list and hot window as they were when the view was taken.
+     * Segments compacted away meanwhile are kept on disk until every view is
+     * closed, so a view reads the same transactions however long it is used.
+     */
+    public class View implements AutoCloseable {
+        private final List<TransactionSegment> segmentList;
+        private final List<Transaction> hotList;
+        private final long viewHotStart;
+        private final long rangeStart;      // Sequences between() reads (see viewBetween)
+        private final long rangeEnd;
+        private boolean closed;
+
+        private View(long rangeStart, long rangeEnd) {
+            synchronized (viewLock) {
+                openViews++;
+            }
+            segmentList = new ArrayList<>(segments);
+            hotList = new ArrayList<>(hot);
+            viewHotStart = hotStart;
+            this.rangeStart = rangeStart;
+            this.rangeEnd = rangeEnd;
+        }
+
+        public int size() {
+            return (int) Math.min(Integer.MAX_VALUE, viewHotStart + hotList.size());
+        }
+
+        public boolean isEmpty() {
+            return viewHotStart + hotList.size() == 0;
+        }
+
+        /**
+         * Every transaction in the view, most recent first (read lazily, as TransactionHistory.newestFirst())
+         */
+        public Iterable<Transaction> newestFirst() {
+            return () -> TransactionHistory.newestFirst(segmentList, viewHotStart, hotList);
+        }
+
+        /**
+         * A member's transactions, most recent first. Segment blocks whose
+         * member filter rules the member out are skipped without being read.
+         */
+        public List<Transaction> forMember(String memberId) throws IOException {
+            List<Transaction> results = new ArrayList<>();
+            for (int i = hotList.size() - 1; i >= 0; i--) {
+                if (hotList.get(i).getMemberId().equals(memberId)) {
+                    results.add(hotList.get(i));
+                }
+            }
+            for (int i = segmentList.size() - 1; i >= 0; i--) {
+                TransactionSegment segment = segmentList.get(i);
+                if (segment.getFirstSequence() < viewHotStart) {
+                    List<Transaction> found = segment.readMember(memberId, coldCount(segment, viewHotStart));
+                    for (int j = found.size() - 1; j >= 0; j--) {
+                        results.add(found.get(j));
+                    }
+                }
+            }
+            return results;
+        }
+
+        /**
+         * Find a transaction by ID, as TransactionHistory.find()
+         * @throws UncheckedIOException if a segment that may hold it cannot be read
+         */
+        public Transaction find(String transactionId) {
+            return TransactionHistory.find(segmentList, viewHotStart, hotList, transactionId);
+        }
+
+        /**
+         * Transactions with from <= timestamp < to, oldest first, among those
+         * the view was taken for (a view() holds them all, a viewBetween() just its range)
+         */
+        public List<Transaction> between(LocalDateTime from, LocalDateTime to) throws IOException {
+            List<Transaction> results = new ArrayList<>();
+            readRange(segmentList, viewHotStart, hotList, rangeStart, rangeEnd, transaction -> {
+                LocalDateTime timestamp = transaction.getTimestamp();
+                if (!timestamp.isBefore(from) && timestamp.isBefore(to)) {
+                    results.add(transaction);
+                }
+            });
+            return results;
+        }
+
+        @Override
+        public void close() {
+            List<TransactionSegment> deletable = Collections.emptyList();
+            synchronized (viewLock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (--openViews == 0 && !retired.isEmpty()) {
+                    deletable = new ArrayList<>(retired);
+                    retired.clear();
+                }
+            }
+            for (TransactionSegment segment : deletable) {
+                segment.delete();
+            }
+        }
+    }
+
+    // Delete a segment that is no longer listed, or leave it to the last open View
+    private void retire(TransactionSegment segment) {
+        synchronized (viewLock) {
+            if (openViews > 0) {
+                retired.add(segment);
+                return;
+            }
+        }
+        segment.delete();
+    }
+
+    // ==================== TIME-RANGE QUERIES ====================
+
+    /**
+     * Transactions with from <= timestamp < to, oldest first
+     * @throws UncheckedIOException if a segment in range cannot be read
+     */
+    public List<Transaction> between(LocalDateTime from, LocalDateTime to) {
+        List<Transaction> results = new ArrayList<>();
+        long[] range = sequenceRange(from, to);
+        if (range == null) {
+            return results;
+        }
+
+        try {
+            readRange(range[0], range[1], transaction -> {
+                LocalDateTime timestamp = transaction.getTimestamp();
+                if (!timestamp.isBefore(from) && timestamp.isBefore(to)) {
+                    results.add(transaction);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return results;
+    }
+
+    /**
+     * Number of transactions with from <= timestamp < to
+     * @throws UncheckedIOException if a partially covered hour cannot be read
+     */
+    public long countBetween(LocalDateTime from, LocalDateTime to) {
+        long[] total = new long[1];
+        try {
+            visitRange(from, to,
+                (hour, bucket) -> total[0] += bucket.borrows + bucket.returns,
+                (hour, transaction) -> total[0]++);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return total[0];
+    }
+
+    /**
+     * Borrow/return totals for each hour or day between from (inclusive) and
+     * to (exclusive), skipping periods without any circulation
+     * @throws UncheckedIOException if a partially covered hour cannot be read
+     */
+    public List<CirculationSummary> summarize(LocalDateTime from, LocalDateTime to, ChronoUnit unit) {
+        if (unit != ChronoUnit.HOURS && unit != ChronoUnit.DAYS) {
+            throw new IllegalArgumentException("Transactions can be summarized by HOURS or DAYS, not " + unit);
+        }
+        Map<LocalDateTime, int[]> periods = new LinkedHashMap<>();
+        try {
+            visitRange(from, to,
+                (hour, bucket) -> {
+                    int[] totals = periods.computeIfAbsent(periodOf(hour, unit), key -> new int[2]);
+                    totals[0] += bucket.borrows;
+                    totals[1] += bucket.returns;
+                },
+                (hour, transaction) -> {
+                    int[] totals = periods.computeIfAbsent(periodOf(hour, unit), key -> new int[2]);
+                    totals[transaction.isBorrowTransaction() ? 0 : 1]++;
+                });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<CirculationSummary> summaries = new ArrayList<>(periods.size());
+        for (Map.Entry<LocalDateTime, int[]> period : periods.entrySet()) {
+            summaries.add(new CirculationSummary(period.getKey(), period.getValue()[0], period.getValue()[1]));
+        }
+        return summaries;
+    }
+
+    private interface BucketVisitor {
+        void visit(long hour, HourBucket bucket);
+    }
+
+    private interface TransactionVisitor {
+        void visit(long hour, Transaction transaction);
+    }
+
+    /**
+     * Hand every hour that lies wholly inside [from, to) to wholeHour, and each
+     * in-range transaction of the (at most two) partially covered hours to partial
+     */
+    private void visitRange(LocalDateTime from, LocalDateTime to, BucketVisitor wholeHour,
+                            TransactionVisitor partial) throws IOException {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        NavigableMap<Long, HourBucket> covered = hours.subMap(hourOf(from), true, hourOf(to.minusNanos(1)), true);
+        for (Map.Entry<Long, HourBucket> entry : covered.entrySet()) {
+            long hour = entry.getKey();
+            LocalDateTime hourStart = startOfHour(hour);
+            if (!hourStart.isBefore(from) && !hourStart.plusHours(1).isAfter(to)) {
+                wholeHour.visit(hour, entry.getValue());
+            } else {
+                readRange(entry.getValue().firstSequence, endOfHour(hour), transaction -> {
+                    LocalDateTime timestamp = transaction.getTimestamp();
+                    if (!timestamp.isBefore(from) && timestamp.isBefore(to)) {
+                        partial.visit(hour, transaction);
+                    }
+                });
+            }
+        }
+    }
+
+    // Sequence numbers [start, end) of the hours from..to cover, or null if no transaction can be in range
+    private long[] sequenceRange(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to) || hours.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, HourBucket> start = hours.ceilingEntry(hourOf(from));
+        if (start == null) {
+            return null;
+        }
+        return new long[] {start.getValue().firstSequence, endOfHour(hourOf(to.minusNanos(1)))};
+    }
+
+    // Sequence number just past the last transaction indexed under this hour (or earlier)
+    private long endOfHour(long hour) {
+        Map.Entry<Long, HourBucket> next = hours.higherEntry(hour);
+        return next != null ? next.getValue().firstSequence : totalCount();
+    }
+
+    /**
+     * Pass transactions with startSequence <= sequence < endSequence to the
+     * action, oldest first - from the hot window where possible, else from segments
+     */
+    private void readRange(long startSequence, long endSequence, Consumer<Transaction> action)
+            throws IOException {
+        readRange(segments, hotStart, hot, startSequence, endSequence, action);
+    }
+
+    private static void readRange(List<TransactionSegment> segments, long hotStart, List<Transaction> hot,
+                                  long startSequence, long endSequence, Consumer<Transaction> action)
+            throws IOException {
+        if (startSequence >= endSequence) {
+            return;
+        }
+        long coldEnd = Math.min(endSequence, hotStart);
+        if (startSequence < coldEnd) {
+            // Binary search for the segment holding startSequence
+            int low = 0;
+            int high = segments.size() - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (segments.get(mid).getFirstSequence() <= startSequence) low = mid;
+                else high = mid - 1;
+            }
+            for (int i = low; i < segments.size() && segments.get(i).getFirstSequence() < coldEnd; i++) {
+                TransactionSegment segment = segments.get(i);
+                int from = (int) Math.max(0, startSequence - segment.getFirstSequence());
+                int to = (int) Math.min(segment.getCount(), coldEnd - segment.getFirstSequence());
+                segment.read(from, to).forEach(action);
+            }
+        }
+        int from = (int) Math.max(0, startSequence - hotStart);
+        int to = (int) Math.min(hot.size(), endSequence - hotStart);
+        for (int i = from; i < to; i++) {
+            action.accept(hot.get(i));
+        }
+    }
+
+    private static long hourOf(LocalDateTime timestamp) {
+        return TransactionSegment.hourOf(timestamp);
+    }
+
+    private static LocalDateTime startOfHour(long hour) {
+        return LocalDateTime.ofEpochSecond(hour * 3600, 0, ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime periodOf(long hour, ChronoUnit unit) {
+        return startOfHour(hour).truncatedTo(unit);
+    }
+
+    // ==================== CONFIGURATION & STATS ====================
+
+    public int getHotCapacity() {
+        return hotCapacity;
+    }
+
+    /**
+     * Maximum number of transactions kept in memory (at least 2)
+     */
+    public void setHotCapacity(int hotCapacity) {
+        if (hotCapacity < 2) {
+            throw new IllegalArgumentException("Hot window must hold at least 2 transactions");
+        }
+        this.hotCapacity = hotCapacity;
+        this.nextSpillAt = hotCapacity;
+        if (hot.size() > nextSpillAt) {
+            spill();
+        }
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Target number of transactions per sealed segment
+     */
+    public void setSegmentSize(int segmentSize) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Segments must hold at least 1 transaction");
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Force segment and manifest files to the storage device as they are
+     * written (slower, but a save survives a power loss once it returns)
+     */
+    public void setSyncWrites(boolean syncWrites) {
+        this.syncWrites = syncWrites;
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    /**
+     * Compaction strips member names and notes from transactions older than
+     * this many days; negative keeps them forever
+     */
+    public void setRetentionDays(int retentionDays) {
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * Take over hot window, segment size, retention and sync settings
+     */
+    public void copySettingsFrom(TransactionHistory other) {
+        setHotCapacity(other.hotCapacity);
+        segmentSize = other.segmentSize;
+        retentionDays = other.retentionDays;
+        syncWrites = other.syncWrites;
+    }
+
+    public int getHotSize() {
+        return hot.size();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Bytes of sealed transaction data on disk (compressed where rewritten)
+     */
+    public long getStoredBytes() {
+        long total = 0;
+        for (TransactionSegment segment : segments) {
+            total += segment.getStoredBytes();
+        }
+        return total;
+    }
+
+    private static <T> Iterator<T> reversed(List<T> list) {
+        ListIterator<T> backwards = list.listIterator(list.size());
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return backwards.hasPrevious();
+            }
+
+            @Override
+            public T next() {
+                return backwards.previous();
+            }
+        };
+    }
+
+    /**
+     * Index entry for one hour: where its transactions start and how many of each type
+     */
+    private static class HourBucket {
+        final long firstSequence;
+        int borrows;
+        int returns;
+
+        HourBucket(long firstSequence) {
+            this.firstSequence = firstSequence;
+        }
+
+        void count(Transaction transaction, int delta) {
+            if (transaction.isBorrowTransaction()) borrows += delta;
+            else returns += delta;
+        }
+    }
+
+    /**
+     * Walks a sequence of iterators, creating each one only when it is reached
+     */
+    private static class TierIterator implements Iterator<Transaction> {
+        private final Iterator<Supplier<Iterator<Transaction>>> sources;
+        private Iterator<Transaction> current = Collections.emptyIterator();
+
+        TierIterator(List<Supplier<Iterator<Transaction>>> sources) {
+            this.sources = sources.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && sources.hasNext()) {
+                current = sources.next().get();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public Transaction next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+}
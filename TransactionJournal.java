@@ -0,0 +1,71 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * TransactionJournal - Append-only log of committed transactions
+ * Demonstrates: Ring-buffer consumers, Batched writes
+ *
+ * Subscribed to the library's transaction events, it appends each
+ * transaction in transactions.txt format and flushes once per batch, so a
+ * burst of borrows costs one write - on its own thread, never the
+ * borrower's. Events missed by falling a whole ring behind are noted in the
+ * file as a comment line. Closing the subscription writes out what is
+ * still published and closes the file.
+ */
+public class TransactionJournal implements TransactionRingBuffer.Handler {
+
+    private final File file;
+    private final PrintWriter writer;
+    private long written;
+
+    public TransactionJournal(File file) throws IOException {
+        this.file = file;
+        boolean isNew = !file.exists() || file.length() == 0;
+        this.writer = new PrintWriter(new FileWriter(file, true));
+        if (isNew) {
+            writer.println("# Library Transaction Journal (appended in commit order)");
+            writer.println("# Format: ID,MemberID,MemberName,BookTitle,ISBN,Type,Timestamp,Notes,DueDate");
+            writer.flush();
+        }
+    }
+
+    /**
+     * Subscribe a journal writing to the given file to the library's transaction events
+     */
+    public static TransactionRingBuffer.Subscription start(Library library, File file) throws IOException {
+        return library.subscribeToTransactions("journal", new TransactionJournal(file));
+    }
+
+    @Override
+    public void onEvent(Transaction transaction, long sequence, boolean endOfBatch) throws IOException {
+        writer.println(transaction.toFileFormat());
+        written++;
+        if (endOfBatch) {
+            writer.flush();
+            if (writer.checkError()) {
+                throw new IOException("Could not write " + file);
+            }
+        }
+    }
+
+    @Override
+    public void onOverrun(long missedEvents) {
+        writer.println("# " + missedEvents + " transactions missed (journal fell behind)");
+        writer.flush();
+    }
+
+    @Override
+    public void onClose() {
+        writer.close();
+    }
+
+    public long getWrittenCount() {
+        return written;
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,313 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * TransactionRingBuffer - Committed transactions for consumers off the borrow/return path
+ * Demonstrates: Ring buffers, Sequence numbers, Single-producer/multi-consumer hand-off, Batching
+ *
+ * The library publishes each transaction as it commits, under its lock, so
+ * there is one producer at a time and sequence order is commit order.
+ * Publishing writes into a slot of a pre-allocated array and moves the
+ * cursor forward - no locks, no allocation and no waiting for consumers.
+ *
+ * Each subscription has its own thread and its own sequence. It reads
+ * everything published since it last looked as one batch, in order, telling
+ * the handler which event ends the batch so a disk consumer can flush once
+ * per batch. A consumer that falls a whole ring behind is not waited for:
+ * the events it missed are overwritten, and it is told how many before it
+ * carries on from the oldest event still in the ring. The event before a
+ * gap always ends its batch, so a handler flushes before being told.
+ *
+ * A consumer with nothing to read spins briefly, then parks until the
+ * producer wakes it. Publishing checks a count of parked consumers, so it
+ * only looks for ones to wake when some consumer is actually asleep.
+ *
+ * Each slot records the sequence of the event in it. A reader checks it
+ * before and after taking the event, and the producer clears it before
+ * overwriting, so an event overwritten mid-read is never mistaken for the
+ * one the reader wanted.
+ */
+public class TransactionRingBuffer {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final int SPINS_BEFORE_PARKING = 64;
+
+    private final int mask;
+    private final AtomicReferenceArray<Transaction> slots;
+    private final AtomicLongArray slotSequences;        // Sequence of the event in each slot, -1 while written
+    private final AtomicLong cursor = new AtomicLong(-1); // Last published sequence
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicInteger parked = new AtomicInteger(); // Subscriptions waiting to be woken
+
+    public TransactionRingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity events kept for slow consumers, rounded up to a power of two
+     */
+    public TransactionRingBuffer(int capacity) {
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Ring capacity must be between 2 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        mask = size - 1;
+        slots = new AtomicReferenceArray<>(size);
+        slotSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slotSequences.set(i, -1);
+        }
+    }
+
+    // ==================== PUBLISHING ====================
+
+    /**
+     * Publish a committed transaction (one thread at a time - the library
+     * calls this while it holds its lock). Never waits for consumers.
+     * @return the event's sequence number
+     */
+    public long publish(Transaction transaction) {
+        long sequence = cursor.get() + 1;
+        int index = (int) (sequence & mask);
+        // Ordered writes are enough for one producer: the slot is marked, filled, then stamped
+        slotSequences.lazySet(index, -1);
+        slots.lazySet(index, transaction);
+        slotSequences.lazySet(index, sequence);
+        // A full write, so a consumer that checked the cursor before parking is seen parked here
+        cursor.set(sequence);
+        if (parked.get() > 0) {
+            for (Subscription subscription : subscriptions) {
+                subscription.wake();
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * @return the sequence of the last published event (-1 before the first)
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    // The event with this sequence, or null if it has been (or is being) overwritten
+    private Transaction read(long sequence) {
+        int index = (int) (sequence & mask);
+        if (slotSequences.get(index) != sequence) {
+            return null;
+        }
+        Transaction transaction = slots.get(index);
+        return slotSequences.get(index) == sequence ? transaction : null;
+    }
+
+    // ==================== SUBSCRIBING ====================
+
+    /**
+     * Handles the events of one subscription, on that subscription's thread
+     */
+    public interface Handler {
+
+        /**
+         * @param endOfBatch true for the last event currently published, or the last one
+         *                   before events this consumer missed - a good time to flush
+         */
+        void onEvent(Transaction transaction, long sequence, boolean endOfBatch) throws Exception;
+
+        /**
+         * The consumer fell a whole ring behind and these events were overwritten before it read them
+         */
+        default void onOverrun(long missedEvents) {
+        }
+
+        /**
+         * The subscription was closed and has handled everything published before - release resources here
+         */
+        default void onClose() {
+        }
+    }
+
+    /**
+     * Start a consumer of the events published from now on, on its own daemon thread
+     */
+    public Subscription subscribe(String name, Handler handler) {
+        Subscription subscription = new Subscription(name, handler, cursor.get());
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    public List<Subscription> getSubscriptions() {
+        return new ArrayList<>(subscriptions);
+    }
+
+    /**
+     * Stop every subscription after it has handled what is already published
+     */
+    public void shutdown() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(String.format("Transaction events: %d published, ring of %d",
+                                                             cursor.get() + 1, getCapacity()));
+        for (Subscription subscription : subscriptions) {
+            text.append("; ").append(subscription);
+        }
+        return text.toString();
+    }
+
+    /**
+     * One consumer: its own thread reading the ring at its own pace
+     */
+    public class Subscription {
+        private final String name;
+        private final Handler handler;
+        private final Thread thread;
+        private final AtomicLong sequence;          // Last event handled (or skipped)
+        private final AtomicLong overruns = new AtomicLong();
+        private volatile boolean running = true;
+        private volatile boolean waiting;           // Parked until publish or close wakes it
+
+        private Subscription(String name, Handler handler, long startAfter) {
+            this.name = name;
+            this.handler = handler;
+            this.sequence = new AtomicLong(startAfter);
+            this.thread = new Thread(this::run, "library-events-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            int idle = 0;
+            while (running || sequence.get() < cursor.get()) {
+                long next = sequence.get() + 1;
+                long available = cursor.get();
+                if (available < next) {
+                    idle = idle(idle);
+                    continue;
+                }
+                idle = 0;
+
+                // Lapped: skip to the oldest event still in the ring
+                long oldest = available - mask;
+                if (next < oldest) {
+                    missed(oldest - next);
+                    next = oldest;
+                }
+
+                // Read one event ahead, so the last event before one overwritten while we
+                // read still ends the batch; the overwritten ones are counted as missed next pass
+                long handled = next - 1;
+                Transaction transaction = read(next);
+                for (long current = next; transaction != null; current++) {
+                    Transaction following = current < available ? read(current + 1) : null;
+                    try {
+                        handler.onEvent(transaction, current, following == null);
+                    } catch (Exception e) {
+                        System.out.println("Error in transaction consumer '" + name + "': " + e.getMessage());
+                    }
+                    handled = current;
+                    transaction = following;
+                }
+                sequence.set(handled);
+            }
+            subscriptions.remove(this);
+            try {
+                handler.onClose();
+            } catch (RuntimeException e) {
+                System.out.println("Error closing transaction consumer '" + name + "': " + e.getMessage());
+            }
+        }
+
+        private void missed(long count) {
+            overruns.addAndGet(count);
+            try {
+                handler.onOverrun(count);
+            } catch (RuntimeException e) {
+                System.out.println("Error in transaction consumer '" + name + "': " + e.getMessage());
+            }
+        }
+
+        // Spin briefly for the next event, then park until publish (or close) wakes us
+        private int idle(int idle) {
+            if (idle < SPINS_BEFORE_PARKING) {
+                Thread.onSpinWait();
+                return idle + 1;
+            }
+            waiting = true;
+            parked.incrementAndGet();
+            // Look again once publish is sure to see us waiting, or an event published meanwhile is slept through
+            if (running && cursor.get() <= sequence.get()) {
+                LockSupport.park(this);
+            }
+            parked.decrementAndGet();
+            waiting = false;
+            return 0;
+        }
+
+        private void wake() {
+            if (waiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the sequence of the last event this consumer handled
+         */
+        public long getSequence() {
+            return sequence.get();
+        }
+
+        /**
+         * @return events published but not yet handled
+         */
+        public long getLag() {
+            return Math.max(0, cursor.get() - sequence.get());
+        }
+
+        /**
+         * @return events this consumer missed by falling a whole ring behind
+         */
+        public long getOverruns() {
+            return overruns.get();
+        }
+
+        /**
+         * Stop after handling what is already published, then call the
+         * handler's onClose (waits up to five seconds)
+         */
+        public void close() {
+            running = false;
+            LockSupport.unpark(thread);
+            if (Thread.currentThread() != thread) {
+                try {
+                    thread.join(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (lag %d, missed %d)", name, getLag(), getOverruns());
+        }
+    }
+}
@@ -0,0 +1,614 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * TransactionSegment - One sealed, immutable file of consecutive transactions
+ * Demonstrates: Immutable files, Block compression (java.util.zip), Sparse indexes, Manifest records
+ *
+ * Transactions are stored in blocks of 256 in the usual transaction line
+ * format. New segments (.blk) deflate each block separately: multi-year
+ * history repeats the same member IDs, titles, ISBNs and timestamp prefixes,
+ * so a block shrinks several times over, and any block can be inflated on
+ * its own. Segments written before compression (.txt) hold the plain lines
+ * and are read the same way, block by block.
+ *
+ * A small .idx file next to the segment holds:
+ *   H,hour,position,borrows,returns   - first position and totals of each hour
+ *   B,byteOffset,length,minId,maxId   - where each block is and its transaction ID range
+ *   M,block,bits                      - Bloom filter of the member IDs in a block (hex)
+ * The hour rows let TransactionHistory rebuild its time index without reading
+ * the transactions; the block rows let a reader fetch only the blocks holding
+ * a range of positions or a transaction ID, and the member filters only the
+ * blocks that can hold a member's transactions (about 2% of the others slip
+ * through; segments indexed before the filters existed read every block).
+ * Segments are never modified - compaction writes new ones and deletes the old.
+ *
+ * Reads that hit a missing, truncated or corrupt block throw IOException
+ * rather than return what was decoded before it.
+ */
+public class TransactionSegment {
+
+    static final int BLOCK_SIZE = 256;          // Transactions per block
+    static final String EXTENSION = ".blk";     // Compressed segments; ".txt" ones are plain text
+    private static final int FILTER_BITS_PER_MEMBER = 8;
+    private static final int FILTER_PROBES = 4;
+
+    private final File file;
+    private final long firstSequence;           // Position of the first transaction in the whole history
+    private final int count;
+    private final LocalDateTime firstTimestamp;
+    private final LocalDateTime lastTimestamp;
+    private final boolean redacted;             // Personal details already removed (see Transaction.withoutPersonalDetails)
+    private final boolean compressed;
+    private final long[] offsets;               // Per block: byte offset, stored length and ID range
+    private final int[] lengths;
+    private final long[] minIds;
+    private final long[] maxIds;
+    private final long highestId;               // Largest numeric transaction ID (-1 if not indexed)
+    private final long[][] memberFilters;       // Per block: Bloom filter of member IDs (null if not indexed)
+    private List<long[]> hourRows;              // {hour, position, borrows, returns}; dropped once indexed
+
+    private TransactionSegment(File file, long firstSequence, int count, LocalDateTime firstTimestamp,
+                               LocalDateTime lastTimestamp, boolean redacted, boolean compressed,
+                               long[] offsets, int[] lengths, long[] minIds, long[] maxIds,
+                               long[][] memberFilters, List<long[]> hourRows) {
+        this.file = file;
+        this.firstSequence = firstSequence;
+        this.count = count;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.redacted = redacted;
+        this.compressed = compressed;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.minIds = minIds;
+        this.maxIds = maxIds;
+        this.memberFilters = memberFilters;
+        this.hourRows = hourRows;
+
+        long highest = 0;
+        for (long id : maxIds) {
+            if (id == Long.MAX_VALUE) {
+                highest = -1; // Plain text segment: IDs are not indexed
+                break;
+            }
+            highest = Math.max(highest, id);
+        }
+        this.highestId = highest;
+    }
+
+    // ==================== WRITING ====================
+
+    /**
+     * Write transactions (at least one) as a new compressed segment file and
+     * its index, forcing both to the storage device if sync is set. Existing
+     * files are never replaced: if either name is taken nothing is written and
+     * IOException is thrown. On failure the partly written files are deleted.
+     */
+    static TransactionSegment write(File file, long firstSequence, List<Transaction> transactions,
+                                    boolean redacted, boolean sync) throws IOException {
+        if (!file.createNewFile()) {
+            throw new IOException("Refusing to overwrite existing segment file " + file);
+        }
+        if (!indexFile(file).createNewFile()) {
+            file.delete();
+            throw new IOException("Refusing to overwrite existing segment index " + indexFile(file));
+        }
+        try {
+            return writeFiles(file, firstSequence, transactions, redacted, sync);
+        } catch (IOException | RuntimeException e) {
+            deleteFiles(file);
+            throw e;
+        }
+    }
+
+    private static TransactionSegment writeFiles(File file, long firstSequence, List<Transaction> transactions,
+                                                 boolean redacted, boolean sync) throws IOException {
+        int blocks = (transactions.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        long[] offsets = new long[blocks];
+        int[] lengths = new int[blocks];
+        long[] minIds = new long[blocks];
+        long[] maxIds = new long[blocks];
+        long[][] memberFilters = new long[blocks][];
+        List<long[]> hourRows = new ArrayList<>();
+        long position = 0;
+
+        Deflater deflater = new Deflater();
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        FileOutputStream fileOut = new FileOutputStream(file);
+        try (OutputStream out = new BufferedOutputStream(fileOut)) {
+            for (int block = 0; block < blocks; block++) {
+                int start = block * BLOCK_SIZE;
+                int end = Math.min(transactions.size(), start + BLOCK_SIZE);
+                raw.reset();
+                minIds[block] = Long.MAX_VALUE;
+                maxIds[block] = Long.MIN_VALUE;
+                Set<String> members = new HashSet<>();
+                for (int i = start; i < end; i++) {
+                    Transaction transaction = transactions.get(i);
+                    raw.write((transaction.toFileFormat() + "\n").getBytes(StandardCharsets.UTF_8));
+                    long id = idNumber(transaction.getTransactionId());
+                    minIds[block] = Math.min(minIds[block], id);
+                    maxIds[block] = Math.max(maxIds[block], id);
+
+                    // Hours only move forward within a segment (out-of-order ones join the latest hour)
+                    long hour = hourOf(transaction.getTimestamp());
+                    long[] row = hourRows.isEmpty() ? null : hourRows.get(hourRows.size() - 1);
+                    if (row == null || hour > row[0]) {
+                        row = new long[] {hour, i, 0, 0};
+                        hourRows.add(row);
+                    }
+                    row[transaction.isBorrowTransaction() ? 2 : 3]++;
+                    members.add(transaction.getMemberId());
+                }
+                memberFilters[block] = memberFilter(members);
+
+                // Each block is its own deflate stream so it can be inflated alone
+                deflater.reset();
+                deflater.setInput(raw.toByteArray());
+                deflater.finish();
+                offsets[block] = position;
+                while (!deflater.finished()) {
+                    int length = deflater.deflate(buffer);
+                    out.write(buffer, 0, length);
+                    lengths[block] += length;
+                }
+                position += lengths[block];
+            }
+            out.flush();
+            if (sync) {
+                fileOut.getFD().sync();
+            }
+        } finally {
+            deflater.end();
+        }
+
+        FileOutputStream indexOut = new FileOutputStream(indexFile(file));
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(indexOut, StandardCharsets.UTF_8))) {
+            writer.println("# Transaction segment index");
+            writer.println("# Format: H,Hour,Position,Borrows,Returns | B,ByteOffset,Length,MinId,MaxId | M,Block,Bits");
+            for (long[] row : hourRows) {
+                writer.printf("H,%d,%d,%d,%d%n", row[0], row[1], row[2], row[3]);
+            }
+            for (int block = 0; block < blocks; block++) {
+                writer.printf("B,%d,%d,%d,%d%n", offsets[block], lengths[block], minIds[block], maxIds[block]);
+            }
+            for (int block = 0; block < blocks; block++) {
+                StringBuilder bits = new StringBuilder(memberFilters[block].length * 16);
+                for (long word : memberFilters[block]) {
+                    String hex = Long.toHexString(word);
+                    bits.append("0".repeat(16 - hex.length())).append(hex);
+                }
+                writer.printf("M,%d,%s%n", block, bits);
+            }
+            writer.flush();
+            if (writer.checkError()) {
+                throw new IOException("Could not write " + indexFile(file));
+            }
+            if (sync) {
+                indexOut.getFD().sync();
+            }
+        }
+
+        return new TransactionSegment(file, firstSequence, transactions.size(),
+            transactions.get(0).getTimestamp(), transactions.get(transactions.size() - 1).getTimestamp(),
+            redacted, true, offsets, lengths, minIds, maxIds, memberFilters, null);
+    }
+
+    /**
+     * Open a sealed segment described by a manifest line (File,Count,FirstTimestamp,LastTimestamp,Redacted[,MaxId])
+     */
+    static TransactionSegment open(File directory, String manifestLine, long firstSequence) throws IOException {
+        String[] parts = manifestLine.split(",");
+        if (parts.length < 5) {
+            throw new IOException("Malformed manifest entry: " + manifestLine);
+        }
+        File file = new File(directory, parts[0]);
+        int count = Integer.parseInt(parts[1]);
+        int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+        List<long[]> hourRows = new ArrayList<>();
+        long[] offsets = new long[blocks];
+        int[] lengths = new int[blocks];
+        long[] minIds = new long[blocks];
+        long[] maxIds = new long[blocks];
+        long[][] memberFilters = new long[blocks][];
+        int blockCount = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(indexFile(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#") || line.isEmpty()) continue;
+                String[] fields = line.split(",");
+                if ("H".equals(fields[0])) {
+                    hourRows.add(new long[] {Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                                             Long.parseLong(fields[3]), Long.parseLong(fields[4])});
+                } else if ("B".equals(fields[0]) && blockCount < blocks) {
+                    offsets[blockCount] = Long.parseLong(fields[1]);
+                    lengths[blockCount] = Integer.parseInt(fields[2]);
+                    minIds[blockCount] = Long.parseLong(fields[3]);
+                    maxIds[blockCount++] = Long.parseLong(fields[4]);
+                } else if ("O".equals(fields[0]) && blockCount < blocks) {
+                    // Plain text segment: offset only, no ID range
+                    offsets[blockCount] = Long.parseLong(fields[1]);
+                    minIds[blockCount] = Long.MIN_VALUE;
+                    maxIds[blockCount++] = Long.MAX_VALUE;
+                } else if ("M".equals(fields[0])) {
+                    int block = Integer.parseInt(fields[1]);
+                    if (block >= 0 && block < blocks) {
+                        memberFilters[block] = parseFilter(fields[2]);
+                    }
+                }
+            }
+        }
+        if (blockCount != blocks) {
+            throw new IOException("Index of " + file.getName() + " is incomplete");
+        }
+        boolean compressed = file.getName().endsWith(EXTENSION);
+        if (!compressed) {
+            for (int block = 0; block < blocks; block++) {
+                long end = block + 1 < blocks ? offsets[block + 1] : file.length();
+                lengths[block] = (int) (end - offsets[block]);
+            }
+        }
+
+        return new TransactionSegment(file, firstSequence, count, LocalDateTime.parse(parts[2]),
+            LocalDateTime.parse(parts[3]), Boolean.parseBoolean(parts[4]), compressed,
+            offsets, lengths, minIds, maxIds, memberFilters, hourRows);
+    }
+
+    String toManifestLine() {
+        String line = String.join(",", file.getName(), String.valueOf(count), firstTimestamp.toString(),
+                                  lastTimestamp.toString(), String.valueOf(redacted));
+        return highestId >= 0 ? line + "," + highestId : line;
+    }
+
+    /**
+     * Highest transaction ID in a manifest line, read without opening the segment
+     * @return the ID number, or -1 if the line does not record it
+     */
+    static long highestIdOf(String manifestLine) {
+        String[] parts = manifestLine.split(",");
+        try {
+            return parts.length > 5 ? Long.parseLong(parts[5].trim()) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Copy the segment and its index to a new segment file name (the copy of
+     * a plain text segment keeps its .txt extension); existing files are
+     * never replaced
+     */
+    TransactionSegment copyTo(File target) throws IOException {
+        if (!compressed) {
+            String name = target.getName();
+            target = new File(target.getParentFile(), name.substring(0, name.lastIndexOf('.')) + ".txt");
+        }
+        Files.copy(file.toPath(), target.toPath());
+        try {
+            Files.copy(indexFile(file).toPath(), indexFile(target).toPath());
+        } catch (IOException e) {
+            target.delete();
+            throw e;
+        }
+        return new TransactionSegment(target, firstSequence, count, firstTimestamp, lastTimestamp,
+                                      redacted, compressed, offsets, lengths, minIds, maxIds, memberFilters, null);
+    }
+
+    void delete() {
+        deleteFiles(file);
+    }
+
+    static void deleteFiles(File segmentFile) {
+        segmentFile.delete();
+        indexFile(segmentFile).delete();
+    }
+
+    // ==================== READING ====================
+
+    /**
+     * Read the transactions at positions from (inclusive) to to (exclusive),
+     * decompressing only the blocks that hold them
+     * @throws IOException if a block cannot be read in full
+     */
+    List<Transaction> read(int from, int to) throws IOException {
+        List<Transaction> transactions = new ArrayList<>(Math.max(0, to - from));
+        if (from >= to) {
+            return transactions;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            for (int block = from / BLOCK_SIZE; block <= (to - 1) / BLOCK_SIZE; block++) {
+                int position = block * BLOCK_SIZE;
+                for (String line : readBlock(in, block)) {
+                    if (position >= from && position < to) {
+                        Transaction transaction = Transaction.fromFileFormat(line);
+                        if (transaction != null) {
+                            transactions.add(transaction);
+                        }
+                    }
+                    position++;
+                }
+            }
+        }
+        if (transactions.size() != to - from) {
+            throw new IOException("Segment " + file.getName() + " holds " + transactions.size()
+                                  + " readable transactions at positions " + from + ".." + (to - 1));
+        }
+        return transactions;
+    }
+
+    List<Transaction> readAll() throws IOException {
+        return read(0, count);
+    }
+
+    /**
+     * A member's transactions among the first to positions, oldest first;
+     * only blocks whose member filter may hold the ID are decompressed
+     * @throws IOException if a block cannot be read in full
+     */
+    List<Transaction> readMember(String memberId, int to) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        if (to <= 0) {
+            return transactions;
+        }
+        String field = "," + memberId + ",";
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            for (int block = 0; block <= (to - 1) / BLOCK_SIZE; block++) {
+                if (!mayContainMember(block, memberId)) continue;
+                int position = block * BLOCK_SIZE;
+                List<String> lines = readBlock(in, block);
+                if (lines.size() != Math.min(BLOCK_SIZE, count - position)) {
+                    throw new IOException("Block " + block + " of " + file.getName() + " is incomplete");
+                }
+                for (String line : lines) {
+                    // The member ID is the second field; check cheaply before parsing
+                    if (position++ < to && line.indexOf(field) == line.indexOf(',')) {
+                        Transaction transaction = Transaction.fromFileFormat(line);
+                        if (transaction == null) {
+                            throw new IOException("Malformed transaction in " + file.getName() + ": " + line);
+                        }
+                        transactions.add(transaction);
+                    }
+                }
+            }
+        }
+        return transactions;
+    }
+
+    private boolean mayContainMember(int block, String memberId) {
+        long[] filter = memberFilters[block];
+        if (filter == null) {
+            return true;
+        }
+        long hash = memberHash(memberId);
+        int bits = filter.length * 64;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < FILTER_PROBES; i++) {
+            int bit = (h1 + i * h2) & (bits - 1);
+            if ((filter[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Bloom filter over a power-of-two number of bits, about 8 per member
+    private static long[] memberFilter(Set<String> members) {
+        int bits = 64;
+        while (bits < members.size() * FILTER_BITS_PER_MEMBER) {
+            bits <<= 1;
+        }
+        long[] filter = new long[bits / 64];
+        for (String member : members) {
+            long hash = memberHash(member);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < FILTER_PROBES; i++) {
+                int bit = (h1 + i * h2) & (bits - 1);
+                filter[bit >>> 6] |= 1L << bit;
+            }
+        }
+        return filter;
+    }
+
+    private static long[] parseFilter(String hex) throws IOException {
+        int words = hex.length() / 16;
+        if (words == 0 || hex.length() % 16 != 0 || Integer.bitCount(words) != 1) {
+            throw new IOException("Malformed member filter in segment index");
+        }
+        long[] filter = new long[words];
+        for (int i = 0; i < words; i++) {
+            filter[i] = Long.parseUnsignedLong(hex.substring(i * 16, i * 16 + 16), 16);
+        }
+        return filter;
+    }
+
+    // 64-bit FNV-1a of the ID's characters
+    private static long memberHash(String memberId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < memberId.length(); i++) {
+            hash ^= memberId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * @return true if some block's ID range covers the ID (it may still be absent)
+     */
+    boolean mayContain(String transactionId) {
+        long id = idNumber(transactionId);
+        for (int block = 0; block < offsets.length; block++) {
+            if (id >= minIds[block] && id <= maxIds[block]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Find a transaction by ID, reading only the blocks whose ID range covers it
+     * @return the transaction, or null if this segment does not hold it
+     * @throws IOException if a block that may hold it cannot be read
+     */
+    Transaction find(String transactionId) throws IOException {
+        long id = idNumber(transactionId);
+        String prefix = transactionId + ",";
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            for (int block = 0; block < offsets.length; block++) {
+                if (id < minIds[block] || id > maxIds[block]) continue;
+                for (String line : readBlock(in, block)) {
+                    if (line.startsWith(prefix)) {
+                        return Transaction.fromFileFormat(line);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    // The lines of one block, inflated if the segment is compressed
+    private List<String> readBlock(RandomAccessFile in, int block) throws IOException {
+        if (offsets[block] + lengths[block] > in.length()) {
+            throw new IOException("Block " + block + " of " + file.getName() + " is truncated");
+        }
+        byte[] stored = new byte[lengths[block]];
+        in.seek(offsets[block]);
+        in.readFully(stored);
+
+        byte[] raw = stored;
+        int rawLength = stored.length;
+        if (compressed) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored);
+                raw = new byte[Math.max(1024, stored.length * 8)];
+                rawLength = 0;
+                while (!inflater.finished()) {
+                    if (rawLength == raw.length) {
+                        raw = Arrays.copyOf(raw, raw.length * 2);
+                    }
+                    int inflated = inflater.inflate(raw, rawLength, raw.length - rawLength);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Block " + block + " of " + file.getName() + " is truncated");
+                    }
+                    rawLength += inflated;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Block " + block + " of " + file.getName() + " is corrupt: " + e.getMessage());
+            } finally {
+                inflater.end();
+            }
+        }
+
+        List<String> lines = new ArrayList<>(BLOCK_SIZE);
+        int lineStart = 0;
+        for (int i = 0; i < rawLength; i++) {
+            if (raw[i] == '\n') {
+                lines.add(new String(raw, lineStart, i - lineStart, StandardCharsets.UTF_8));
+                lineStart = i + 1;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Hour rows from the index ({hour, position, borrows, returns}); available
+     * once, right after the segment is opened
+     */
+    List<long[]> takeHourRows() {
+        List<long[]> rows = hourRows;
+        hourRows = null;
+        return rows;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getFirstSequence() {
+        return firstSequence;
+    }
+
+    long getEndSequence() {
+        return firstSequence + count;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    LocalDateTime getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    LocalDateTime getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    boolean isRedacted() {
+        return redacted;
+    }
+
+    boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Bytes of transaction data on disk (excluding the index)
+     */
+    long getStoredBytes() {
+        long total = 0;
+        for (int length : lengths) {
+            total += length;
+        }
+        return total;
+    }
+
+    static long hourOf(LocalDateTime timestamp) {
+        return Math.floorDiv(timestamp.toEpochSecond(ZoneOffset.UTC), 3600);
+    }
+
+    // Numeric part of an ID such as "T1042" (-1 if it has none)
+    static long idNumber(String transactionId) {
+        long value = 0;
+        boolean digits = false;
+        for (int i = 0; i < transactionId.length(); i++) {
+            char c = transactionId.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits = true;
+            } else if (digits) {
+                return -1;
+            }
+        }
+        return digits ? value : -1;
+    }
+
+    private static File indexFile(File segmentFile) {
+        String name = segmentFile.getName();
+        return new File(segmentFile.getParentFile(), name.substring(0, name.lastIndexOf('.')) + ".idx");
+    }
+}
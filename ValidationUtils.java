@@ -88,10 +88,11 @@ public class ValidationUtils {
             throw new InvalidDataException("member ID", memberId, "non-empty ID");
         }
         
-        // Check format: S001 for students, T001 for staff
-        if (!memberId.matches("^[ST]\\d{3}$")) {
+        // Check format: S001 for students, T001 for staff - 3 or more digits
+        if (MemberId.encode(memberId) == MemberId.INVALID) {
             throw new InvalidDataException("member ID", memberId, 
-                "format S### for students or T### for staff (e.g., S001, T001)");
+                "format S### for students or T### for staff, " + MemberId.MIN_DIGITS + "-" +
+                MemberId.MAX_DIGITS + " digits (e.g., S001, T001, S60000)");
         }
     }
     
@@ -0,0 +1,113 @@
+import java.util.ArrayDeque;
+import java.util.TreeMap;
+
+/**
+ * VersionClock - Commit counter and read pins for multi-version state
+ * Demonstrates: Multi-version concurrency control (MVCC), Snapshot isolation, Reference counting
+ *
+ * Writers (serialized by the library lock) stamp every VersionedValue they
+ * change with writeVersion() and then commit(), which makes the whole change
+ * visible at once. A reader that needs one consistent cut - a long report -
+ * pins the committed version, reads everything "as of" that version while
+ * writers carry on, and unpins when done.
+ *
+ * Superseded versions are reclaimed as soon as no pin can still see them:
+ * on commit when nothing is pinned, otherwise when the oldest pin is released.
+ */
+public class VersionClock {
+
+    private volatile long committed;                              // Latest visible version
+    private boolean pendingWrites;                                // Guarded by this
+    private final TreeMap<Long, Integer> pins = new TreeMap<>();  // Pinned version -> reader count
+    private final ArrayDeque<Retained> retained = new ArrayDeque<>(); // Values holding old versions, oldest first
+
+    /**
+     * @return the most recently committed version
+     */
+    public long currentVersion() {
+        return committed;
+    }
+
+    /**
+     * Version stamped on values changed by the write in progress
+     */
+    long writeVersion() {
+        return committed + 1;
+    }
+
+    /**
+     * Make every value written since the last commit visible to new readers
+     */
+    public synchronized void commit() {
+        if (pendingWrites) {
+            committed++;
+            pendingWrites = false;
+            reclaim();
+        }
+    }
+
+    /**
+     * Pin the committed version so its values stay readable until unpin()
+     * @return the pinned version, to pass to the *At(version) getters
+     */
+    public synchronized long pin() {
+        long version = committed;
+        pins.merge(version, 1, Integer::sum);
+        return version;
+    }
+
+    public synchronized void unpin(long version) {
+        Integer readers = pins.get(version);
+        if (readers == null) {
+            throw new IllegalStateException("Version " + version + " is not pinned");
+        }
+        if (readers == 1) {
+            pins.remove(version);
+        } else {
+            pins.put(version, readers - 1);
+        }
+        reclaim();
+    }
+
+    /**
+     * @return number of readers currently holding a pin
+     */
+    public synchronized int getActivePins() {
+        int readers = 0;
+        for (int count : pins.values()) {
+            readers += count;
+        }
+        return readers;
+    }
+
+    /**
+     * @return number of values still holding superseded versions
+     */
+    public synchronized int getRetainedCount() {
+        return retained.size();
+    }
+
+    // Called by VersionedValue.set for every value changed at writeVersion()
+    synchronized void retain(VersionedValue<?> value, long version) {
+        pendingWrites = true;
+        retained.add(new Retained(value, version));
+    }
+
+    // Drop versions older than the oldest one any reader can still ask for
+    private void reclaim() {
+        long oldestVisible = pins.isEmpty() ? committed : pins.firstKey();
+        while (!retained.isEmpty() && retained.peek().version <= oldestVisible) {
+            retained.poll().value.prune(oldestVisible);
+        }
+    }
+
+    private static class Retained {
+        final VersionedValue<?> value;
+        final long version;
+
+        Retained(VersionedValue<?> value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * VersionedValue - A value that remembers the versions readers may still need
+ * Demonstrates: Generics, Immutable version chains, Lock-free reads
+ *
+ * Each change pushes a new node (value + version) in front of the older ones.
+ * get() returns the newest value; getAt(version) walks back to the newest
+ * value committed at or before a pinned version. VersionClock trims the chain
+ * once no pinned reader can reach the older nodes.
+ */
+public class VersionedValue<T> {
+
+    private volatile Node<T> head;
+
+    public VersionedValue(T initialValue) {
+        this.head = new Node<>(initialValue, 0, null);
+    }
+
+    /**
+     * @return the latest value, including a write that is not yet committed
+     */
+    public T get() {
+        return head.value;
+    }
+
+    /**
+     * @return the value as of a version obtained from VersionClock.pin()
+     */
+    public T getAt(long version) {
+        Node<T> node = head;
+        while (node.version > version && node.older != null) {
+            node = node.older;
+        }
+        return node.value;
+    }
+
+    /**
+     * Replace the value. With a clock the change is stamped with the clock's
+     * write version (call only while holding the writer lock); without one the
+     * history is discarded, which is only safe for objects no reader has seen.
+     */
+    public void set(T value, VersionClock clock) {
+        if (clock == null) {
+            head = new Node<>(value, 0, null);
+            return;
+        }
+        long version = clock.writeVersion();
+        Node<T> current = head;
+        if (current.version == version) {
+            head = new Node<>(value, version, current.older); // Same write - no need to keep both
+        } else {
+            head = new Node<>(value, version, current);
+            clock.retain(this, version);
+        }
+    }
+
+    // Keep the newest node visible at oldestVisible and everything newer
+    void prune(long oldestVisible) {
+        Node<T> node = head;
+        while (node != null && node.version > oldestVisible) {
+            node = node.older;
+        }
+        if (node != null) {
+            node.older = null;
+        }
+    }
+
+    private static class Node<T> {
+        final T value;
+        final long version;
+        volatile Node<T> older;
+
+        Node(T value, long version, Node<T> older) {
+            this.value = value;
+            this.version = version;
+            this.older = older;
+        }
+    }
+}
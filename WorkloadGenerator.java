@@ -0,0 +1,272 @@
+import java.io.*;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * WorkloadGenerator - Synthetic data files for load and performance testing
+ * Demonstrates: Random distributions, Simulation, File I/O in the library's formats
+ *
+ * Produces books.txt, members.txt and transactions.txt at any scale without
+ * touching real patron data. Title popularity follows a Zipf distribution (a
+ * few titles get most of the circulation), members are a configurable mix of
+ * Students and Staff, and the transaction history is a consistent simulation:
+ * every RETURN matches an earlier BORROW, borrowing limits are respected and the
+ * final loan state is reflected in the books and members files.
+ *
+ * Usage:
+ *   java WorkloadGenerator [--books 10000] [--members 2000] [--transactions 50000]
+ *                          [--staff-ratio 0.15] [--zipf 1.0] [--days 365]
+ *                          [--seed 42] [--out data]
+ */
+public class WorkloadGenerator {
+
+    private static final String[] FIRST_NAMES = {
+        "Alice", "Bob", "Carol", "David", "Emma", "Frank", "Grace", "Henry", "Isla", "Jack",
+        "Karen", "Liam", "Maya", "Noah", "Olivia", "Priya", "Quinn", "Ravi", "Sofia", "Tom"
+    };
+    private static final String[] LAST_NAMES = {
+        "Johnson", "Smith", "Wilson", "Brown", "Taylor", "Patel", "Garcia", "Nguyen", "Khan", "Martin",
+        "Lee", "Walker", "Young", "King", "Wright", "Lopez", "Hill", "Scott", "Green", "Adams"
+    };
+    private static final String[] TITLE_WORDS = {
+        "Java", "Data", "Systems", "Algorithms", "Networks", "History", "Modern", "Introduction",
+        "Principles", "Design", "Theory", "Practical", "Advanced", "Guide", "Physics", "Economics",
+        "Chemistry", "Biology", "Art", "Music", "Philosophy", "Mathematics", "Statistics", "World"
+    };
+    private static final String[] COURSES = {
+        "Computer Science", "Mathematics", "Physics", "History", "Economics", "Biology"
+    };
+    private static final String[] DEPARTMENTS = {
+        "Library Services", "Computer Science", "Administration", "Mathematics", "Research"
+    };
+    private static final String[] POSITIONS = {
+        "Librarian", "Professor", "Lecturer", "Senior Lecturer", "Research Assistant", "Manager"
+    };
+
+    private int bookCount = 10000;
+    private int memberCount = 2000;
+    private int transactionCount = 50000;
+    private double staffRatio = 0.15;
+    private double zipfExponent = 1.0;
+    private int historyDays = 365;
+    private long seed = 42;
+    private String outputDirectory = "data";
+
+    public static void main(String[] args) throws IOException {
+        WorkloadGenerator generator = new WorkloadGenerator();
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--books":        generator.bookCount = Integer.parseInt(value); break;
+                case "--members":      generator.memberCount = Integer.parseInt(value); break;
+                case "--transactions": generator.transactionCount = Integer.parseInt(value); break;
+                case "--staff-ratio":  generator.staffRatio = Double.parseDouble(value); break;
+                case "--zipf":         generator.zipfExponent = Double.parseDouble(value); break;
+                case "--days":         generator.historyDays = Integer.parseInt(value); break;
+                case "--seed":         generator.seed = Long.parseLong(value); break;
+                case "--out":          generator.outputDirectory = value; break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+
+        generator.generate();
+    }
+
+    /**
+     * Simulate the library and write all three data files
+     */
+    public void generate() throws IOException {
+        if (bookCount < 1 || memberCount < 1) {
+            throw new IllegalArgumentException("Need at least one book and one member");
+        }
+
+        Random random = new Random(seed);
+        File directory = new File(outputDirectory);
+        directory.mkdirs();
+
+        // Loan state: which member holds each book (-1 = on the shelf)
+        int[] borrowedBy = new int[bookCount];
+        java.util.Arrays.fill(borrowedBy, -1);
+        LocalDateTime[] dueDates = new LocalDateTime[bookCount];
+        int[] loansPerMember = new int[memberCount];
+        boolean[] isStaff = new boolean[memberCount];
+        String[] memberIds = new String[memberCount];
+        String[] memberNames = new String[memberCount];
+
+        int staffCount = 0;
+        int studentCount = 0;
+        for (int i = 0; i < memberCount; i++) {
+            isStaff[i] = random.nextDouble() < staffRatio;
+            memberIds[i] = isStaff[i] ? String.format("T%03d", ++staffCount)
+                                      : String.format("S%03d", ++studentCount);
+            memberNames[i] = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " +
+                             LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        }
+
+        String[] titles = new String[bookCount];
+        String[] isbns = new String[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            titles[i] = TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " " +
+                        TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " Vol " + (i + 1);
+            isbns[i] = String.format("978%010d", i + 1);
+        }
+
+        int written = writeTransactions(directory, random, titles, isbns, memberIds, memberNames,
+                          isStaff, borrowedBy, dueDates, loansPerMember);
+        writeBooks(directory, random, titles, isbns, memberIds, borrowedBy, dueDates);
+        writeMembers(directory, random, memberIds, memberNames, isStaff, loansPerMember);
+
+        System.out.printf("✓ Generated %,d books, %,d members (%,d staff) and %,d transactions in %s/%n",
+            bookCount, memberCount, staffCount, written, outputDirectory);
+    }
+
+    // ==================== FILE WRITERS ====================
+
+    private int writeTransactions(File directory, Random random, String[] titles, String[] isbns,
+                                   String[] memberIds, String[] memberNames, boolean[] isStaff,
+                                   int[] borrowedBy, LocalDateTime[] dueDates,
+                                   int[] loansPerMember) throws IOException {
+        ZipfSampler popularity = new ZipfSampler(bookCount, zipfExponent);
+        // Books currently on loan, with each book's position for O(1) swap-removal
+        int[] outstanding = new int[bookCount];
+        int[] position = new int[bookCount];
+        int outstandingCount = 0;
+
+        LocalDateTime start = LocalDateTime.now().minusDays(historyDays).withNano(0);
+        long secondsSpan = Math.max(1, historyDays * 86400L);
+        long counter = 1000;
+        int written = 0;
+
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(
+                new FileWriter(new File(directory, "transactions.txt"))))) {
+            writer.println("# Library Transactions Data");
+            writer.println("# Format: TransactionID,MemberID,MemberName,BookTitle,BookISBN,Type,Timestamp,Notes[,DueDate]");
+
+            for (int t = 0; t < transactionCount; t++) {
+                // Timestamps advance evenly across the history window
+                LocalDateTime timestamp = start.plusSeconds(secondsSpan * t / transactionCount);
+
+                int book = popularity.sample(random);
+                boolean doReturn = borrowedBy[book] >= 0;
+                if (!doReturn && outstandingCount > 0 && random.nextInt(2) == 0) {
+                    book = outstanding[random.nextInt(outstandingCount)];
+                    doReturn = true;
+                }
+
+                int member;
+                String type;
+                if (doReturn) {
+                    member = borrowedBy[book];
+                    borrowedBy[book] = -1;
+                    loansPerMember[member]--;
+                    int last = outstanding[--outstandingCount];
+                    outstanding[position[book]] = last;
+                    position[last] = position[book];
+                    type = "RETURN";
+                } else {
+                    member = pickMemberWithCapacity(random, isStaff, loansPerMember);
+                    if (member < 0) {
+                        continue; // Everyone is at their limit - skip this tick
+                    }
+                    borrowedBy[book] = member;
+                    // Same loan periods as Staff.LOAN_PERIOD_DAYS / Student.LOAN_PERIOD_DAYS
+                    dueDates[book] = timestamp.plusDays(isStaff[member] ? 28 : 14);
+                    loansPerMember[member]++;
+                    position[book] = outstandingCount;
+                    outstanding[outstandingCount++] = book;
+                    type = "BORROW";
+                }
+
+                writer.println(String.join(",",
+                    "T" + (++counter),
+                    memberIds[member],
+                    memberNames[member],
+                    titles[book],
+                    isbns[book],
+                    type,
+                    timestamp.toString(),
+                    "") + (doReturn ? "" : "," + dueDates[book]));
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private void writeBooks(File directory, Random random, String[] titles, String[] isbns,
+                            String[] memberIds, int[] borrowedBy, LocalDateTime[] dueDates) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(
+                new FileWriter(new File(directory, "books.txt"))))) {
+            writer.println("# Library Books Data");
+            writer.println("# Format: Title,Author,ISBN,Available,BorrowedBy,DueDate");
+
+            for (int i = 0; i < bookCount; i++) {
+                String author = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " +
+                                LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                boolean available = borrowedBy[i] < 0;
+                writer.printf("%s,%s,%s,%b,%s%n", titles[i], author, isbns[i], available,
+                              available ? "" : memberIds[borrowedBy[i]] + "," + dueDates[i]);
+            }
+        }
+    }
+
+    private void writeMembers(File directory, Random random, String[] memberIds, String[] memberNames,
+                              boolean[] isStaff, int[] loansPerMember) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(
+                new FileWriter(new File(directory, "members.txt"))))) {
+            writer.println("# Library Members Data");
+            writer.println("# Format: Type,ID,Name,Email,Phone,ExtraInfo,BorrowedBooks");
+
+            for (int i = 0; i < memberIds.length; i++) {
+                String email = memberNames[i].toLowerCase().replace(' ', '.') + i + "@university.edu";
+                String extraInfo = isStaff[i]
+                    ? DEPARTMENTS[random.nextInt(DEPARTMENTS.length)] + "|" + POSITIONS[random.nextInt(POSITIONS.length)]
+                    : COURSES[random.nextInt(COURSES.length)] + "|" + (1 + random.nextInt(4));
+                writer.printf("%s,%s,%s,%s,%s,%s,%d%n", isStaff[i] ? "Staff" : "Student",
+                              memberIds[i], memberNames[i], email, "", extraInfo, loansPerMember[i]);
+            }
+        }
+    }
+
+    /**
+     * Pick a random member who is below their borrowing limit (-1 if none found quickly)
+     */
+    private static int pickMemberWithCapacity(Random random, boolean[] isStaff, int[] loansPerMember) {
+        for (int attempt = 0; attempt < 32; attempt++) {
+            int member = random.nextInt(loansPerMember.length);
+            int limit = isStaff[member] ? 5 : 2; // Same limits as Staff.MAX_BOOKS / Student.MAX_BOOKS
+            if (loansPerMember[member] < limit) {
+                return member;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Zipf-distributed sampler over ranks 0..n-1 (rank 0 is the most popular).
+     * Uses a precomputed cumulative table and binary search.
+     */
+    public static class ZipfSampler {
+        private final double[] cumulative;
+
+        public ZipfSampler(int n, double exponent) {
+            cumulative = new double[n];
+            double total = 0;
+            for (int rank = 0; rank < n; rank++) {
+                total += 1.0 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = total;
+            }
+            for (int rank = 0; rank < n; rank++) {
+                cumulative[rank] /= total;
+            }
+        }
+
+        public int sample(Random random) {
+            int index = java.util.Arrays.binarySearch(cumulative, random.nextDouble());
+            int rank = index >= 0 ? index : -index - 1;
+            return Math.min(rank, cumulative.length - 1);
+        }
+    }
+}
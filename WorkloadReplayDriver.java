@@ -0,0 +1,235 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * WorkloadReplayDriver - Replays mixed circulation traffic against a Library
+ * Demonstrates: Open-loop load generation, Latency percentiles, Simulation
+ *
+ * Loads a library from a data directory (typically one produced by
+ * WorkloadGenerator) and issues a mix of borrow, return and search requests at
+ * a fixed target rate. Requests are scheduled on a fixed timeline, and latency
+ * is measured from each request's scheduled start. A slow operation therefore
+ * also shows up in the latency of the requests queued behind it, as it would
+ * for real patrons at the desk.
+ *
+ * Usage:
+ *   java WorkloadReplayDriver [--data data] [--rate 500] [--duration 30]
+ *                             [--mix 30,30,40] [--zipf 1.0] [--seed 7]
+ *
+ * --mix is the borrow, return and search percentage.
+ */
+public class WorkloadReplayDriver {
+
+    private static final String[] OPERATIONS = {"borrow", "return", "search"};
+
+    private String dataDirectory = "data";
+    private double targetRate = 500;
+    private int durationSeconds = 30;
+    private int[] mix = {30, 30, 40};
+    private double zipfExponent = 1.0;
+    private long seed = 7;
+
+    public static void main(String[] args) {
+        WorkloadReplayDriver driver = new WorkloadReplayDriver();
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--data":     driver.dataDirectory = value; break;
+                case "--rate":     driver.targetRate = Double.parseDouble(value); break;
+                case "--duration": driver.durationSeconds = Integer.parseInt(value); break;
+                case "--zipf":     driver.zipfExponent = Double.parseDouble(value); break;
+                case "--seed":     driver.seed = Long.parseLong(value); break;
+                case "--mix":
+                    String[] parts = value.split(",");
+                    driver.mix = new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                                            Integer.parseInt(parts[2])};
+                    break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+
+        driver.run();
+    }
+
+    /**
+     * Load the library, replay traffic and print the summary
+     */
+    public void run() {
+        PrintStream console = System.out;
+        PrintStream silent = new PrintStream(OutputStream.nullOutputStream());
+
+        Library library = new Library("Replay Library");
+        library.setDataDirectory(dataDirectory);
+        System.setOut(silent);
+        try {
+            library.loadFromFiles();
+        } finally {
+            System.setOut(console);
+        }
+
+        List<Book> books = new ArrayList<>(library.getAllBooks());
+        List<Person> members = new ArrayList<>(library.getAllMembers());
+        if (books.isEmpty() || members.isEmpty()) {
+            console.println("No books or members found in " + dataDirectory + "/ - run WorkloadGenerator first.");
+            return;
+        }
+
+        // Loans already outstanding in the data files can be returned during the replay
+        List<String[]> outstanding = new ArrayList<>();
+        for (Person member : members) {
+            for (String title : library.getBorrowedBookTitles(member.getId())) {
+                outstanding.add(new String[] {member.getId(), title});
+            }
+        }
+
+        console.printf("Replaying %s traffic (borrow/return/search = %d/%d/%d%%) at %.0f ops/sec for %ds " +
+                       "against %,d books and %,d members...%n",
+            dataDirectory, mix[0], mix[1], mix[2], targetRate, durationSeconds, books.size(), members.size());
+
+        Random random = new Random(seed);
+        WorkloadGenerator.ZipfSampler popularity = new WorkloadGenerator.ZipfSampler(books.size(), zipfExponent);
+        int expectedOps = (int) Math.min(Integer.MAX_VALUE - 8, (long) (targetRate * durationSeconds));
+        LatencyRecorder[] recorders = new LatencyRecorder[OPERATIONS.length];
+        for (int i = 0; i < recorders.length; i++) {
+            recorders[i] = new LatencyRecorder(expectedOps * mix[i] / 100 + 16);
+        }
+        long[] successes = new long[OPERATIONS.length];
+
+        long periodNanos = (long) (1_000_000_000L / targetRate);
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + durationSeconds * 1_000_000_000L;
+
+        System.setOut(silent);
+        try {
+            for (long op = 0; ; op++) {
+                long scheduled = startNanos + op * periodNanos;
+                if (scheduled >= endNanos) break;
+                waitUntil(scheduled);
+
+                int roll = random.nextInt(100);
+                int type = roll < mix[0] ? 0 : roll < mix[0] + mix[1] ? 1 : 2;
+                if (type == 1 && outstanding.isEmpty()) {
+                    type = 0; // Nothing to return yet
+                }
+
+                boolean success;
+                if (type == 0) {
+                    Book book = books.get(popularity.sample(random));
+                    Person member = members.get(random.nextInt(members.size()));
+                    success = library.borrowBook(member.getId(), book.getTitle());
+                    if (success) {
+                        outstanding.add(new String[] {member.getId(), book.getTitle()});
+                    }
+                } else if (type == 1) {
+                    int index = random.nextInt(outstanding.size());
+                    String[] loan = outstanding.get(index);
+                    outstanding.set(index, outstanding.get(outstanding.size() - 1));
+                    outstanding.remove(outstanding.size() - 1);
+                    success = library.returnBook(loan[0], loan[1]);
+                } else {
+                    String[] words = books.get(popularity.sample(random)).getTitle().split(" ");
+                    success = random.nextBoolean()
+                        ? !library.searchBooksByTitle(words[0]).isEmpty()
+                        : !library.searchBooksByKeywords(words[0], words[1]).isEmpty();
+                }
+
+                recorders[type].record(System.nanoTime() - scheduled);
+                if (success) successes[type]++;
+            }
+        } finally {
+            System.setOut(console);
+        }
+
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        printSummary(console, recorders, successes, elapsedSeconds);
+    }
+
+    private void printSummary(PrintStream out, LatencyRecorder[] recorders, long[] successes,
+                              double elapsedSeconds) {
+        LatencyRecorder all = new LatencyRecorder(16);
+        for (LatencyRecorder recorder : recorders) {
+            all.addAll(recorder);
+        }
+
+        out.println();
+        out.printf("Completed %,d operations in %.1fs - achieved %.1f ops/sec (target %.0f)%n",
+            all.count(), elapsedSeconds, all.count() / elapsedSeconds, targetRate);
+        out.printf("%-8s %10s %10s %10s %10s %10s %10s %10s%n",
+            "Op", "Count", "OK", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        out.println("-".repeat(84));
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            printRow(out, OPERATIONS[i], recorders[i], successes[i]);
+        }
+        printRow(out, "all", all, successes[0] + successes[1] + successes[2]);
+    }
+
+    private static void printRow(PrintStream out, String name, LatencyRecorder recorder, long ok) {
+        out.printf("%-8s %,10d %,10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", name, recorder.count(), ok,
+            recorder.percentile(50) / 1000.0, recorder.percentile(90) / 1000.0,
+            recorder.percentile(99) / 1000.0, recorder.percentile(99.9) / 1000.0,
+            recorder.percentile(100) / 1000.0);
+    }
+
+    /**
+     * Park until the scheduled start, spinning for the final stretch for accuracy
+     */
+    private static void waitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            if (remaining > 100_000) {
+                LockSupport.parkNanos(remaining - 50_000);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Records raw latencies and answers percentile queries by sorting once
+     */
+    private static class LatencyRecorder {
+        private long[] samples;
+        private int count;
+        private boolean sorted;
+
+        LatencyRecorder(int expected) {
+            samples = new long[Math.max(16, expected)];
+        }
+
+        void record(long nanos) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, samples.length * 2);
+            }
+            samples[count++] = nanos;
+            sorted = false;
+        }
+
+        void addAll(LatencyRecorder other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.samples[i]);
+            }
+        }
+
+        int count() {
+            return count;
+        }
+
+        long percentile(double percent) {
+            if (count == 0) return 0;
+            if (!sorted) {
+                Arrays.sort(samples, 0, count);
+                sorted = true;
+            }
+            int index = (int) Math.ceil(percent / 100.0 * count) - 1;
+            return samples[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+}